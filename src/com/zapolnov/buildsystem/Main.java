@@ -24,6 +24,7 @@ package com.zapolnov.buildsystem;
 import com.bulenkov.darcula.DarculaLaf;
 import com.zapolnov.buildsystem.build.Generator;
 import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.build.ProjectWatcher;
 import com.zapolnov.buildsystem.gui.FatalErrorDialog;
 import com.zapolnov.buildsystem.gui.MainDialog;
 import com.zapolnov.buildsystem.project.Project;
@@ -48,6 +49,8 @@ public class Main
         System.out.println("  -x, --stacktraces        Print stack traces for exceptions (batch mode).");
         System.out.println("  -p, --project <path>     Specify path to the project directory (batch mode).");
         System.out.println("  -g, --generator <name>   Specify generator to use (batch mode).");
+        System.out.println("  -j, --jobs <count>       Maximum number of threads to use (batch mode).");
+        System.out.println("  -w, --watch              Regenerate project when files change (batch mode).");
         System.out.println("");
     }
 
@@ -108,7 +111,9 @@ public class Main
     public static void runBatchMode(String[] args)
     {
         boolean printStackTraces = false;
+        boolean watch = false;
         String generatorClassName = null;
+        int numberOfThreads = 0;
         File projectDirectory = new File(".");
 
         try {
@@ -118,10 +123,23 @@ public class Main
                     System.exit(1);
                 } else if ("--stacktraces".equals(args[i]) || "-x".equals(args[i])) {
                     printStackTraces = true;
+                } else if ("--watch".equals(args[i]) || "-w".equals(args[i])) {
+                    watch = true;
                 } else if ("--project".equals(args[i]) || "-p".equals(args[i])) {
                     projectDirectory = new File(getCommandLineArgumentParameter(args, ++i));
                 } else if ("--generator".equals(args[i]) || "-g".equals(args[i])) {
                     generatorClassName = getCommandLineArgumentParameter(args, ++i);
+                } else if ("--jobs".equals(args[i]) || "-j".equals(args[i])) {
+                    String value = getCommandLineArgumentParameter(args, ++i);
+                    try {
+                        numberOfThreads = Integer.parseInt(value);
+                    } catch (NumberFormatException e) {
+                        numberOfThreads = 0;
+                    }
+                    if (numberOfThreads <= 0) {
+                        System.err.println(String.format("ERROR: Invalid number of threads \"%s\".", value));
+                        System.exit(1);
+                    }
                 } else if (!isBatchModeArgument(args[i])) {
                     System.err.println(String.format("ERROR: Invalid command line argument \"%s\".", args[i]));
                     System.exit(1);
@@ -136,8 +154,13 @@ public class Main
                 System.exit(1);
             }
             projectBuilder.setGenerator(getGenerator(generatorClassName));
+            if (numberOfThreads > 0)
+                projectBuilder.setNumberOfThreads(numberOfThreads);
 
-            projectBuilder.run();
+            if (watch)
+                new ProjectWatcher(projectBuilder).run();
+            else
+                projectBuilder.run();
         } catch (Throwable t) {
             if (printStackTraces)
                 System.err.println(StringUtils.getDetailedExceptionMessage(t));
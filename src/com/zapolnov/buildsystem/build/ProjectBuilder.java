@@ -22,14 +22,18 @@
 package com.zapolnov.buildsystem.build;
 
 import com.zapolnov.buildsystem.plugins.AbstractPlugin;
+import com.zapolnov.buildsystem.project.DirectiveScheduler;
 import com.zapolnov.buildsystem.project.Project;
 import com.zapolnov.buildsystem.utility.Database;
+import com.zapolnov.buildsystem.utility.FileFingerprint;
 import com.zapolnov.buildsystem.utility.FileUtils;
 import com.zapolnov.buildsystem.utility.Log;
+import com.zapolnov.buildsystem.utility.Statistics;
 import com.zapolnov.buildsystem.utility.StringUtils;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 
@@ -39,10 +43,15 @@ public class ProjectBuilder
     public static final String BUILD_DIRECTORY_NAME = "build";
     public static final String DATABASE_DIRECTORY_NAME = ".cache";
 
+    /** Format identifier for the cached parse results. */
+    private static final int PARSE_RESULTS_FORMAT = 0x5A505202;
+
     /** A project being built. */
     public final Project project;
     /** Build database. */
     public final Database database;
+    /** Statistics of the project generation. */
+    public final Statistics statistics = new Statistics();
 
     /** Path to the output directory for generated files. */
     private File outputDirectory;
@@ -52,12 +61,26 @@ public class ProjectBuilder
     private Generator generator;
     /** Path to the output directory for generator-specific files. */
     private File generatorOutputDirectory;
+    /** Maximum number of threads to use for parallelizable tasks. */
+    private int numberOfThreads = Runtime.getRuntime().availableProcessors();
+    /** Depth of nested `parseFile` calls in the current thread. */
+    private final ThreadLocal<int[]> parseFileDepth = ThreadLocal.withInitial(() -> new int[1]);
 
     /**
      * Constructor.
      * @param project Project to build.
      */
     public ProjectBuilder(Project project)
+    {
+        this(project, null);
+    }
+
+    /**
+     * Constructor.
+     * @param project Project to build.
+     * @param database Already opened build database of the project (or `null` to open a new one).
+     */
+    public ProjectBuilder(Project project, Database database)
     {
         outputDirectory = new File(project.directory, BUILD_DIRECTORY_NAME);
         FileUtils.ensureDirectoryExists(outputDirectory);
@@ -67,7 +90,12 @@ public class ProjectBuilder
         FileUtils.makeDirectoryHidden(databaseDirectory);
 
         this.project = project;
-        this.database = new Database(databaseDirectory);
+        if (database == null)
+            this.database = new Database(databaseDirectory, statistics);
+        else {
+            this.database = database;
+            database.setStatistics(statistics);
+        }
     }
 
     /**
@@ -110,23 +138,73 @@ public class ProjectBuilder
             generatorOutputDirectory = new File(outputDirectory, generator.outputDirectoryName());
     }
 
+    /**
+     * Retrieves maximum number of threads that could be used for parallelizable tasks.
+     * @return Number of threads.
+     */
+    public int numberOfThreads()
+    {
+        return numberOfThreads;
+    }
+
+    /**
+     * Sets maximum number of threads that could be used for parallelizable tasks.
+     * @param numberOfThreads Number of threads (value of 1 disables multithreading).
+     */
+    public void setNumberOfThreads(int numberOfThreads)
+    {
+        this.numberOfThreads = Math.max(numberOfThreads, 1);
+    }
+
     /**
      * Parses a source file.
      * This method caches result of a parse and retrieves the cached results if file did not change.
+     * File is considered changed only if its contents differ from the contents at the time of the cached parse.
+     * This method is thread-safe as long as the provided parser is not shared between threads.
+     * Parsers may use this method to retrieve results of other parsers for the same file, such nested calls are not
+     * counted in statistics.
      * @param file Path to the file.
      * @param parser Parser.
      */
     public <PARSER extends FileParser> PARSER parseFile(File file, PARSER parser) throws Throwable
+    {
+        int[] depth = parseFileDepth.get();
+        ++depth[0];
+        try {
+            boolean cached = loadOrParseFile(file, parser);
+            if (depth[0] == 1)
+                statistics.increment(cached ? Statistics.PARSE_CACHE_HITS : Statistics.PARSE_CACHE_MISSES);
+            return parser;
+        } finally {
+            --depth[0];
+        }
+    }
+
+    /**
+     * Retrieves cached parse results for the file or parses the file if it has changed.
+     * @param file Path to the file.
+     * @param parser Parser.
+     * @return `true` if parse results have been loaded from the database, `false` if file has been parsed.
+     */
+    private boolean loadOrParseFile(File file, FileParser parser) throws Throwable
     {
         byte[] fileData = database.loadFileParseResults(file, parser.getClass());
         if (fileData != null) {
             try {
                 ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(fileData));
-                long expectedLastModificationTime = stream.readLong();
-                long actualLastModificationTime = file.lastModified();
-                if (expectedLastModificationTime == actualLastModificationTime) {
-                    parser.load(stream);
-                    return parser;
+                if (stream.readInt() == PARSE_RESULTS_FORMAT) {
+                    FileFingerprint expectedFingerprint = FileFingerprint.read(stream);
+                    if (expectedFingerprint.hasSameAttributes(file)) {
+                        parser.load(stream);
+                        return true;
+                    }
+
+                    FileFingerprint actualFingerprint = FileFingerprint.forFile(file);
+                    if (expectedFingerprint.hasSameContents(actualFingerprint)) {
+                        parser.load(stream);
+                        saveFileParseResults(file, parser, actualFingerprint);
+                        return true;
+                    }
                 }
             } catch (Throwable t) {
                 Log.debug(String.format("Unable to deserialize data for file \"%s\".\n%s",
@@ -135,52 +213,88 @@ public class ProjectBuilder
         }
 
         Log.trace(String.format("Scanning file \"%s\".", FileUtils.getCanonicalPath(file)));
+        FileFingerprint fingerprint = FileFingerprint.forFile(file);
         parser.parse(file);
+        saveFileParseResults(file, parser, fingerprint);
 
+        return false;
+    }
+
+    /**
+     * Stores parse results for the specified file into the database.
+     * @param file Path to the file.
+     * @param parser Parser.
+     * @param fingerprint Fingerprint of the file at the time of the parse.
+     */
+    private void saveFileParseResults(File file, FileParser parser, FileFingerprint fingerprint) throws IOException
+    {
         ByteArrayOutputStream fileDataStream = new ByteArrayOutputStream();
         ObjectOutputStream stream = new ObjectOutputStream(fileDataStream);
-        stream.writeLong(file.lastModified());
+        stream.writeInt(PARSE_RESULTS_FORMAT);
+        fingerprint.write(stream);
         parser.save(stream);
         stream.close();
 
-        fileData = fileDataStream.toByteArray();
-        database.saveFileParseResults(file, parser.getClass(), fileData);
-
-        return parser;
+        database.saveFileParseResults(file, parser.getClass(), fileDataStream.toByteArray());
     }
 
     /** Runs the project builder. */
     public void run() throws Throwable
     {
+        statistics.reset();
+
         try {
             if (generator == null)
                 throw new RuntimeException("No generator has been set.");
             FileUtils.ensureDirectoryExists(generatorOutputDirectory);
 
-            Log.debug("=== Pre-build phase");
-            project.scope.clearCaches();
-            project.scope.preBuild(this);
-            for (AbstractPlugin plugin : project.plugins())
-                plugin.preBuild(this);
+            DirectiveScheduler scheduler = new DirectiveScheduler(project.scope, numberOfThreads, statistics);
+            statistics.measure(Statistics.CATEGORY_PHASE, Statistics.PHASE_TOTAL, () -> {
+                Log.debug("=== Pre-build phase");
+                statistics.measure(Statistics.CATEGORY_PHASE, "Pre-build", () -> {
+                    project.scope.clearCaches();
+                    scheduler.preBuild(this);
+                    for (AbstractPlugin plugin : project.plugins()) {
+                        statistics.measure(Statistics.CATEGORY_PLUGIN, plugin.name() + ".preBuild",
+                            () -> plugin.preBuild(this));
+                    }
+                });
 
-            Log.debug("=== Building the project");
-            project.scope.build(this);
+                Log.debug("=== Building the project");
+                statistics.measure(Statistics.CATEGORY_PHASE, "Build", () -> scheduler.build(this));
 
-            Log.debug("=== Pre-generate phase");
-            for (AbstractPlugin plugin : project.plugins())
-                plugin.preGenerate(this);
+                Log.debug("=== Pre-generate phase");
+                statistics.measure(Statistics.CATEGORY_PHASE, "Pre-generate", () -> {
+                    for (AbstractPlugin plugin : project.plugins()) {
+                        statistics.measure(Statistics.CATEGORY_PLUGIN, plugin.name() + ".preGenerate",
+                            () -> plugin.preGenerate(this));
+                    }
+                });
 
-            Log.debug("=== Generating project files");
-            generator.generate(this);
+                Log.debug("=== Generating project files");
+                statistics.measure(Statistics.CATEGORY_PHASE, "Generate", () -> generator.generate(this));
 
-            Log.debug("=== Post-generate phase");
-            for (AbstractPlugin plugin : project.plugins())
-                plugin.postGenerate(this);
+                Log.debug("=== Post-generate phase");
+                statistics.measure(Statistics.CATEGORY_PHASE, "Post-generate", () -> {
+                    for (AbstractPlugin plugin : project.plugins()) {
+                        statistics.measure(Statistics.CATEGORY_PLUGIN, plugin.name() + ".postGenerate",
+                            () -> plugin.postGenerate(this));
+                    }
+                });
 
-            database.commit();
+                statistics.measure(Statistics.CATEGORY_PHASE, "Commit", database::commit);
+            });
         } catch (Throwable t) {
             database.rollbackSafe();
             throw t;
         }
+
+        try {
+            statistics.writeReport(new File(outputDirectory, Statistics.FILE_NAME));
+        } catch (Throwable t) {
+            Log.warn(String.format("Unable to write file \"%s\".\n%s", Statistics.FILE_NAME,
+                StringUtils.getShortExceptionMessage(t)));
+        }
+        statistics.logSummary();
     }
 }
@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.build;
+
+import com.zapolnov.buildsystem.project.Project;
+import com.zapolnov.buildsystem.project.ProjectReader;
+import com.zapolnov.buildsystem.project.ProjectVisitor;
+import com.zapolnov.buildsystem.project.directives.ImportDirective;
+import com.zapolnov.buildsystem.project.directives.SourceDirectoriesDirective;
+import com.zapolnov.buildsystem.project.directives.SourceFilesDirective;
+import com.zapolnov.buildsystem.project.directives.TargetPlatformSelectorDirective;
+import com.zapolnov.buildsystem.utility.DirectoryWalker;
+import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.Log;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches project files and regenerates the project when they change.
+ * Project, project builder and the build database are kept in memory between regenerations.
+ *
+ * Directories of the project are registered when watching starts and after the project file has been reloaded;
+ * subdirectories created later are registered as they appear. Files and directories excluded from source
+ * directories are neither watched nor trigger regeneration.
+ */
+public class ProjectWatcher
+{
+    /** Time (in milliseconds) without file system events after which the project is regenerated. */
+    public static final long QUIET_PERIOD = 50;
+
+    /** Project builder. */
+    private ProjectBuilder projectBuilder;
+    /** File system watch service. */
+    private WatchService watchService;
+    /** Map of registered watch keys to the watched directories. */
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    /** Exclusion patterns of the source directories (keyed by canonical path to the source directory). */
+    private final Map<Path, List<PathMatcher>> excludes = new HashMap<>();
+    /** Set to `true` when changes in project files have been detected. */
+    private boolean changesDetected;
+    /** Set to `true` when changes in the project file have been detected. */
+    private boolean projectFileChanged;
+
+    /**
+     * Constructor.
+     * @param projectBuilder Project builder.
+     */
+    public ProjectWatcher(ProjectBuilder projectBuilder)
+    {
+        this.projectBuilder = projectBuilder;
+    }
+
+    /**
+     * Retrieves current project builder.
+     * Project builder is replaced with a new one when project file changes.
+     * @return Project builder.
+     */
+    public ProjectBuilder projectBuilder()
+    {
+        return projectBuilder;
+    }
+
+    /**
+     * Builds the project and then regenerates it every time project files change.
+     * This method returns only if thread has been interrupted.
+     */
+    public void run() throws Throwable
+    {
+        projectBuilder.database.setKeepOpen(true);
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            watchService = service;
+
+            rebuild(false);
+            for (;;) {
+                WatchKey key;
+                try {
+                    key = watchService.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                changesDetected = false;
+                projectFileChanged = false;
+                processEvents(key);
+
+                // Coalesce bursts of events into a single regeneration
+                try {
+                    while ((key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) != null)
+                        processEvents(key);
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                if (changesDetected)
+                    rebuild(projectFileChanged);
+            }
+        } finally {
+            watchService = null;
+            watchedDirectories.clear();
+            excludes.clear();
+            projectBuilder.database.setKeepOpen(false);
+            projectBuilder.database.close();
+        }
+    }
+
+    /**
+     * Rebuilds the project.
+     * @param reloadProject Set to `true` to re-read the project file before building.
+     */
+    private void rebuild(boolean reloadProject)
+    {
+        long startTime = System.nanoTime();
+
+        try {
+            if (reloadProject) {
+                Log.info("Reloading project.");
+                Project project = ProjectReader.read(projectBuilder.project.directory);
+                ProjectBuilder newProjectBuilder = new ProjectBuilder(project, projectBuilder.database);
+                newProjectBuilder.setGenerator(projectBuilder.generator());
+                newProjectBuilder.setNumberOfThreads(projectBuilder.numberOfThreads());
+                projectBuilder = newProjectBuilder;
+            }
+
+            projectBuilder.run();
+
+            long milliseconds = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+            Log.info(String.format("Project has been generated in %d ms.", milliseconds));
+        } catch (Throwable t) {
+            Log.error(StringUtils.getShortExceptionMessage(t));
+        }
+
+        if (reloadProject || watchedDirectories.isEmpty()) {
+            try {
+                registerProjectDirectories();
+            } catch (Throwable t) {
+                Log.error(StringUtils.getShortExceptionMessage(t));
+            }
+        }
+
+        Log.info("Watching for changes...");
+    }
+
+    /**
+     * Processes events for the specified watch key.
+     * @param key Watch key.
+     */
+    private void processEvents(WatchKey key) throws IOException
+    {
+        Path directory = watchedDirectories.get(key);
+        Path outputDirectory = projectBuilder.outputDirectory().toPath();
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                FileUtils.invalidateCanonicalPathCache();
+                changesDetected = true;
+                projectFileChanged = true;
+                continue;
+            }
+
+            if (directory == null)
+                continue;
+
+            Path path = directory.resolve((Path)event.context());
+            if (path.startsWith(outputDirectory))
+                continue;
+
+            boolean isProjectFile = Project.PROJECT_FILE_NAME.equals(path.getFileName().toString());
+            if (!isProjectFile && isExcluded(path))
+                continue;
+
+            Log.trace(String.format("Detected change in \"%s\".", path));
+            changesDetected = true;
+            if (isProjectFile)
+                projectFileChanged = true;
+
+            // Created or deleted entries (including symbolic links) may change canonical paths of other files
+            if (event.kind() != StandardWatchEventKinds.ENTRY_MODIFY)
+                FileUtils.invalidateCanonicalPath(path.toFile());
+
+            if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path))
+                registerDirectoryTree(path);
+        }
+
+        if (!key.reset())
+            watchedDirectories.remove(key);
+    }
+
+    /**
+     * Registers all directories of the project in the watch service.
+     * Directories that are no longer part of the project are unregistered.
+     */
+    private void registerProjectDirectories() throws IOException
+    {
+        final Set<File> directoryTrees = new LinkedHashSet<>();
+        final Set<File> directories = new LinkedHashSet<>();
+
+        excludes.clear();
+
+        directoryTrees.add(projectBuilder.project.directory);
+        projectBuilder.project.scope.visit(new ProjectVisitor() {
+            @Override public void visitImport(ImportDirective directive) {
+                directoryTrees.add(directive.scope.directory);
+            }
+            @Override public void visitSourceDirectories(SourceDirectoriesDirective directive) {
+                directoryTrees.addAll(directive.sourceDirectories());
+                if (!directive.excludes().isEmpty()) {
+                    for (File directory : directive.sourceDirectories()) {
+                        Path path = FileUtils.getCanonicalFile(directory).toPath();
+                        excludes.computeIfAbsent(path, key -> new ArrayList<>()).addAll(directive.excludes());
+                    }
+                }
+            }
+            @Override public void visitSourceFiles(SourceFilesDirective directive) {
+                for (File file : directive.sourceFiles())
+                    directories.add(file.getParentFile());
+            }
+            @Override public boolean visitTargetPlatformSelector(TargetPlatformSelectorDirective directive) {
+                return true;
+            }
+        });
+
+        // Registering an already registered directory returns the existing key, so that pending events are kept
+        Map<WatchKey, Path> previousDirectories = new HashMap<>(watchedDirectories);
+        watchedDirectories.clear();
+
+        for (File directory : directoryTrees)
+            registerDirectoryTree(FileUtils.getCanonicalFile(directory).toPath());
+        for (File directory : directories)
+            registerDirectory(FileUtils.getCanonicalFile(directory).toPath());
+
+        for (WatchKey key : previousDirectories.keySet()) {
+            if (!watchedDirectories.containsKey(key))
+                key.cancel();
+        }
+    }
+
+    /**
+     * Checks whether the specified path is excluded from any of the source directories containing it.
+     * @param path Canonical path to the file or directory.
+     * @return `true` if path is excluded, otherwise returns `false`.
+     */
+    private boolean isExcluded(Path path)
+    {
+        for (Map.Entry<Path, List<PathMatcher>> it : excludes.entrySet()) {
+            Path sourceDirectory = it.getKey();
+            if (path.startsWith(sourceDirectory) && !path.equals(sourceDirectory)) {
+                if (DirectoryWalker.isExcluded(it.getValue(), sourceDirectory.relativize(path)))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the specified directory and all it's subdirectories in the watch service.
+     * Output directory of the project and subdirectories excluded from source directories are not registered.
+     * @param directory Path to the directory.
+     */
+    private void registerDirectoryTree(Path directory) throws IOException
+    {
+        final Path outputDirectory = projectBuilder.outputDirectory().toPath();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.startsWith(outputDirectory) || (!dir.equals(directory) && isExcluded(dir)))
+                    return FileVisitResult.SKIP_SUBTREE;
+                registerDirectory(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * Registers the specified directory in the watch service.
+     * @param directory Path to the directory.
+     */
+    private void registerDirectory(Path directory) throws IOException
+    {
+        if (!Files.isDirectory(directory) || directory.startsWith(projectBuilder.outputDirectory().toPath()))
+            return;
+
+        WatchKey key = directory.register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE,
+            StandardWatchEventKinds.ENTRY_DELETE,
+            StandardWatchEventKinds.ENTRY_MODIFY);
+        watchedDirectories.put(key, directory);
+    }
+}
@@ -32,7 +32,9 @@ import com.zapolnov.buildsystem.project.directives.SourceFilesDirective;
 import com.zapolnov.buildsystem.project.directives.TargetNameDirective;
 import com.zapolnov.buildsystem.project.directives.TargetPlatformSelectorDirective;
 import com.zapolnov.buildsystem.utility.FileBuilder;
+import com.zapolnov.buildsystem.utility.FileType;
 import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.RelativePathResolver;
 import com.zapolnov.buildsystem.utility.StringUtils;
 import com.zapolnov.buildsystem.utility.SystemUtils;
 import com.zapolnov.buildsystem.utility.Template;
@@ -40,10 +42,13 @@ import java.io.File;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /** Utilities for CMake-based generators. */
 public class CMakeGeneratorUtilities
@@ -78,13 +83,16 @@ public class CMakeGeneratorUtilities
         final File srcDir = new File(projectBuilder.generatorOutputDirectory(), "src");
         final String[] targetName = new String[]{ "Project" };
         final List<String> defines = new ArrayList<>();
-        final List<File> projectIncludeDirectories = new ArrayList<>();
-        final List<File> systemIncludeDirectories = new ArrayList<>();
+        // Several directives may reference the same files (e.g. shared file2c data), so sets are used to keep
+        // the generated lists free of duplicates
+        final Set<File> projectIncludeDirectories = new LinkedHashSet<>();
+        final Set<File> systemIncludeDirectories = new LinkedHashSet<>();
         final List<File> projectDirectories = new ArrayList<>();
-        final List<File> headerFiles = new ArrayList<>();
-        final List<File> sourceFiles = new ArrayList<>();
-        final List<File> thirdPartyHeaderFiles = new ArrayList<>();
-        final List<File> thirdPartySourceFiles = new ArrayList<>();
+        final Set<File> headerFiles = new LinkedHashSet<>();
+        final Set<File> sourceFiles = new LinkedHashSet<>();
+        final Set<File> thirdPartyHeaderFiles = new LinkedHashSet<>();
+        final Set<File> thirdPartySourceFiles = new LinkedHashSet<>();
+        final boolean[] hasAssemblerSourceFiles = new boolean[]{ false };
 
         projectBuilder.project.scope.visit(new ProjectVisitor() {
             @Override public void visitImport(ImportDirective directive) {
@@ -106,12 +114,12 @@ public class CMakeGeneratorUtilities
                 directive.visitFiles(this);
             }
             @Override public void visitSourceFiles(SourceFilesDirective directive) {
-                for (File file : directive.sourceFiles()) {
-                    if (FileUtils.isCSourceFile(file) || FileUtils.isCxxSourceFile(file))
-                        (directive.thirdparty ? thirdPartySourceFiles : sourceFiles).add(file);
-                    else if (FileUtils.isHeaderFile(file))
-                        (directive.thirdparty ? thirdPartyHeaderFiles : headerFiles).add(file);
-                }
+                (directive.thirdparty ? thirdPartySourceFiles : sourceFiles).addAll(directive.sourceFiles(
+                    FileType.C_SOURCE, FileType.CXX_SOURCE, FileType.ASSEMBLER_SOURCE));
+                (directive.thirdparty ? thirdPartyHeaderFiles : headerFiles).addAll(
+                    directive.sourceFiles(FileType.HEADER));
+                if (!directive.sourceFiles(FileType.ASSEMBLER_SOURCE).isEmpty())
+                    hasAssemblerSourceFiles[0] = true;
             }
             @Override public boolean visitTargetPlatformSelector(TargetPlatformSelectorDirective directive) {
                 return directive.targetPlatform == projectBuilder.generator().targetPlatform();
@@ -132,11 +140,14 @@ public class CMakeGeneratorUtilities
 
         // Build list of INCLUDE_DIRECTORIES() commands
 
+        RelativePathResolver srcDirResolver = new RelativePathResolver(srcDir);
+        RelativePathResolver projectDirResolver = new RelativePathResolver(projectBuilder.project.directory);
+
         StringBuilder includeDirectories = new StringBuilder();
         if (!projectIncludeDirectories.isEmpty()) {
             includeDirectories.append("include_directories(\n");
             for (File directory : projectIncludeDirectories) {
-                String relativePath = FileUtils.getRelativePath(srcDir, directory);
+                String relativePath = srcDirResolver.resolve(directory);
                 includeDirectories.append(String.format("    \"%s\"\n", cmakeEscapePath(relativePath)));
             }
             includeDirectories.append(")\n");
@@ -144,7 +155,7 @@ public class CMakeGeneratorUtilities
         if (!systemIncludeDirectories.isEmpty()) {
             includeDirectories.append("include_directories(SYSTEM\n");
             for (File directory : systemIncludeDirectories) {
-                String relativePath = FileUtils.getRelativePath(srcDir, directory);
+                String relativePath = srcDirResolver.resolve(directory);
                 includeDirectories.append(String.format("    \"%s\"\n", cmakeEscapePath(relativePath)));
             }
             includeDirectories.append(")\n");
@@ -153,14 +164,14 @@ public class CMakeGeneratorUtilities
         // Build list of project files
 
         Map<String, List<String>> projectFileGroups = new LinkedHashMap<>();
+        RelativePathResolver outputDirResolver = new RelativePathResolver(projectBuilder.generatorOutputDirectory());
         StringBuilder projectFileList = new StringBuilder();
         projectFileList.append(String.format("\"%s\"\n", cmakeEscapePath(
             FileUtils.getCanonicalPath(new File(projectBuilder.project.directory, Project.PROJECT_FILE_NAME)))));
         for (File projectDirectory : projectDirectories) {
             List<String> items = new ArrayList<>();
             File projectFile = new File(projectDirectory, Project.PROJECT_FILE_NAME);
-            extractSourceFileRelativePaths(projectBuilder.project, projectBuilder.generatorOutputDirectory(), projectFile,
-                items, projectFileGroups);
+            extractSourceFileRelativePaths(outputDirResolver, projectDirResolver, projectFile, items, projectFileGroups);
             projectFileList.append(String.format("        \"%s\"\n", cmakeEscapePath(items.get(0))));
         }
 
@@ -188,10 +199,10 @@ public class CMakeGeneratorUtilities
         List<String> thirdPartySourcePaths = new ArrayList<>();
         List<String> thirdPartyHeaderPaths = new ArrayList<>();
 
-        enumerateSourceFiles(projectBuilder.project, srcDir, sourceFiles, sourcePaths, sourceGroups);
-        enumerateSourceFiles(projectBuilder.project, srcDir, headerFiles, headerPaths, sourceGroups);
-        enumerateSourceFiles(projectBuilder.project, srcDir, thirdPartySourceFiles, thirdPartySourcePaths, sourceGroups);
-        enumerateSourceFiles(projectBuilder.project, srcDir, thirdPartyHeaderFiles, thirdPartyHeaderPaths, sourceGroups);
+        enumerateSourceFiles(srcDirResolver, projectDirResolver, sourceFiles, sourcePaths, sourceGroups);
+        enumerateSourceFiles(srcDirResolver, projectDirResolver, headerFiles, headerPaths, sourceGroups);
+        enumerateSourceFiles(srcDirResolver, projectDirResolver, thirdPartySourceFiles, thirdPartySourcePaths, sourceGroups);
+        enumerateSourceFiles(srcDirResolver, projectDirResolver, thirdPartyHeaderFiles, thirdPartyHeaderPaths, sourceGroups);
 
         // Write root CMakeLists.txt
 
@@ -219,6 +230,7 @@ public class CMakeGeneratorUtilities
         options.put("target_name", cmakeEscape(targetName[0]));
         options.put("defines", definitions.toString());
         options.put("include_directories", includeDirectories.toString());
+        options.put("enable_languages", hasAssemblerSourceFiles[0] ? "\nenable_language(ASM)\n" : "");
         srcTemplate.emit(builder, options);
 
         builder.commit(projectBuilder.database);
@@ -379,36 +391,39 @@ public class CMakeGeneratorUtilities
 
     /**
      * Builds a list of relative paths to source files.
-     * @param project Project.
-     * @param srcDir Directory containing CMakeLists.txt file.
+     * @param srcDirResolver Resolver of paths relative to the directory containing CMakeLists.txt file.
+     * @param projectDirResolver Resolver of paths relative to the project directory.
      * @param inFiles List of source files.
      * @param outPaths Output list.
      * @param outGroups Output map of groups.
      */
-    private static void enumerateSourceFiles(Project project, File srcDir, List<File> inFiles,
-        List<String> outPaths, Map<String, List<String>> outGroups) throws IOException
+    private static void enumerateSourceFiles(RelativePathResolver srcDirResolver,
+        RelativePathResolver projectDirResolver, Collection<File> inFiles, List<String> outPaths,
+        Map<String, List<String>> outGroups)
     {
-        for (File source : inFiles)
-            extractSourceFileRelativePaths(project, srcDir, FileUtils.getCanonicalFile(source), outPaths, outGroups);
+        for (File source : inFiles) {
+            extractSourceFileRelativePaths(srcDirResolver, projectDirResolver, FileUtils.getCanonicalFile(source),
+                outPaths, outGroups);
+        }
     }
 
     /**
      * Adds file to the list of output files, sorted by groups.
-     * @param project Project
-     * @param baseDirectory Base directory of the file.
+     * @param baseDirResolver Resolver of paths relative to the base directory of the file.
+     * @param projectDirResolver Resolver of paths relative to the project directory.
      * @param file File name.
      * @param outPaths Output list.
      * @param outGroups Output map of groups.
      */
-    private static void extractSourceFileRelativePaths(Project project, File baseDirectory, File file,
-        List<String> outPaths, Map<String, List<String>> outGroups) throws IOException
+    private static void extractSourceFileRelativePaths(RelativePathResolver baseDirResolver,
+        RelativePathResolver projectDirResolver, File file, List<String> outPaths, Map<String, List<String>> outGroups)
     {
-        String path = FileUtils.getRelativePath(baseDirectory, file);
+        String path = baseDirResolver.resolve(file);
 
         if (outPaths != null)
             outPaths.add(path);
 
-        String sourceGroup = FileUtils.getRelativePath(project.directory, file.getParentFile());
+        String sourceGroup = projectDirResolver.resolve(file.getParentFile());
         List<String> list = outGroups.get(sourceGroup);
         if (list == null) {
             list = new ArrayList<>();
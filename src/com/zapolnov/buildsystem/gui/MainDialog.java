@@ -223,6 +223,9 @@ public class MainDialog extends JDialog
     {
         BuildDialog buildDialog = new BuildDialog(this);
 
+        // Directories could have been moved or symlinks re-pointed since the previous build
+        FileUtils.invalidateCanonicalPathCache();
+
         try {
             projectSettingsPanel.validateAndSaveSettings();
 
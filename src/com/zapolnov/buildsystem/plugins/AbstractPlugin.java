@@ -29,6 +29,23 @@ import java.util.Map;
 /** Abstract base class for plugins. */
 public abstract class AbstractPlugin
 {
+    /**
+     * Retrieves name of the plugin.
+     * @return Name of the package for plugins named `Plugin`, otherwise name of the class.
+     */
+    public String name()
+    {
+        Class<?> pluginClass = getClass();
+        String name = pluginClass.getName();
+        if (!"Plugin".equals(pluginClass.getSimpleName()))
+            return pluginClass.getSimpleName();
+
+        int index = name.lastIndexOf('.');
+        if (index <= 0)
+            return name;
+        return name.substring(name.lastIndexOf('.', index - 1) + 1, index);
+    }
+
     /**
      * Invoked before project build.
      * @param projectBuilder Project builder.
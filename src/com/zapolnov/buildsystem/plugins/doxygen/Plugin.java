@@ -28,8 +28,8 @@ import com.zapolnov.buildsystem.project.directives.SourceDirectoriesDirective;
 import com.zapolnov.buildsystem.project.directives.SourceFilesDirective;
 import com.zapolnov.buildsystem.project.directives.TargetPlatformSelectorDirective;
 import com.zapolnov.buildsystem.utility.FileBuilder;
+import com.zapolnov.buildsystem.utility.FileType;
 import com.zapolnov.buildsystem.utility.FileUtils;
-import com.zapolnov.buildsystem.utility.StringUtils;
 import com.zapolnov.buildsystem.utility.SystemUtils;
 import java.io.File;
 import java.util.ArrayList;
@@ -38,7 +38,6 @@ import java.util.List;
 /** Plugin that generates the Doxyfile.inc file. */
 @SuppressWarnings("unused") public class Plugin extends AbstractPlugin
 {
-    public static final String[] EXTENSIONS = new String[]{ ".dox" };
     public static final String DOXYFILE_INC = "Doxyfile.inc";
 
     @Override public void postGenerate(ProjectBuilder projectBuilder) throws Throwable
@@ -50,12 +49,8 @@ import java.util.List;
                 directive.visitFiles(this);
             }
             @Override public void visitSourceFiles(SourceFilesDirective directive) {
-                if (!directive.thirdparty) {
-                    for (File file : directive.sourceFiles()) {
-                        if (FileUtils.isHeaderFile(file) || StringUtils.fileHasExtension(file, EXTENSIONS))
-                            headerFiles.add(file);
-                    }
-                }
+                if (!directive.thirdparty)
+                    headerFiles.addAll(directive.sourceFiles(FileType.HEADER, FileType.DOX));
             }
             @Override public boolean visitTargetPlatformSelector(TargetPlatformSelectorDirective directive) {
                 return directive.targetPlatform == projectBuilder.generator().targetPlatform();
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.file2c;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses files in independent blocks.
+ *
+ * Input file is split into blocks of `BLOCK_SIZE` bytes (the last block may be shorter) and each block is compressed
+ * separately, so that blocks could be compressed in parallel. Compressed blocks are passed to the consumer one after
+ * another in order.
+ */
+public final class BlockCompressor
+{
+    /** Receiver of compressed blocks. */
+    public interface Consumer
+    {
+        /**
+         * Writes compressed block.
+         * @param block Compressed data.
+         */
+        void write(byte[] block) throws IOException;
+    }
+
+    /** Size of the uncompressed block. */
+    public static final int BLOCK_SIZE = 1024 * 1024;
+
+    /** Compression method. */
+    private final CompressionMethod compressionMethod;
+    /** Number of threads to use. */
+    private final int numberOfThreads;
+
+    /**
+     * Constructor.
+     * @param compressionMethod Compression method.
+     * @param numberOfThreads Number of threads to use.
+     */
+    public BlockCompressor(CompressionMethod compressionMethod, int numberOfThreads)
+    {
+        this.compressionMethod = compressionMethod;
+        this.numberOfThreads = Math.max(numberOfThreads, 1);
+    }
+
+    /**
+     * Calculates number of blocks for the input of the specified size.
+     * Empty input is represented by a single empty block.
+     * @param inputLength Length of the input.
+     * @return Number of blocks.
+     */
+    public static long numberOfBlocks(long inputLength)
+    {
+        return Math.max((inputLength + BLOCK_SIZE - 1) / BLOCK_SIZE, 1);
+    }
+
+    /**
+     * Compresses the input file.
+     * @param input Input file.
+     * @param output Consumer of the compressed data.
+     * @return Offsets of compressed blocks in the output data. Last element is the total length of compressed data.
+     */
+    public long[] compress(File input, Consumer output) throws Throwable
+    {
+        try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            long inputLength = channel.size();
+            int numberOfBlocks = (int)numberOfBlocks(inputLength);
+            long[] offsets = new long[numberOfBlocks + 1];
+
+            int threads = Math.min(numberOfThreads, numberOfBlocks);
+            if (threads <= 1) {
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    byte[] block = compressBlock(channel, i, inputLength);
+                    writeBlock(output, offsets, i, block);
+                }
+                return offsets;
+            }
+
+            // Number of blocks in flight is limited to keep memory usage bounded for large inputs
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                Deque<Future<byte[]>> futures = new ArrayDeque<>();
+                int nextBlock = 0;
+                for (int i = 0; i < numberOfBlocks; i++) {
+                    while (nextBlock < numberOfBlocks && futures.size() < threads * 2) {
+                        final int blockIndex = nextBlock++;
+                        Callable<byte[]> task = () -> compressBlock(channel, blockIndex, inputLength);
+                        futures.add(executor.submit(task));
+                    }
+
+                    try {
+                        writeBlock(output, offsets, i, futures.poll().get());
+                    } catch (ExecutionException e) {
+                        throw e.getCause();
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+
+            return offsets;
+        }
+    }
+
+    /**
+     * Writes compressed block to the output.
+     * @param output Consumer of the compressed data.
+     * @param offsets Offsets of compressed blocks.
+     * @param index Index of the block.
+     * @param block Compressed data.
+     */
+    private static void writeBlock(Consumer output, long[] offsets, int index, byte[] block) throws IOException
+    {
+        output.write(block);
+        offsets[index + 1] = offsets[index] + block.length;
+    }
+
+    /**
+     * Reads and compresses a single block of the input file.
+     * @param channel Input file.
+     * @param index Index of the block.
+     * @param inputLength Length of the input file.
+     * @return Compressed data.
+     */
+    private byte[] compressBlock(FileChannel channel, int index, long inputLength) throws IOException
+    {
+        long position = (long)index * BLOCK_SIZE;
+        int length = (int)Math.min(BLOCK_SIZE, inputLength - position);
+
+        byte[] data = new byte[length];
+        if (length > 0) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            buffer.get(data);
+        }
+
+        switch (compressionMethod)
+        {
+        case DEFLATE:
+            return deflate(data);
+        case LZ4:
+            return lz4(data);
+        }
+
+        throw new RuntimeException(String.format("Unsupported compression method \"%s\".", compressionMethod.name));
+    }
+
+    /**
+     * Compresses data using the raw DEFLATE format (without the zlib header).
+     * @param data Data to compress.
+     * @return Compressed data.
+     */
+    private static byte[] deflate(byte[] data)
+    {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream stream = new ByteArrayOutputStream(data.length / 2 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                stream.write(buffer, 0, length);
+            }
+
+            return stream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compresses data using the LZ4 block format.
+     * @param data Data to compress.
+     * @return Compressed data.
+     */
+    private static byte[] lz4(byte[] data)
+    {
+        byte[] buffer = new byte[Lz4Compressor.maxCompressedLength(data.length)];
+        int length = Lz4Compressor.compress(data, 0, data.length, buffer, 0);
+        return Arrays.copyOf(buffer, length);
+    }
+}
@@ -25,7 +25,11 @@ package com.zapolnov.buildsystem.plugins.file2c;
 public enum CompressionMethod
 {
     /** No compression. */
-    NONE("none");
+    NONE("none"),
+    /** Raw DEFLATE (RFC 1951). */
+    DEFLATE("deflate"),
+    /** LZ4 block format. */
+    LZ4("lz4");
 
     /** Name of the compression method. */
     public final String name;
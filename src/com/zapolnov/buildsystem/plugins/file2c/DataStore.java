@@ -0,0 +1,504 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.file2c;
+
+import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.utility.FileBuilder;
+import com.zapolnov.buildsystem.utility.FileFingerprint;
+import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.Log;
+import com.zapolnov.buildsystem.utility.StreamingFileBuilder;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import com.zapolnov.buildsystem.utility.Template;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Content-addressed store for the data generated by the 'file2c' directives.
+ *
+ * Generated files are keyed by hash of the input file contents, compression method and output mode, so that
+ * directives embedding identical files (e.g. the same font in several imported modules) share a single copy of
+ * the data. Each directive still generates its own header exposing the data under its own identifier and namespace.
+ * This class is thread-safe: concurrent requests for the same entry wait for a single generation to complete.
+ */
+public final class DataStore
+{
+    /** Name of the header with decompression routines. */
+    public static final String RUNTIME_HEADER_NAME = "file2c_runtime.h";
+    /** Version of the format of generated files. Changing it invalidates all existing entries. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Template for the header with decompression routines. */
+    private static final Template runtimeHeaderTemplate;
+
+    /** An entry in the store. */
+    public static final class Entry
+    {
+        /** Key of the entry. */
+        public final String key;
+        /** Name of the C symbol for the data. */
+        public final String symbol;
+        /** Compression method. */
+        public final CompressionMethod compressionMethod;
+        /** Header declaring the data. */
+        public final File headerFile;
+        /** Source files to compile. */
+        public final List<File> sourceFiles;
+
+        /**
+         * Constructor.
+         * @param key Key of the entry.
+         * @param compressionMethod Compression method.
+         * @param headerFile Header declaring the data.
+         * @param sourceFiles Source files to compile.
+         */
+        private Entry(String key, CompressionMethod compressionMethod, File headerFile, List<File> sourceFiles)
+        {
+            this.key = key;
+            this.symbol = String.format("file2c_%s", key);
+            this.compressionMethod = compressionMethod;
+            this.headerFile = headerFile;
+            this.sourceFiles = Collections.unmodifiableList(sourceFiles);
+        }
+    }
+
+    /** Entries requested during the current build. */
+    private final ConcurrentHashMap<String, FutureTask<Entry>> entries = new ConcurrentHashMap<>();
+    /** Canonical paths to the data files for uncompressed `.incbin` entries (keyed by the entry key). */
+    private final ConcurrentHashMap<String, String> incbinInputs = new ConcurrentHashMap<>();
+    /** Set to `true` when runtime header has been written during the current build. */
+    private final AtomicBoolean runtimeHeaderWritten = new AtomicBoolean();
+
+    /**
+     * Retrieves directory of the store.
+     * @param projectBuilder Project builder.
+     * @return Directory of the store.
+     */
+    public static File directory(ProjectBuilder projectBuilder)
+    {
+        return FileUtils.getCanonicalFile(new File(projectBuilder.outputDirectory(), "file2c/store"));
+    }
+
+    /**
+     * Retrieves directory that should be added to the header search paths.
+     * @param projectBuilder Project builder.
+     * @return Header search path.
+     */
+    public static File headerSearchPath(ProjectBuilder projectBuilder)
+    {
+        return FileUtils.getCanonicalFile(new File(projectBuilder.outputDirectory(), "file2c/include"));
+    }
+
+    /** Forgets all entries requested during the previous build. */
+    public void reset()
+    {
+        entries.clear();
+        incbinInputs.clear();
+        runtimeHeaderWritten.set(false);
+    }
+
+    /**
+     * Retrieves an entry for the specified input file, generating it if necessary.
+     * @param projectBuilder Project builder.
+     * @param input Input file.
+     * @param compressionMethod Compression method.
+     * @param outputMode Output mode.
+     * @return Store entry.
+     */
+    public Entry entry(ProjectBuilder projectBuilder, File input, CompressionMethod compressionMethod,
+        OutputMode outputMode) throws Throwable
+    {
+        // Fingerprint recorded by Database.didInputFileChange() is reused to avoid hashing the file again
+        FileFingerprint fingerprint = projectBuilder.database.inputFileFingerprint(input);
+        if (fingerprint == null || !fingerprint.hasSameAttributes(input))
+            fingerprint = FileFingerprint.forFile(input);
+
+        String key = StringUtils.toHex(StringUtils.md5ForObjects(StringUtils.toHex(fingerprint.hash()),
+            compressionMethod.name, outputMode.name, FORMAT_VERSION));
+
+        // Directives embedding identical files share the entry, the data is referenced from the input with
+        // the smallest path, so that the result does not depend on the order in which directives are executed
+        if (outputMode == OutputMode.INCBIN && compressionMethod == CompressionMethod.NONE) {
+            incbinInputs.merge(key, FileUtils.getCanonicalPath(input),
+                (path1, path2) -> (path1.compareTo(path2) <= 0 ? path1 : path2));
+        }
+
+        FutureTask<Entry> task = new FutureTask<>(() -> {
+            try {
+                return generate(projectBuilder, key, input, compressionMethod, outputMode);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new RuntimeException(t);
+            }
+        });
+        FutureTask<Entry> existingTask = entries.putIfAbsent(key, task);
+        if (existingTask == null) {
+            task.run();
+            existingTask = task;
+        }
+
+        try {
+            return existingTask.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes assembler sources for the uncompressed `.incbin` entries requested during the current build.
+     * Path to the input file is not a part of the key, so this method should be invoked after all directives have
+     * requested their entries. Sources are rewritten on every build to reference the current input.
+     * @param projectBuilder Project builder.
+     */
+    public void writeAssemblerFiles(ProjectBuilder projectBuilder) throws Throwable
+    {
+        File directory = directory(projectBuilder);
+        for (Map.Entry<String, String> it : new TreeMap<>(incbinInputs).entrySet()) {
+            Entry entry;
+            try {
+                entry = entries.get(it.getKey()).get();
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+            File assemblerFile = new File(directory, String.format("%s.S", it.getKey()));
+            writeAssemblerFile(projectBuilder, entry, assemblerFile, new File(it.getValue()));
+        }
+    }
+
+    /**
+     * Deletes files of entries that have not been requested during the current build.
+     * @param projectBuilder Project builder.
+     */
+    public void deleteStaleFiles(ProjectBuilder projectBuilder)
+    {
+        File[] files = directory(projectBuilder).listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            String name = file.getName();
+            int index = name.indexOf('.');
+            String key = (index >= 0 ? name.substring(0, index) : name);
+            if (!entries.containsKey(key) && file.isFile()) {
+                Log.debug(String.format("Deleting stale file \"%s\".", FileUtils.getCanonicalPath(file)));
+                if (!file.delete())
+                    Log.warn(String.format("Unable to delete file \"%s\".", FileUtils.getCanonicalPath(file)));
+            }
+        }
+    }
+
+    /**
+     * Generates files for the store entry, unless they already exist.
+     * @param projectBuilder Project builder.
+     * @param key Key of the entry.
+     * @param input Input file.
+     * @param compressionMethod Compression method.
+     * @param outputMode Output mode.
+     * @return Store entry.
+     */
+    private Entry generate(ProjectBuilder projectBuilder, String key, File input, CompressionMethod compressionMethod,
+        OutputMode outputMode) throws Throwable
+    {
+        File directory = directory(projectBuilder);
+        File headerFile = new File(directory, String.format("%s.h", key));
+        File sourceFile = new File(directory, String.format("%s.cpp", key));
+        File assemblerFile = new File(directory, String.format("%s.S", key));
+        File binaryFile = new File(directory, String.format("%s.bin", key));
+        boolean compressed = (compressionMethod != CompressionMethod.NONE);
+
+        List<File> sourceFiles = new ArrayList<>();
+        List<File> generatedFiles = new ArrayList<>();
+        if (outputMode == OutputMode.ARRAY || compressed) {
+            sourceFiles.add(sourceFile);
+            generatedFiles.add(sourceFile);
+        }
+        if (outputMode == OutputMode.INCBIN) {
+            sourceFiles.add(assemblerFile);
+            if (compressed)
+                generatedFiles.add(binaryFile);
+        }
+        generatedFiles.add(headerFile);
+
+        Entry entry = new Entry(key, compressionMethod, headerFile, sourceFiles);
+
+        if (compressed)
+            writeRuntimeHeader(projectBuilder);
+
+        // Uncompressed data is included directly from the input file, see `writeAssemblerFiles`
+        if (outputMode == OutputMode.INCBIN && compressed)
+            writeAssemblerFile(projectBuilder, entry, assemblerFile, binaryFile);
+
+        boolean allFilesExist = true;
+        for (File file : generatedFiles) {
+            if (!file.exists()) {
+                allFilesExist = false;
+                break;
+            }
+        }
+
+        if (allFilesExist) {
+            Log.trace(String.format("Reusing file2c data \"%s\" for \"%s\".", key, FileUtils.getCanonicalPath(input)));
+            return entry;
+        }
+
+        long uncompressedLength = input.length();
+        long length = uncompressedLength;
+        long[] blockOffsets = null;
+
+        switch (outputMode)
+        {
+        case ARRAY:
+            // Source file is streamed directly from the memory-mapped input, so that large files
+            // do not have to be loaded into memory
+            try (StreamingFileBuilder sourceBuilder = new StreamingFileBuilder(sourceFile)) {
+                appendSourceFilePrologue(sourceBuilder, headerFile);
+                if (!compressed) {
+                    sourceBuilder.append(String.format("extern \"C\" const uint8_t %s[%d] = {", entry.symbol, length));
+                    long actualLength = sourceBuilder.appendHexArrayFromFile(input);
+                    checkInputLength(input, uncompressedLength, actualLength);
+                } else {
+                    sourceBuilder.append(String.format("extern \"C\" const uint8_t %s[] = {", entry.symbol));
+                    blockOffsets = compress(projectBuilder, input, compressionMethod, uncompressedLength,
+                        block -> sourceBuilder.appendHexBytes(block, 0, block.length));
+                    sourceBuilder.flushHexBytes();
+                    length = blockOffsets[blockOffsets.length - 1];
+                }
+                sourceBuilder.append("\n};\n");
+                if (compressed)
+                    appendBlockOffsets(sourceBuilder, entry, blockOffsets);
+                sourceBuilder.commit(projectBuilder.database);
+            }
+            break;
+
+        case INCBIN:
+            if (compressed) {
+                try (StreamingFileBuilder binaryBuilder = new StreamingFileBuilder(binaryFile)) {
+                    blockOffsets = compress(projectBuilder, input, compressionMethod, uncompressedLength,
+                        binaryBuilder::append);
+                    binaryBuilder.commit(projectBuilder.database);
+                }
+
+                try (StreamingFileBuilder sourceBuilder = new StreamingFileBuilder(sourceFile)) {
+                    appendSourceFilePrologue(sourceBuilder, headerFile);
+                    appendBlockOffsets(sourceBuilder, entry, blockOffsets);
+                    sourceBuilder.commit(projectBuilder.database);
+                }
+
+                length = blockOffsets[blockOffsets.length - 1];
+            }
+            break;
+        }
+
+        writeHeader(projectBuilder, entry, outputMode, length, uncompressedLength, blockOffsets);
+        return entry;
+    }
+
+    /**
+     * Compresses the input file.
+     * @param projectBuilder Project builder.
+     * @param input Input file.
+     * @param compressionMethod Compression method.
+     * @param expectedLength Expected length of the input file.
+     * @param consumer Consumer of the compressed data.
+     * @return Offsets of compressed blocks in the output data. Last element is the total length of compressed data.
+     */
+    private static long[] compress(ProjectBuilder projectBuilder, File input, CompressionMethod compressionMethod,
+        long expectedLength, BlockCompressor.Consumer consumer) throws Throwable
+    {
+        BlockCompressor compressor = new BlockCompressor(compressionMethod, projectBuilder.numberOfThreads());
+        long[] blockOffsets = compressor.compress(input, consumer);
+        checkInputLength(input, expectedLength, input.length());
+
+        Log.debug(String.format("Compressed \"%s\": %d bytes -> %d bytes.",
+            FileUtils.getCanonicalPath(input), expectedLength, blockOffsets[blockOffsets.length - 1]));
+
+        return blockOffsets;
+    }
+
+    /**
+     * Ensures that input file has not been modified while reading it.
+     * @param input Input file.
+     * @param expectedLength Length of the file before reading.
+     * @param actualLength Length of the file after reading.
+     */
+    private static void checkInputLength(File input, long expectedLength, long actualLength)
+    {
+        if (actualLength != expectedLength) {
+            throw new RuntimeException(String.format("File \"%s\" has been modified while reading it.",
+                FileUtils.getCanonicalPath(input)));
+        }
+    }
+
+    /**
+     * Writes the beginning of the generated source file.
+     * @param builder Source file builder.
+     * @param headerFile Header file of the entry.
+     */
+    private static void appendSourceFilePrologue(StreamingFileBuilder builder, File headerFile) throws IOException
+    {
+        builder.appendCxxAutogeneratedHeader();
+        builder.append(String.format("#include \"%s\"\n", headerFile.getName()));
+        builder.append("\n");
+    }
+
+    /**
+     * Writes the table of compressed block offsets.
+     * @param builder Source file builder.
+     * @param entry Store entry.
+     * @param blockOffsets Offsets of compressed blocks.
+     */
+    private static void appendBlockOffsets(StreamingFileBuilder builder, Entry entry, long[] blockOffsets)
+        throws IOException
+    {
+        builder.append(String.format("extern \"C\" const size_t %s_block_offsets[] = {", entry.symbol));
+        for (int i = 0; i < blockOffsets.length; i++)
+            builder.append(String.format("%s%d,", (i % 8 == 0 ? "\n    " : " "), blockOffsets[i]));
+        builder.append("\n};\n");
+    }
+
+    /**
+     * Writes the header file declaring the data.
+     * @param projectBuilder Project builder.
+     * @param entry Store entry.
+     * @param outputMode Output mode.
+     * @param length Length of the data.
+     * @param uncompressedLength Length of the uncompressed data.
+     * @param blockOffsets Offsets of compressed blocks (or `null` if data is not compressed).
+     */
+    private static void writeHeader(ProjectBuilder projectBuilder, Entry entry, OutputMode outputMode, long length,
+        long uncompressedLength, long[] blockOffsets) throws Throwable
+    {
+        String symbol = entry.symbol;
+
+        FileBuilder builder = new FileBuilder(entry.headerFile.getParentFile(), entry.headerFile.getName());
+        builder.appendCxxAutogeneratedHeader();
+        builder.append("#pragma once\n");
+        builder.append('\n');
+        builder.append("#include <cstdint>\n");
+        builder.append("#include <cstddef>\n");
+        if (blockOffsets != null)
+            builder.append(String.format("#include \"%s\"\n", RUNTIME_HEADER_NAME));
+        builder.append('\n');
+        builder.append(String.format("enum : size_t { %s_size = %d };\n", symbol, length));
+        if (blockOffsets != null) {
+            builder.append(String.format("enum : size_t { %s_uncompressed_size = %d };\n", symbol, uncompressedLength));
+            builder.append(String.format("enum : size_t { %s_block_size = %d, %s_block_count = %d };\n",
+                symbol, BlockCompressor.BLOCK_SIZE, symbol, blockOffsets.length - 1));
+        }
+
+        // Symbols defined in the assembler source are referenced with an `__asm__` label, so that they are not
+        // affected by name mangling and platform-specific prefixes
+        if (outputMode == OutputMode.INCBIN)
+            builder.append(String.format("extern const uint8_t %s[%d] __asm__(\"%s\");\n", symbol, length, symbol));
+        else
+            builder.append(String.format("extern \"C\" const uint8_t %s[%d];\n", symbol, length));
+
+        if (blockOffsets != null)
+            builder.append(String.format("extern \"C\" const size_t %s_block_offsets[%d];\n",
+                symbol, blockOffsets.length));
+
+        builder.commit(projectBuilder.database);
+    }
+
+    /**
+     * Writes assembler source file that includes the data with the `.incbin` directive.
+     * @param projectBuilder Project builder.
+     * @param entry Store entry.
+     * @param assemblerFile Assembler source file.
+     * @param dataFile File to include.
+     */
+    private static void writeAssemblerFile(ProjectBuilder projectBuilder, Entry entry, File assemblerFile,
+        File dataFile) throws Throwable
+    {
+        // Build tools do not track files included with `.incbin`. Name of the assembler source contains hash
+        // of the input data, so a new source is generated (and assembled) whenever input changes.
+        FileBuilder builder = new FileBuilder(assemblerFile.getParentFile(), assemblerFile.getName());
+        builder.append("/* ------------------------------------------------------\n");
+        builder.append(" * THIS IS AN AUTOMATICALLY GENERATED FILE. DO NOT EDIT!\n");
+        builder.append(" * ------------------------------------------------------\n");
+        builder.append(" */\n");
+        builder.append('\n');
+        builder.append(String.format("/* Compression: %s */\n", entry.compressionMethod.name));
+        builder.append('\n');
+        builder.append("#if defined(__APPLE__)\n");
+        builder.append("    .const\n");
+        builder.append("#elif defined(_WIN32)\n");
+        builder.append("    .section .rdata,\"dr\"\n");
+        builder.append("#else\n");
+        builder.append("    .section .rodata\n");
+        builder.append("#endif\n");
+        builder.append('\n');
+        builder.append(String.format("    .globl %s\n", entry.symbol));
+        builder.append("    .balign 16\n");
+        builder.append(String.format("%s:\n", entry.symbol));
+        builder.append(String.format("    .incbin \"%s\"\n", assemblerEscapePath(dataFile)));
+        builder.append('\n');
+        builder.append("#if defined(__ELF__)\n");
+        builder.append("    .section .note.GNU-stack,\"\",%progbits\n");
+        builder.append("#endif\n");
+        builder.commit(projectBuilder.database);
+    }
+
+    /**
+     * Escapes path to the file for use in a string literal in the assembler source file.
+     * @param file File.
+     * @return Escaped path.
+     */
+    private static String assemblerEscapePath(File file)
+    {
+        return FileUtils.getCanonicalPath(file).replace('\\', '/').replace("\"", "\\\"");
+    }
+
+    /**
+     * Writes the header with decompression routines (once per build).
+     * @param projectBuilder Project builder.
+     */
+    private void writeRuntimeHeader(ProjectBuilder projectBuilder) throws Throwable
+    {
+        if (runtimeHeaderWritten.getAndSet(true))
+            return;
+
+        FileBuilder builder = new FileBuilder(headerSearchPath(projectBuilder), RUNTIME_HEADER_NAME);
+        builder.appendCxxAutogeneratedHeader();
+        runtimeHeaderTemplate.emit(builder, new HashMap<>());
+        builder.commit(projectBuilder.database);
+    }
+
+    static {
+        try {
+            runtimeHeaderTemplate = new Template(DataStore.class.getResourceAsStream(RUNTIME_HEADER_NAME));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
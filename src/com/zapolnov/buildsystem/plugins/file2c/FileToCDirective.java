@@ -31,6 +31,7 @@ import com.zapolnov.buildsystem.utility.FileUtils;
 import com.zapolnov.buildsystem.utility.StringUtils;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** A 'file2c' directive in the project file. */
@@ -46,114 +47,151 @@ import java.util.List;
     public final String namespace;
     /** Compression method. */
     public final CompressionMethod compressionMethod;
+    /** Output mode. */
+    public final OutputMode outputMode;
 
+    /** Store for the generated data. */
+    private final DataStore dataStore;
     /** Header search path. */
     private File headerSearchPath;
     /** Path to the generated header file. */
     private File headerFile;
-    /** Path to the generated source file. */
-    private File sourceFile;
+    /** Entry in the data store. */
+    private DataStore.Entry entry;
 
 
     /**
      * Constructor.
+     * @param dataStore Store for the generated data.
      * @param input Input file.
      * @param output Output file.
      * @param identifier Identifier.
      * @param namespace Namespace (or `null`).
      * @param compressionMethod Compression method.
+     * @param outputMode Output mode.
      */
-    public FileToCDirective(File input, String output, String identifier,
-        String namespace, CompressionMethod compressionMethod)
+    public FileToCDirective(DataStore dataStore, File input, String output, String identifier,
+        String namespace, CompressionMethod compressionMethod, OutputMode outputMode)
     {
+        this.dataStore = dataStore;
         this.input = input;
         this.output = output;
         this.identifier = identifier;
         this.namespace = namespace;
         this.compressionMethod = compressionMethod;
+        this.outputMode = outputMode;
     }
 
     @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
     {
-        File outputDirectory = projectBuilder.outputDirectory();
-        headerSearchPath = FileUtils.getCanonicalFile(new File(outputDirectory, "file2c/include"));
+        headerSearchPath = DataStore.headerSearchPath(projectBuilder);
         headerFile = FileUtils.getCanonicalFile(new File(headerSearchPath, output));
-        sourceFile = FileUtils.getCanonicalFile(new File(outputDirectory, String.format("file2c/%s.cpp", output)));
     }
 
     @Override public void build(ProjectBuilder projectBuilder) throws Throwable
     {
-        byte[] hash = StringUtils.md5ForObjects(input, output, identifier, namespace, compressionMethod.name);
-        if (!headerFile.exists() || !sourceFile.exists() || projectBuilder.database.didInputFileChange(input, hash)) {
-            byte[] data = FileUtils.byteArrayFromFile(input);
+        byte[] hash = StringUtils.md5ForObjects(input, output, identifier, namespace,
+            compressionMethod.name, outputMode.name);
+        // Input file should always be checked so that its fingerprint gets recorded for the data store
+        projectBuilder.database.didInputFileChange(input, hash);
 
-            switch (compressionMethod)
-            {
-            case NONE:
-                break;
-            }
+        // Data itself is generated by the store and shared by all directives with identical input files
+        entry = dataStore.entry(projectBuilder, input, compressionMethod, outputMode);
 
-            FileBuilder headerBuilder = new FileBuilder(headerFile.getParentFile(), headerFile.getName());
-            FileBuilder sourceBuilder = new FileBuilder(sourceFile.getParentFile(), sourceFile.getName());
-
-            headerBuilder.appendCxxAutogeneratedHeader();
-            sourceBuilder.appendCxxAutogeneratedHeader();
-
-            headerBuilder.append("#pragma once\n");
-            headerBuilder.append('\n');
-            headerBuilder.append("#include <cstdint>\n");
-            headerBuilder.append("#include <cstddef>\n");
-            headerBuilder.append('\n');
-
-            sourceBuilder.append(String.format("#include \"%s\"\n",
-                FileUtils.getRelativePath(sourceFile.getParentFile(), headerFile)));
-            sourceBuilder.append('\n');
-
-            writeNamespaceBegin(headerBuilder);
-            writeNamespaceBegin(sourceBuilder);
-
-            headerBuilder.append(String.format("enum : size_t { %s_size = %d };\n", identifier, data.length));
-            headerBuilder.append(String.format("extern const uint8_t %s[%d];\n", identifier, data.length));
+        // Header references the store entry, whose key may change even if input did not (e.g. when format of the
+        // store changes), so it is always regenerated. File is not rewritten if its contents did not change.
+        writeHeader(projectBuilder);
+    }
 
-            sourceBuilder.append(String.format("const uint8_t %s[%d] = {", identifier, data.length));
-            for (int i = 0; i < data.length; i++) {
-                if (i % 32 == 0)
-                    sourceBuilder.append("\n    ");
-                sourceBuilder.append("0x");
-                sourceBuilder.appendHex(data[i]);
-                sourceBuilder.append(',');
-            }
-            sourceBuilder.append("\n};\n");
+    @Override public List<File> inputFiles(ProjectBuilder projectBuilder)
+    {
+        return Collections.singletonList(input);
+    }
 
-            writeNamespaceEnd(headerBuilder);
-            writeNamespaceEnd(sourceBuilder);
+    @Override public List<File> outputFiles(ProjectBuilder projectBuilder)
+    {
+        // Files in the data store are shared by directives and are written only once (see `DataStore.entry`)
+        return Collections.singletonList(
+            FileUtils.getCanonicalFile(new File(DataStore.headerSearchPath(projectBuilder), output)));
+    }
 
-            headerBuilder.commit(projectBuilder.database);
-            sourceBuilder.commit(projectBuilder.database);
+    /**
+     * Writes the header file exposing the data under the identifier of this directive.
+     * @param projectBuilder Project builder.
+     */
+    private void writeHeader(ProjectBuilder projectBuilder) throws Throwable
+    {
+        String symbol = entry.symbol;
+
+        FileBuilder headerBuilder = new FileBuilder(headerFile.getParentFile(), headerFile.getName());
+        headerBuilder.appendCxxAutogeneratedHeader();
+        headerBuilder.append("#pragma once\n");
+        headerBuilder.append('\n');
+        headerBuilder.append(String.format("#include \"%s\"\n",
+            FileUtils.getRelativePath(headerFile.getParentFile(), entry.headerFile)));
+        headerBuilder.append('\n');
+        headerBuilder.append(namespaceBegin());
+        headerBuilder.append(String.format("enum : size_t { %s_size = %s_size };\n", identifier, symbol));
+        if (compressionMethod != CompressionMethod.NONE) {
+            headerBuilder.append(String.format("enum : size_t { %s_uncompressed_size = %s_uncompressed_size };\n",
+                identifier, symbol));
+            headerBuilder.append(String.format("enum : size_t { %s_block_size = %s_block_size, "
+                + "%s_block_count = %s_block_count };\n", identifier, symbol, identifier, symbol));
+        }
+        headerBuilder.append(String.format("static const uint8_t (&%s)[%s_size] = %s;\n",
+            identifier, identifier, symbol));
+        if (compressionMethod != CompressionMethod.NONE) {
+            headerBuilder.append(String.format("static const size_t (&%s_block_offsets)[%s_block_count + 1] = "
+                + "%s_block_offsets;\n", identifier, identifier, symbol));
+            headerBuilder.append('\n');
+            headerBuilder.append(String.format(
+                "/** Decompresses %s_uncompressed_size bytes of data into the buffer. */\n", identifier));
+            headerBuilder.append(String.format("inline bool %s_decompress(void* output)\n", identifier));
+            headerBuilder.append("{\n");
+            headerBuilder.append(String.format("    return file2c::decompress(file2c::%s, %s, %s_block_offsets,\n",
+                runtimeCompressionMethod(), identifier, identifier));
+            headerBuilder.append(String.format(
+                "        %s_block_count, %s_block_size, %s_uncompressed_size, output);\n",
+                identifier, identifier, identifier));
+            headerBuilder.append("}\n");
         }
+        headerBuilder.append(namespaceEnd());
+        headerBuilder.commit(projectBuilder.database);
     }
 
-    private void writeNamespaceBegin(FileBuilder builder)
+    /**
+     * Retrieves name of the compression method constant in the runtime header.
+     * @return Name of the constant.
+     */
+    private String runtimeCompressionMethod()
     {
-        if (namespace != null) {
-            builder.append(String.format("namespace %s {\n", namespace));
-            builder.append('\n');
+        switch (compressionMethod)
+        {
+        case DEFLATE: return "compression_deflate";
+        case LZ4: return "compression_lz4";
         }
+
+        throw new RuntimeException(String.format("Unsupported compression method \"%s\".", compressionMethod.name));
     }
 
-    private void writeNamespaceEnd(FileBuilder builder)
+    private String namespaceBegin()
     {
-        if (namespace != null) {
-            builder.append('\n');
-            builder.append(String.format("} // namespace %s\n", namespace));
-        }
+        return (namespace != null ? String.format("namespace %s {\n\n", namespace) : "");
+    }
+
+    private String namespaceEnd()
+    {
+        return (namespace != null ? String.format("\n} // namespace %s\n", namespace) : "");
     }
 
     @Override public void visit(ProjectVisitor visitor)
     {
         List<File> sourceFiles = new ArrayList<>();
         sourceFiles.add(headerFile);
-        sourceFiles.add(sourceFile);
+        if (entry != null) {
+            sourceFiles.add(entry.headerFile);
+            sourceFiles.addAll(entry.sourceFiles);
+        }
         visitor.visitSourceFiles(new SourceFilesDirective(sourceFiles, false));
 
         List<File> headerPaths = new ArrayList<>();
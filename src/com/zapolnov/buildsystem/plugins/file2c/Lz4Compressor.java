@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.file2c;
+
+/**
+ * Compressor producing data in the LZ4 block format.
+ *
+ * This is a simple greedy compressor: it looks up candidate matches in a hash table of 4-byte sequences and does
+ * not try to find the longest match. Output is compatible with any conforming LZ4 block decoder.
+ */
+public final class Lz4Compressor
+{
+    /** Minimum length of a match. */
+    private static final int MIN_MATCH = 4;
+    /** Number of bytes at the end of the block that are always encoded as literals. */
+    private static final int LAST_LITERALS = 5;
+    /** Last match should start at least this number of bytes before the end of the block. */
+    private static final int MATCH_FIND_LIMIT = 12;
+    /** Maximum distance to the match. */
+    private static final int MAX_DISTANCE = 65535;
+    /** Base 2 logarithm of the hash table size. */
+    private static final int HASH_LOG = 16;
+    /** Number of steps without a match after which search starts skipping bytes. */
+    private static final int SKIP_TRIGGER = 6;
+
+    /**
+     * Calculates maximum size of the compressed data.
+     * @param length Length of the input data.
+     * @return Maximum length of the compressed data.
+     */
+    public static int maxCompressedLength(int length)
+    {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses a block of data.
+     * @param input Input data.
+     * @param inputOffset Offset of the first byte of input data.
+     * @param inputLength Length of the input data.
+     * @param output Output buffer. Should be at least `maxCompressedLength(inputLength)` bytes long.
+     * @param outputOffset Offset in the output buffer.
+     * @return Length of the compressed data.
+     */
+    public static int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset)
+    {
+        int inputEnd = inputOffset + inputLength;
+        int matchLimit = inputEnd - LAST_LITERALS;
+        int matchFindLimit = inputEnd - MATCH_FIND_LIMIT;
+
+        int outputPosition = outputOffset;
+        int anchor = inputOffset;
+
+        if (inputLength > MATCH_FIND_LIMIT) {
+            int[] hashTable = new int[1 << HASH_LOG];
+            int position = inputOffset;
+            int searchCount = 1 << SKIP_TRIGGER;
+
+            while (position < matchFindLimit) {
+                int sequence = readInt(input, position);
+                int hash = hash(sequence);
+                int reference = hashTable[hash] - 1;
+                hashTable[hash] = position + 1;
+
+                if (reference < 0 || position - reference > MAX_DISTANCE || readInt(input, reference) != sequence) {
+                    position += searchCount++ >>> SKIP_TRIGGER;
+                    continue;
+                }
+
+                while (position > anchor && reference > inputOffset && input[position - 1] == input[reference - 1]) {
+                    --position;
+                    --reference;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < matchLimit
+                        && input[position + matchLength] == input[reference + matchLength])
+                    ++matchLength;
+
+                outputPosition = writeSequence(input, anchor, position - anchor,
+                    position - reference, matchLength, output, outputPosition);
+
+                position += matchLength;
+                anchor = position;
+                searchCount = 1 << SKIP_TRIGGER;
+            }
+        }
+
+        int literalLength = inputEnd - anchor;
+        output[outputPosition++] = (byte)(Math.min(literalLength, 15) << 4);
+        outputPosition = writeLength(literalLength, output, outputPosition);
+        System.arraycopy(input, anchor, output, outputPosition, literalLength);
+        outputPosition += literalLength;
+
+        return outputPosition - outputOffset;
+    }
+
+    /**
+     * Writes a sequence of literals followed by a match.
+     * @param input Input data.
+     * @param literalOffset Offset of the first literal.
+     * @param literalLength Number of literals.
+     * @param distance Distance to the match.
+     * @param matchLength Length of the match.
+     * @param output Output buffer.
+     * @param outputPosition Current position in the output buffer.
+     * @return New position in the output buffer.
+     */
+    private static int writeSequence(byte[] input, int literalOffset, int literalLength, int distance,
+        int matchLength, byte[] output, int outputPosition)
+    {
+        int matchLengthCode = matchLength - MIN_MATCH;
+        output[outputPosition++] = (byte)((Math.min(literalLength, 15) << 4) | Math.min(matchLengthCode, 15));
+        outputPosition = writeLength(literalLength, output, outputPosition);
+
+        System.arraycopy(input, literalOffset, output, outputPosition, literalLength);
+        outputPosition += literalLength;
+
+        output[outputPosition++] = (byte)distance;
+        output[outputPosition++] = (byte)(distance >>> 8);
+
+        return writeLength(matchLengthCode, output, outputPosition);
+    }
+
+    /**
+     * Writes extra bytes of the length that does not fit into the token.
+     * @param length Length.
+     * @param output Output buffer.
+     * @param outputPosition Current position in the output buffer.
+     * @return New position in the output buffer.
+     */
+    private static int writeLength(int length, byte[] output, int outputPosition)
+    {
+        if (length >= 15) {
+            length -= 15;
+            while (length >= 255) {
+                output[outputPosition++] = (byte)255;
+                length -= 255;
+            }
+            output[outputPosition++] = (byte)length;
+        }
+        return outputPosition;
+    }
+
+    /**
+     * Reads a little-endian 32-bit integer.
+     * @param data Input data.
+     * @param offset Offset of the integer.
+     * @return Integer value.
+     */
+    private static int readInt(byte[] data, int offset)
+    {
+        return (data[offset] & 0xFF)
+            | ((data[offset + 1] & 0xFF) << 8)
+            | ((data[offset + 2] & 0xFF) << 16)
+            | ((data[offset + 3] & 0xFF) << 24);
+    }
+
+    /**
+     * Calculates hash table index for the 4-byte sequence.
+     * @param sequence Sequence of bytes.
+     * @return Index in the hash table.
+     */
+    private static int hash(int sequence)
+    {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private Lz4Compressor() {}
+    static { new Lz4Compressor(); }
+}
@@ -21,6 +21,7 @@
  */
 package com.zapolnov.buildsystem.plugins.file2c;
 
+import com.zapolnov.buildsystem.build.ProjectBuilder;
 import com.zapolnov.buildsystem.plugins.AbstractPlugin;
 import com.zapolnov.buildsystem.project.ProjectReader;
 import com.zapolnov.buildsystem.utility.FileUtils;
@@ -35,11 +36,30 @@ import java.util.Map;
 /** Plugin implementing the 'file2c' directive. */
 @SuppressWarnings("unused") public class Plugin extends AbstractPlugin
 {
+    /** Store for the data generated by the 'file2c' directives. */
+    private final DataStore dataStore = new DataStore();
+
+    @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    {
+        dataStore.reset();
+    }
+
+    @Override public void preGenerate(ProjectBuilder projectBuilder) throws Throwable
+    {
+        dataStore.writeAssemblerFiles(projectBuilder);
+    }
+
+    @Override public void postGenerate(ProjectBuilder projectBuilder) throws Throwable
+    {
+        dataStore.deleteStaleFiles(projectBuilder);
+    }
+
     @Override public Map<String, ProjectReader.DirectiveParser> customDirectives()
     {
         Map<String, ProjectReader.DirectiveParser> directives = new HashMap<>();
         directives.put("file2c", (r, k, v) -> {
             CompressionMethod compressionMethod = CompressionMethod.NONE;
+            OutputMode outputMode = OutputMode.ARRAY;
             File input = null;
             String output = null;
             String identifier = null;
@@ -96,6 +116,24 @@ import java.util.Map;
                     }
                     break;
 
+                case "mode":
+                    String modeName = value.toString();
+                    outputMode = null;
+                    for (OutputMode mode : OutputMode.values()) {
+                        if (mode.name.equals(modeName)) {
+                            outputMode = mode;
+                            break;
+                        }
+                    }
+                    if (outputMode == null) {
+                        List<String> validValues = new ArrayList<>();
+                        for (OutputMode mode : OutputMode.values())
+                            validValues.add(mode.name);
+                        throw new YamlError(value, String.format("Invalid output mode. Valid values are: \"%s\".",
+                            String.join("\", \"", validValues)));
+                    }
+                    break;
+
                 default:
                     throw new YamlError(key, String.format("Unknown option \"%s\".", key.toString()));
                 }
@@ -108,7 +146,8 @@ import java.util.Map;
             if (identifier == null)
                 throw new YamlError(k, "Missing identifier name.");
 
-            r.currentScope().addDirective(new FileToCDirective(input, output, identifier, namespace, compressionMethod));
+            r.currentScope().addDirective(new FileToCDirective(dataStore, input, output, identifier,
+                namespace, compressionMethod, outputMode));
         });
         return directives;
     }
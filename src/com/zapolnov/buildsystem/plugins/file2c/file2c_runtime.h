@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+/*
+ * Runtime support for the compressed data generated by the 'file2c' directive.
+ *
+ * Data is split into independently compressed blocks. Every block except the last one decompresses
+ * into exactly `block_size` bytes.
+ */
+
+#pragma once
+
+#include <cstddef>
+#include <cstdint>
+#include <cstring>
+
+namespace file2c {
+
+enum compression_method
+{
+    compression_deflate = 1,
+    compression_lz4 = 2,
+};
+
+namespace detail {
+
+/* Raw DEFLATE (RFC 1951) decoder */
+
+struct inflate_state
+{
+    const uint8_t* src;
+    const uint8_t* src_end;
+    uint8_t* dst_begin;
+    uint8_t* dst;
+    uint8_t* dst_end;
+    uint32_t bit_buffer;
+    int bit_count;
+    bool error;
+};
+
+struct inflate_huffman
+{
+    short count[16];
+    short symbol[288];
+};
+
+inline int inflate_bits(inflate_state& s, int need)
+{
+    uint32_t value = s.bit_buffer;
+    while (s.bit_count < need) {
+        if (s.src == s.src_end) {
+            s.error = true;
+            return 0;
+        }
+        value |= uint32_t(*s.src++) << s.bit_count;
+        s.bit_count += 8;
+    }
+    s.bit_buffer = value >> need;
+    s.bit_count -= need;
+    return int(value & ((1u << need) - 1));
+}
+
+inline int inflate_build(inflate_huffman& h, const short* length, int n)
+{
+    for (int len = 0; len < 16; len++)
+        h.count[len] = 0;
+    for (int symbol = 0; symbol < n; symbol++)
+        h.count[length[symbol]]++;
+    if (h.count[0] == n)
+        return 0;
+
+    int left = 1;
+    for (int len = 1; len < 16; len++) {
+        left <<= 1;
+        left -= h.count[len];
+        if (left < 0)
+            return left;
+    }
+
+    short offsets[16];
+    offsets[1] = 0;
+    for (int len = 1; len < 15; len++)
+        offsets[len + 1] = short(offsets[len] + h.count[len]);
+    for (int symbol = 0; symbol < n; symbol++) {
+        if (length[symbol] != 0)
+            h.symbol[offsets[length[symbol]]++] = short(symbol);
+    }
+
+    return left;
+}
+
+inline int inflate_decode(inflate_state& s, const inflate_huffman& h)
+{
+    int code = 0, first = 0, index = 0;
+    for (int len = 1; len < 16; len++) {
+        code |= inflate_bits(s, 1);
+        if (s.error)
+            return -1;
+        int count = h.count[len];
+        if (code - count < first)
+            return h.symbol[index + (code - first)];
+        index += count;
+        first += count;
+        first <<= 1;
+        code <<= 1;
+    }
+    return -1;
+}
+
+inline bool inflate_stored(inflate_state& s)
+{
+    s.bit_buffer = 0;
+    s.bit_count = 0;
+
+    if (s.src_end - s.src < 4)
+        return false;
+    size_t length = size_t(s.src[0]) | (size_t(s.src[1]) << 8);
+    size_t inverse = size_t(s.src[2]) | (size_t(s.src[3]) << 8);
+    if (length != (~inverse & 0xFFFF))
+        return false;
+    s.src += 4;
+
+    if (size_t(s.src_end - s.src) < length || size_t(s.dst_end - s.dst) < length)
+        return false;
+    memcpy(s.dst, s.src, length);
+    s.dst += length;
+    s.src += length;
+
+    return true;
+}
+
+inline bool inflate_codes(inflate_state& s, const inflate_huffman& lengths, const inflate_huffman& distances)
+{
+    static const short length_base[29] = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227, 258
+    };
+    static const short length_extra[29] = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    static const short distance_base[30] = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073,
+        4097, 6145, 8193, 12289, 16385, 24577
+    };
+    static const short distance_extra[30] = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+
+    for (;;) {
+        int symbol = inflate_decode(s, lengths);
+        if (symbol < 0)
+            return false;
+
+        if (symbol < 256) {
+            if (s.dst == s.dst_end)
+                return false;
+            *s.dst++ = uint8_t(symbol);
+            continue;
+        }
+
+        if (symbol == 256)
+            return true;
+
+        symbol -= 257;
+        if (symbol >= 29)
+            return false;
+        size_t length = size_t(length_base[symbol] + inflate_bits(s, length_extra[symbol]));
+
+        symbol = inflate_decode(s, distances);
+        if (symbol < 0 || symbol >= 30)
+            return false;
+        size_t distance = size_t(distance_base[symbol] + inflate_bits(s, distance_extra[symbol]));
+
+        if (s.error || distance > size_t(s.dst - s.dst_begin) || length > size_t(s.dst_end - s.dst))
+            return false;
+
+        const uint8_t* from = s.dst - distance;
+        while (length-- > 0)
+            *s.dst++ = *from++;
+    }
+}
+
+inline bool inflate_fixed(inflate_state& s)
+{
+    short lengths[288 + 30];
+    int symbol = 0;
+    for (; symbol < 144; symbol++)
+        lengths[symbol] = 8;
+    for (; symbol < 256; symbol++)
+        lengths[symbol] = 9;
+    for (; symbol < 280; symbol++)
+        lengths[symbol] = 7;
+    for (; symbol < 288; symbol++)
+        lengths[symbol] = 8;
+    for (; symbol < 288 + 30; symbol++)
+        lengths[symbol] = 5;
+
+    inflate_huffman length_codes, distance_codes;
+    inflate_build(length_codes, lengths, 288);
+    inflate_build(distance_codes, lengths + 288, 30);
+
+    return inflate_codes(s, length_codes, distance_codes);
+}
+
+inline bool inflate_dynamic(inflate_state& s)
+{
+    static const short order[19] = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+    int number_of_lengths = inflate_bits(s, 5) + 257;
+    int number_of_distances = inflate_bits(s, 5) + 1;
+    int number_of_codes = inflate_bits(s, 4) + 4;
+    if (s.error || number_of_lengths > 286 || number_of_distances > 30)
+        return false;
+
+    short lengths[286 + 30];
+    int index = 0;
+    for (; index < number_of_codes; index++)
+        lengths[order[index]] = short(inflate_bits(s, 3));
+    for (; index < 19; index++)
+        lengths[order[index]] = 0;
+    if (s.error)
+        return false;
+
+    inflate_huffman length_codes, distance_codes;
+    if (inflate_build(length_codes, lengths, 19) != 0)
+        return false;
+
+    int total = number_of_lengths + number_of_distances;
+    for (index = 0; index < total; ) {
+        int symbol = inflate_decode(s, length_codes);
+        if (symbol < 0)
+            return false;
+
+        if (symbol < 16) {
+            lengths[index++] = short(symbol);
+            continue;
+        }
+
+        short length = 0;
+        int repeat;
+        if (symbol == 16) {
+            if (index == 0)
+                return false;
+            length = lengths[index - 1];
+            repeat = 3 + inflate_bits(s, 2);
+        } else if (symbol == 17)
+            repeat = 3 + inflate_bits(s, 3);
+        else
+            repeat = 11 + inflate_bits(s, 7);
+
+        if (s.error || index + repeat > total)
+            return false;
+        while (repeat-- > 0)
+            lengths[index++] = length;
+    }
+
+    if (lengths[256] == 0)
+        return false;
+
+    int left = inflate_build(length_codes, lengths, number_of_lengths);
+    if (left < 0 || (left > 0 && number_of_lengths - length_codes.count[0] != 1))
+        return false;
+
+    left = inflate_build(distance_codes, lengths + number_of_lengths, number_of_distances);
+    if (left < 0 || (left > 0 && number_of_distances - distance_codes.count[0] != 1))
+        return false;
+
+    return inflate_codes(s, length_codes, distance_codes);
+}
+
+inline bool inflate(const uint8_t* src, size_t src_size, uint8_t* dst, size_t dst_size)
+{
+    inflate_state s;
+    s.src = src;
+    s.src_end = src + src_size;
+    s.dst_begin = dst;
+    s.dst = dst;
+    s.dst_end = dst + dst_size;
+    s.bit_buffer = 0;
+    s.bit_count = 0;
+    s.error = false;
+
+    int last;
+    do {
+        last = inflate_bits(s, 1);
+        int type = inflate_bits(s, 2);
+        if (s.error)
+            return false;
+
+        bool success;
+        switch (type) {
+            case 0: success = inflate_stored(s); break;
+            case 1: success = inflate_fixed(s); break;
+            case 2: success = inflate_dynamic(s); break;
+            default: success = false; break;
+        }
+
+        if (!success)
+            return false;
+    } while (!last);
+
+    return s.dst == s.dst_end;
+}
+
+/* LZ4 block format decoder */
+
+inline bool lz4_read_length(const uint8_t*& src, const uint8_t* src_end, size_t& length)
+{
+    if (length != 15)
+        return true;
+
+    uint8_t value;
+    do {
+        if (src == src_end)
+            return false;
+        value = *src++;
+        length += value;
+    } while (value == 255);
+
+    return true;
+}
+
+inline bool lz4_decompress(const uint8_t* src, size_t src_size, uint8_t* dst, size_t dst_size)
+{
+    const uint8_t* src_end = src + src_size;
+    uint8_t* dst_begin = dst;
+    uint8_t* dst_end = dst + dst_size;
+
+    while (src < src_end) {
+        unsigned token = *src++;
+
+        size_t length = token >> 4;
+        if (!lz4_read_length(src, src_end, length))
+            return false;
+        if (length > size_t(src_end - src) || length > size_t(dst_end - dst))
+            return false;
+        memcpy(dst, src, length);
+        dst += length;
+        src += length;
+
+        // Last sequence contains only literals
+        if (src == src_end)
+            break;
+
+        if (src_end - src < 2)
+            return false;
+        size_t offset = size_t(src[0]) | (size_t(src[1]) << 8);
+        src += 2;
+        if (offset == 0 || offset > size_t(dst - dst_begin))
+            return false;
+
+        length = token & 15;
+        if (!lz4_read_length(src, src_end, length))
+            return false;
+        length += 4;
+        if (length > size_t(dst_end - dst))
+            return false;
+
+        const uint8_t* match = dst - offset;
+        while (length-- > 0)
+            *dst++ = *match++;
+    }
+
+    return dst == dst_end;
+}
+
+} // namespace detail
+
+/**
+ * Decompresses data generated by the 'file2c' directive.
+ * @param method Compression method.
+ * @param data Compressed data.
+ * @param block_offsets Offsets of compressed blocks (`block_count + 1` elements).
+ * @param block_count Number of blocks.
+ * @param block_size Size of the uncompressed block.
+ * @param uncompressed_size Size of the uncompressed data.
+ * @param output Output buffer (should be at least `uncompressed_size` bytes long).
+ * @return `true` on success or `false` if compressed data is corrupt.
+ */
+inline bool decompress(compression_method method, const uint8_t* data, const size_t* block_offsets,
+    size_t block_count, size_t block_size, size_t uncompressed_size, void* output)
+{
+    uint8_t* dst = static_cast<uint8_t*>(output);
+    for (size_t i = 0; i < block_count; i++) {
+        size_t offset = i * block_size;
+        if (offset > uncompressed_size)
+            return false;
+        size_t size = uncompressed_size - offset;
+        if (size > block_size)
+            size = block_size;
+
+        const uint8_t* src = data + block_offsets[i];
+        size_t src_size = block_offsets[i + 1] - block_offsets[i];
+
+        bool success;
+        switch (method) {
+            case compression_deflate: success = detail::inflate(src, src_size, dst + offset, size); break;
+            case compression_lz4: success = detail::lz4_decompress(src, src_size, dst + offset, size); break;
+            default: success = false; break;
+        }
+
+        if (!success)
+            return false;
+    }
+
+    return true;
+}
+
+} // namespace file2c
@@ -22,6 +22,8 @@
 package com.zapolnov.buildsystem.plugins.metacompiler;
 
 import com.zapolnov.buildsystem.build.FileParser;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstReader;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstWriter;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxParser;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
 import com.zapolnov.buildsystem.utility.FileUtils;
@@ -29,12 +31,21 @@ import java.io.File;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
 
-/** An analyzer for C++ files. */
+/**
+ * An analyzer for C++ files.
+ * Files that do not contain any metacompiler markers are not parsed at all and produce an empty syntax tree.
+ */
 public class CxxAnalyzer implements FileParser
 {
+    /** Version of the binary format for syntax trees. */
+    private static final int FORMAT_VERSION = 0x5A415303;
+
     /** Abstract syntax tree for the analyzed file. */
     private CxxTranslationUnit syntaxTree;
+    /** Set to `true` if file contains metacompiler markers. */
+    private boolean hasMarkers;
 
     /**
      * Retrieves an abstract syntax tree for the analyzed file.
@@ -45,11 +56,26 @@ public class CxxAnalyzer implements FileParser
         return syntaxTree;
     }
 
+    /**
+     * Checks whether analyzed file contains metacompiler markers.
+     * @return `true` if file contains markers and has been parsed, otherwise returns `false`.
+     */
+    public boolean hasMarkers()
+    {
+        return hasMarkers;
+    }
+
     @Override public void parse(File file) throws Exception
     {
         syntaxTree = new CxxTranslationUnit(file);
+
+        ByteBuffer data = FileUtils.byteBufferFromFile(file);
+        hasMarkers = MarkerScanner.containsMarkers(data);
+        if (!hasMarkers)
+            return;
+
         try {
-            CxxParser parser = new CxxParser(file);
+            CxxParser parser = new CxxParser(data, file);
             syntaxTree = parser.parseTranslationUnit();
         } catch (CxxParser.Error error) {
             throw new CxxParser.Error(error.token,
@@ -59,13 +85,25 @@ public class CxxAnalyzer implements FileParser
 
     @Override public void save(ObjectOutputStream stream) throws IOException
     {
-        stream.writeObject(syntaxTree);
+        stream.writeInt(FORMAT_VERSION);
+        stream.writeBoolean(hasMarkers);
+        if (hasMarkers)
+            CxxAstWriter.write(stream, syntaxTree);
+        else
+            stream.writeUTF(syntaxTree.file.getPath());
     }
 
     @Override public void load(ObjectInputStream stream) throws IOException, ClassNotFoundException
     {
-        syntaxTree = (CxxTranslationUnit)stream.readObject();
-        if (syntaxTree == null)
-            syntaxTree = new CxxTranslationUnit(null);
+        // Entries written by older versions start with a serialized Java object instead of the format version
+        int formatVersion = stream.readInt();
+        if (formatVersion != FORMAT_VERSION)
+            throw new IOException(String.format("Unsupported format of the syntax tree (0x%08x).", formatVersion));
+
+        hasMarkers = stream.readBoolean();
+        if (hasMarkers)
+            syntaxTree = CxxAstReader.read(stream);
+        else
+            syntaxTree = new CxxTranslationUnit(new File(stream.readUTF()));
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler;
+
+import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Fast byte-level scanner that checks whether file could contain metacompiler markers
+ * (`Z_INTERFACE`, `Z_IMPLEMENTATION`, `Z_SINGLETON_IMPLEMENTATION` or `Z_CUSTOM_IMPLEMENTATION`).
+ *
+ * Files are scanned eight bytes at a time looking for the 'Z' character, and only words containing it are
+ * checked byte by byte. Scanner does not know anything about C++ syntax: markers inside of comments or string
+ * literals are reported too, so negative result is exact and positive result only means that file has to be parsed.
+ */
+public final class MarkerScanner
+{
+    /** Markers to look for. */
+    private static final byte[][] MARKERS = {
+        "Z_INTERFACE".getBytes(StringUtils.UTF8_CHARSET),
+        "Z_IMPLEMENTATION".getBytes(StringUtils.UTF8_CHARSET),
+        "Z_SINGLETON_IMPLEMENTATION".getBytes(StringUtils.UTF8_CHARSET),
+        "Z_CUSTOM_IMPLEMENTATION".getBytes(StringUtils.UTF8_CHARSET),
+    };
+
+    /** The 'Z' character repeated in each byte of a word. */
+    private static final long Z_BYTES = 0x5A5A5A5A5A5A5A5AL;
+    /** The value of 1 in each byte of a word. */
+    private static final long LOW_BITS = 0x0101010101010101L;
+    /** The highest bit set in each byte of a word. */
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Checks whether the specified file could contain metacompiler markers.
+     * @param file File to scan.
+     * @return `true` if file contains at least one marker, otherwise returns `false`.
+     */
+    public static boolean containsMarkers(File file) throws IOException
+    {
+        return containsMarkers(FileUtils.byteBufferFromFile(file));
+    }
+
+    /**
+     * Checks whether the specified buffer contains metacompiler markers.
+     * @param buffer Buffer to scan (from position to limit).
+     * @return `true` if buffer contains at least one marker, otherwise returns `false`.
+     */
+    public static boolean containsMarkers(ByteBuffer buffer)
+    {
+        buffer = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        int limit = buffer.limit();
+
+        int position = 0;
+        for (; position + 8 <= limit; position += 8) {
+            long word = buffer.getLong(position) ^ Z_BYTES;
+            if (((word - LOW_BITS) & ~word & HIGH_BITS) == 0)
+                continue;
+            for (int i = 0; i < 8; i++) {
+                if (buffer.get(position + i) == 'Z' && matchesMarker(buffer, position + i))
+                    return true;
+            }
+        }
+
+        for (; position < limit; position++) {
+            if (buffer.get(position) == 'Z' && matchesMarker(buffer, position))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether one of the markers starts at the specified position in the buffer.
+     * @param buffer Buffer.
+     * @param position Position of the 'Z' character.
+     * @return `true` if buffer contains a marker at the specified position, otherwise returns `false`.
+     */
+    private static boolean matchesMarker(ByteBuffer buffer, int position)
+    {
+        int remaining = buffer.limit() - position;
+        for (byte[] marker : MARKERS) {
+            if (marker.length > remaining)
+                continue;
+
+            int i = 1;
+            while (i < marker.length && buffer.get(position + i) == marker[i])
+                ++i;
+            if (i == marker.length)
+                return true;
+        }
+        return false;
+    }
+
+    private MarkerScanner() {}
+    static { new MarkerScanner(); }
+}
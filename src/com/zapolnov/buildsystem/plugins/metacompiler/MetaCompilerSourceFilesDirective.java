@@ -49,6 +49,11 @@ public final class MetaCompilerSourceFilesDirective extends ProjectDirective
         sourceFiles.add(file);
     }
 
+    @Override public void clearCaches() throws Throwable
+    {
+        sourceFiles.clear();
+    }
+
     @Override public void visit(ProjectVisitor visitor)
     {
         visitor.visitSourceFiles(new SourceFilesDirective(Collections.unmodifiableList(sourceFiles), false));
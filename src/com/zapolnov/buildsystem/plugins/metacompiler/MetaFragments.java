@@ -0,0 +1,348 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler;
+
+import com.zapolnov.buildsystem.build.FileParser;
+import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxFullyQualifiedName;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxParentClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Stack;
+
+/**
+ * Fragments of the generated code for a single header file.
+ *
+ * Fragments are stored in the database along with the parse results of other parsers, so that on incremental
+ * builds the code has to be generated only for the modified headers. When fragments have to be regenerated, the
+ * syntax tree is retrieved through the cached `CxxAnalyzer` results, so a header is parsed only if it has changed.
+ */
+public class MetaFragments implements FileParser
+{
+    /** Version of the binary format for fragments. */
+    private static final int FORMAT_VERSION = 0x5A464701;
+
+    /** Generated code for a single class. */
+    public static final class Fragment
+    {
+        /** Fully qualified name of the class. */
+        public final String className;
+        /** Name of the variable holding type identifier of the class. */
+        public final String typeID;
+        /** Code of the `queryInterface` and `queryAllInterfaces` methods. */
+        public final String code;
+
+        /**
+         * Constructor.
+         * @param className Fully qualified name of the class.
+         * @param typeID Name of the variable holding type identifier of the class.
+         * @param code Code of the `queryInterface` and `queryAllInterfaces` methods.
+         */
+        public Fragment(String className, String typeID, String code)
+        {
+            this.className = className;
+            this.typeID = typeID;
+            this.code = code;
+        }
+    }
+
+    /** Project builder used to retrieve cached syntax trees (`null` to always parse the file). */
+    private final ProjectBuilder projectBuilder;
+    /** Canonical path to the header (`null` if header does not contain any classes to generate code for). */
+    private String includePath;
+    /** Fragments for interfaces and implementations. */
+    private List<Fragment> interfaces = new ArrayList<>();
+    /** Fragments for singleton implementations. */
+    private List<Fragment> singletons = new ArrayList<>();
+    /** Fragments for custom implementations. */
+    private List<Fragment> customInterfaces = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param projectBuilder Project builder used to retrieve cached syntax trees (`null` to always parse the file).
+     */
+    public MetaFragments(ProjectBuilder projectBuilder)
+    {
+        this.projectBuilder = projectBuilder;
+    }
+
+    /**
+     * Retrieves canonical path to the header.
+     * @return Path to the header or `null` if header does not contain any classes to generate code for.
+     */
+    public String includePath()
+    {
+        return includePath;
+    }
+
+    /**
+     * Retrieves fragments for interfaces and implementations.
+     * @return List of fragments.
+     */
+    public List<Fragment> interfaces()
+    {
+        return Collections.unmodifiableList(interfaces);
+    }
+
+    /**
+     * Retrieves fragments for singleton implementations.
+     * @return List of fragments.
+     */
+    public List<Fragment> singletons()
+    {
+        return Collections.unmodifiableList(singletons);
+    }
+
+    /**
+     * Retrieves fragments for custom implementations.
+     * @return List of fragments.
+     */
+    public List<Fragment> customInterfaces()
+    {
+        return Collections.unmodifiableList(customInterfaces);
+    }
+
+    @Override public void parse(File file) throws Throwable
+    {
+        CxxAnalyzer analyzer = new CxxAnalyzer();
+        if (projectBuilder != null)
+            projectBuilder.parseFile(file, analyzer);
+        else
+            analyzer.parse(file);
+        generate(analyzer.syntaxTree());
+    }
+
+    /**
+     * Generates fragments for the specified translation unit.
+     * @param translationUnit Translation unit.
+     */
+    public void generate(CxxTranslationUnit translationUnit)
+    {
+        includePath = null;
+        interfaces.clear();
+        singletons.clear();
+        customInterfaces.clear();
+
+        translationUnit.visit(new CxxAstVisitor() {
+            final Stack<CxxFullyQualifiedName> scopeStack = new Stack<>();
+
+            {
+                scopeStack.push(new CxxFullyQualifiedName(null, ""));
+            }
+
+            @Override public void enterNamespace(CxxNamespace namespace) {
+                if (namespace.name == null)
+                    scopeStack.push(scopeStack.peek());
+                else
+                    scopeStack.push(scopeStack.peek().mergeWith(namespace.name));
+            }
+            @Override public void leaveNamespace(CxxNamespace namespace) {
+                scopeStack.pop();
+            }
+            @Override public void enterClass(CxxClass cxxClass) {
+                CxxFullyQualifiedName name = scopeStack.peek().mergeWith(cxxClass.name);
+                switch (cxxClass.type)
+                {
+                case DEFAULT:
+                    break;
+
+                case INTERFACE:
+                case IMPLEMENTATION:
+                    interfaces.add(generateFragment(name.text(), cxxClass, false));
+                    break;
+
+                case SINGLETON_IMPLEMENTATION:
+                    singletons.add(generateFragment(name.text(), cxxClass, false));
+                    break;
+
+                case CUSTOM_IMPLEMENTATION:
+                    customInterfaces.add(generateFragment(name.text(), cxxClass, true));
+                    break;
+                }
+                scopeStack.push(name);
+            }
+            @Override public void leaveClass(CxxClass cxxClass) {
+                scopeStack.pop();
+            }
+        });
+
+        if (!interfaces.isEmpty() || !singletons.isEmpty() || !customInterfaces.isEmpty())
+            includePath = FileUtils.getCanonicalPath(translationUnit.file);
+    }
+
+    /**
+     * Generates code of the `queryInterface` and `queryAllInterfaces` methods for the specified class.
+     * @param className Fully qualified name of the class.
+     * @param cxxClass Class.
+     * @param custom Set to `true` if class provides custom interfaces.
+     * @return Generated fragment.
+     */
+    private static Fragment generateFragment(String className, CxxClass cxxClass, boolean custom)
+    {
+        StringBuilder output = new StringBuilder();
+
+        // Global variable
+
+        String identifier = "g_tid_" + StringUtils.makeIdentifier(StringUtils.makeIdentifier(className));
+
+        // queryInterface()
+
+        output.append(String.format(
+            "\n" +
+            "void* %s::queryInterface(Engine::TypeID typeID)\n" +
+            "{\n" +
+            "    if (typeID == %s)\n" +
+            "        return this;\n",
+            className, identifier
+        ));
+
+        if (!cxxClass.parentClasses().isEmpty()) {
+            output.append("    void* p;\n");
+            for (CxxParentClass parent : cxxClass.parentClasses()) {
+                output.append(String.format(
+                    "    p = %s::queryInterface(typeID);\n" +
+                    "    if (p != nullptr)\n" +
+                    "        return p;\n",
+                    parent.name.text()
+                ));
+            }
+        }
+
+        if (custom) {
+            output.append(String.format(
+                "    return %s::_queryCustomInterface(typeID);\n" +
+                "}\n",
+                className));
+        } else {
+            output.append(
+                "    return nullptr;\n" +
+                "}\n");
+        }
+
+        // queryAllInterfaces()
+
+        output.append(String.format(
+            "\n" +
+            "void %s::queryAllInterfaces(Engine::IUnknown::InterfaceList& out)\n" +
+            "{\n",
+            className
+        ));
+
+        for (CxxParentClass parent : cxxClass.parentClasses()) {
+           output.append(String.format(
+                "    %s::queryAllInterfaces(out);\n",
+                parent.name.text()
+            ));
+        }
+
+        output.append(String.format(
+            "    out.emplace_back(%s, this);\n",
+            identifier
+        ));
+
+        if (custom) {
+            output.append(String.format(
+                "    %s::_queryAllCustomInterfaces(out);\n",
+                className
+            ));
+        }
+
+        output.append("}\n");
+
+        return new Fragment(className, identifier, output.toString());
+    }
+
+    @Override public void save(ObjectOutputStream stream) throws IOException
+    {
+        stream.writeInt(FORMAT_VERSION);
+        stream.writeBoolean(includePath != null);
+        if (includePath != null) {
+            stream.writeUTF(includePath);
+            writeFragments(stream, interfaces);
+            writeFragments(stream, singletons);
+            writeFragments(stream, customInterfaces);
+        }
+    }
+
+    @Override public void load(ObjectInputStream stream) throws IOException, ClassNotFoundException
+    {
+        int formatVersion = stream.readInt();
+        if (formatVersion != FORMAT_VERSION)
+            throw new IOException(String.format("Unsupported format of the code fragments (0x%08x).", formatVersion));
+
+        includePath = null;
+        interfaces = new ArrayList<>();
+        singletons = new ArrayList<>();
+        customInterfaces = new ArrayList<>();
+
+        if (stream.readBoolean()) {
+            includePath = stream.readUTF();
+            interfaces = readFragments(stream);
+            singletons = readFragments(stream);
+            customInterfaces = readFragments(stream);
+        }
+    }
+
+    /**
+     * Writes list of fragments into the stream.
+     * @param stream Output stream.
+     * @param fragments List of fragments.
+     */
+    private static void writeFragments(ObjectOutputStream stream, List<Fragment> fragments) throws IOException
+    {
+        stream.writeInt(fragments.size());
+        for (Fragment fragment : fragments) {
+            stream.writeUTF(fragment.className);
+            stream.writeUTF(fragment.typeID);
+            stream.writeUTF(fragment.code);
+        }
+    }
+
+    /**
+     * Reads list of fragments from the stream.
+     * @param stream Input stream.
+     * @return List of fragments.
+     */
+    private static List<Fragment> readFragments(ObjectInputStream stream) throws IOException
+    {
+        int count = stream.readInt();
+        if (count < 0)
+            throw new IOException("Invalid number of code fragments.");
+
+        List<Fragment> fragments = new ArrayList<>(count);
+        for (int i = 0; i < count; i++)
+            fragments.add(new Fragment(stream.readUTF(), stream.readUTF(), stream.readUTF()));
+
+        return fragments;
+    }
+}
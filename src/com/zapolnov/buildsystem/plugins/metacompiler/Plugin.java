@@ -23,45 +23,60 @@ package com.zapolnov.buildsystem.plugins.metacompiler;
 
 import com.zapolnov.buildsystem.build.ProjectBuilder;
 import com.zapolnov.buildsystem.plugins.AbstractPlugin;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxParser;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClass;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxFullyQualifiedName;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxParentClass;
-import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import com.zapolnov.buildsystem.project.ProjectReader;
 import com.zapolnov.buildsystem.project.ProjectVisitor;
 import com.zapolnov.buildsystem.project.directives.SourceDirectoriesDirective;
 import com.zapolnov.buildsystem.project.directives.SourceFilesDirective;
 import com.zapolnov.buildsystem.project.directives.TargetPlatformSelectorDirective;
 import com.zapolnov.buildsystem.utility.FileBuilder;
+import com.zapolnov.buildsystem.utility.FileType;
 import com.zapolnov.buildsystem.utility.FileUtils;
-import com.zapolnov.buildsystem.utility.StringUtils;
+import com.zapolnov.buildsystem.utility.Log;
 import com.zapolnov.buildsystem.utility.SystemUtils;
+import com.zapolnov.buildsystem.utility.yaml.YamlError;
 import java.io.File;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
 
 /** Plugin that preprocesses source files and automatically generates some code. */
 @SuppressWarnings("unused") public class Plugin extends AbstractPlugin
 {
     /** Name of the generated file. */
     public final String GENERATED_FILE_NAME = "src/meta.cpp";
+    /** Format of names of the generated files when output is split into multiple shards. */
+    public final String SHARD_FILE_NAME_FORMAT = "src/meta_%d.cpp";
+    /** Maximum number of shards. */
+    public static final int MAX_SHARDS = 256;
+    /** Pattern of names of all files that could be generated, including shards. */
+    private static final Pattern GENERATED_FILE_NAME_PATTERN = Pattern.compile("meta(_[0-9]+)?\\.cpp");
 
     /** Our "virtual" directive injected into the project file. */
     private final MetaCompilerSourceFilesDirective directive = new MetaCompilerSourceFilesDirective();
+    /** Set to `true` when directive has been injected into the project file. */
+    private boolean directiveInjected;
+    /** Number of source files the generated code should be split into. */
+    private int numberOfShards = 1;
 
     @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
     {
-        projectBuilder.project.scope.addDirective(directive);
+        if (!directiveInjected) {
+            projectBuilder.project.scope.addDirective(directive);
+            directiveInjected = true;
+        }
 
-        final List<CxxTranslationUnit> scanResults = new ArrayList<>();
+        final List<File> headerFiles = new ArrayList<>();
         projectBuilder.project.scope.visit(new ProjectVisitor() {
             @Override public void visitSourceDirectories(SourceDirectoriesDirective directive) {
                 directive.visitFiles(this);
@@ -69,17 +84,10 @@ import java.util.TreeSet;
             @Override public void visitSourceFiles(SourceFilesDirective directive) {
                 if (directive.thirdparty)
                     return;
-                for (File file : directive.sourceFiles()) {
-                    if (FileUtils.isHeaderFile(file)) {
-                        try {
-                            scanResults.add(projectBuilder.parseFile(file, new CxxAnalyzer()).syntaxTree());
-                        } catch (CxxParser.Error e) {
-                            throw e;
-                        } catch (Throwable t) {
-                            throw new RuntimeException(String.format("Unable to parse file \"%s\".",
-                                FileUtils.getCanonicalPath(file)), t);
-                        }
-                    }
+                for (File file : directive.sourceFiles(FileType.HEADER)) {
+                    // Files produced by other directives (e.g. 'file2c') do not exist yet on the first build
+                    if (file.exists())
+                        headerFiles.add(file);
                 }
             }
             @Override public boolean visitTargetPlatformSelector(TargetPlatformSelectorDirective directive) {
@@ -87,60 +95,98 @@ import java.util.TreeSet;
             }
         });
 
-        final Map<CxxClass, String> singletons = new LinkedHashMap<>();
-        final Map<CxxClass, String> interfaces = new LinkedHashMap<>();
-        final Map<CxxClass, String> customInterfaces = new LinkedHashMap<>();
-        final Set<String> includes = new TreeSet<>();
+        // Code fragments are cached per header, so only modified headers are parsed and generated again
+        final List<MetaFragments> scanResults = scanFiles(projectBuilder, headerFiles);
 
-        for (CxxTranslationUnit translationUnit : scanResults) {
-            translationUnit.visit(new CxxAstVisitor() {
-                final Stack<CxxFullyQualifiedName> scopeStack = new Stack<>();
+        final List<String> fileNames = new ArrayList<>();
+        if (numberOfShards <= 1)
+            fileNames.add(GENERATED_FILE_NAME);
+        else {
+            for (int i = 0; i < numberOfShards; i++)
+                fileNames.add(String.format(SHARD_FILE_NAME_FORMAT, i));
+        }
 
-                {
-                    scopeStack.push(new CxxFullyQualifiedName(null, ""));
-                }
+        for (int i = 0; i < fileNames.size(); i++)
+            writeSourceFile(projectBuilder, fileNames.get(i), scanResults, i, fileNames.size());
+        deleteStaleFiles(projectBuilder, fileNames);
+    }
 
-                @Override public void enterNamespace(CxxNamespace namespace) {
-                    if (namespace.name == null)
-                        scopeStack.push(scopeStack.peek());
-                    else
-                        scopeStack.push(scopeStack.peek().mergeWith(namespace.name));
-                }
-                @Override public void leaveNamespace(CxxNamespace namespace) {
-                    scopeStack.pop();
-                }
-                @Override public void enterClass(CxxClass cxxClass) {
-                    String className = scopeStack.peek().mergeWith(cxxClass.name).text;
-                    switch (cxxClass.type)
-                    {
-                    case DEFAULT:
-                        break;
-
-                    case INTERFACE:
-                    case IMPLEMENTATION:
-                        includes.add(FileUtils.getCanonicalPath(cxxClass.translationUnit.file));
-                        interfaces.put(cxxClass, className);
-                        break;
-
-                    case SINGLETON_IMPLEMENTATION:
-                        includes.add(FileUtils.getCanonicalPath(cxxClass.translationUnit.file));
-                        singletons.put(cxxClass, className);
-                        break;
-
-                    case CUSTOM_IMPLEMENTATION:
-                        includes.add(FileUtils.getCanonicalPath(cxxClass.translationUnit.file));
-                        customInterfaces.put(cxxClass, className);
-                        break;
-                    }
-                    scopeStack.push(scopeStack.peek().mergeWith(cxxClass.name));
-                }
-                @Override public void leaveClass(CxxClass cxxClass) {
-                    scopeStack.pop();
-                }
-            });
+    /**
+     * Deletes previously generated files that have not been generated during the current build.
+     * Such files are left behind when the number of shards changes; they define the same symbols as the current
+     * files and would break the build of anything that compiles all files in the output directory.
+     * @param projectBuilder Project builder.
+     * @param fileNames Names of the files generated during the current build.
+     */
+    private void deleteStaleFiles(ProjectBuilder projectBuilder, List<String> fileNames)
+    {
+        final Set<File> generatedFiles = new HashSet<>();
+        for (String fileName : fileNames)
+            generatedFiles.add(new File(projectBuilder.generatorOutputDirectory(), fileName));
+
+        File directory = new File(projectBuilder.generatorOutputDirectory(), GENERATED_FILE_NAME).getParentFile();
+        File[] files = directory.listFiles();
+        if (files == null)
+            return;
+
+        for (File file : files) {
+            if (GENERATED_FILE_NAME_PATTERN.matcher(file.getName()).matches() && !generatedFiles.contains(file)
+                    && file.isFile()) {
+                Log.debug(String.format("Deleting stale file \"%s\".", FileUtils.getCanonicalPath(file)));
+                if (!file.delete())
+                    Log.warn(String.format("Unable to delete file \"%s\".", FileUtils.getCanonicalPath(file)));
+            }
+        }
+    }
+
+    /**
+     * Selects the shard for the specified class.
+     * Selection depends only on the name of the class, so classes do not move between shards unless the number
+     * of shards changes.
+     * @param className Fully qualified name of the class.
+     * @param numberOfShards Number of shards.
+     * @return Index of the shard.
+     */
+    private static int shardForClass(String className, int numberOfShards)
+    {
+        return Math.floorMod(className.hashCode(), numberOfShards);
+    }
+
+    /**
+     * Writes the generated source file.
+     * Each file contains type identifiers and `queryInterface()` methods for the classes in its shard.
+     * Initializer for the singletons is written into the first shard.
+     * @param projectBuilder Project builder.
+     * @param fileName Name of the file (relative to the generator output directory).
+     * @param scanResults Code fragments for all headers.
+     * @param shard Index of the shard.
+     * @param numberOfShards Total number of shards.
+     */
+    private void writeSourceFile(ProjectBuilder projectBuilder, String fileName, List<MetaFragments> scanResults,
+        int shard, int numberOfShards) throws Throwable
+    {
+        final boolean writeInitializer = (shard == 0);
+
+        final Set<String> includes = new TreeSet<>();
+        final Map<String, String> typeIDs = new TreeMap<>();
+        final List<MetaFragments.Fragment> interfaces = new ArrayList<>();
+        final List<MetaFragments.Fragment> singletons = new ArrayList<>();
+        final List<MetaFragments.Fragment> customInterfaces = new ArrayList<>();
+        for (MetaFragments fragments : scanResults) {
+            if (fragments.includePath() == null)
+                continue;
+
+            boolean needInclude = (writeInitializer && !fragments.singletons().isEmpty());
+            needInclude |= collectFragments(fragments.interfaces(), interfaces, typeIDs, shard, numberOfShards);
+            needInclude |= collectFragments(fragments.singletons(), singletons, typeIDs, shard, numberOfShards);
+            needInclude |= collectFragments(fragments.customInterfaces(), customInterfaces, typeIDs,
+                shard, numberOfShards);
+
+            if (needInclude)
+                includes.add(fragments.includePath());
         }
 
-        FileBuilder cxxBuilder = new FileBuilder(projectBuilder.generatorOutputDirectory(), GENERATED_FILE_NAME);
+        FileBuilder cxxBuilder = new FileBuilder(projectBuilder.generatorOutputDirectory(), fileName);
         cxxBuilder.appendCxxAutogeneratedHeader();
         directive.addFile(cxxBuilder.file);
 
@@ -154,16 +200,6 @@ import java.util.TreeSet;
         }
         cxxBuilder.append('\n');
 
-        // Generate code for queryInterface() methods
-        final StringBuilder queryInterfaceMethods = new StringBuilder();
-        final Map<String, String> typeIDs = new TreeMap<>();
-        for (Map.Entry<CxxClass, String> it : interfaces.entrySet())
-            generateQueryInterfaceMethod(queryInterfaceMethods, it.getValue(), it.getKey(), typeIDs, false);
-        for (Map.Entry<CxxClass, String> it : singletons.entrySet())
-            generateQueryInterfaceMethod(queryInterfaceMethods, it.getValue(), it.getKey(), typeIDs, false);
-        for (Map.Entry<CxxClass, String> it : customInterfaces.entrySet())
-            generateQueryInterfaceMethod(queryInterfaceMethods, it.getValue(), it.getKey(), typeIDs, true);
-
         // Write type identifiers
         for (Map.Entry<String, String> it : typeIDs.entrySet()) {
             cxxBuilder.append(String.format("static const Engine::TypeID %s = Engine::typeOf<%s>();\n",
@@ -171,105 +207,135 @@ import java.util.TreeSet;
         }
 
         // Write queryInterface() methods
-        cxxBuilder.append(queryInterfaceMethods.toString());
+        for (MetaFragments.Fragment fragment : interfaces)
+            cxxBuilder.append(fragment.code);
+        for (MetaFragments.Fragment fragment : singletons)
+            cxxBuilder.append(fragment.code);
+        for (MetaFragments.Fragment fragment : customInterfaces)
+            cxxBuilder.append(fragment.code);
 
         // Write initializer
-        cxxBuilder.append(
-            "\n" +
-            "void Engine::Core::Initializer::init(Core& core)\n" +
-            "{\n" +
-            "    (void)core;        // Prevent compiler warnings\n"
-        );
-        if (!singletons.isEmpty()) {
-            cxxBuilder.append('\n');
-            for (Map.Entry<CxxClass, String> it : singletons.entrySet()) {
-                cxxBuilder.append(String.format(
-                    "    core.addSingleton(new %s);\n",
-                    it.getValue()
-                ));
+        if (writeInitializer) {
+            cxxBuilder.append(
+                "\n" +
+                "void Engine::Core::Initializer::init(Core& core)\n" +
+                "{\n" +
+                "    (void)core;        // Prevent compiler warnings\n"
+            );
+            boolean hasSingletons = false;
+            for (MetaFragments fragments : scanResults) {
+                for (MetaFragments.Fragment fragment : fragments.singletons()) {
+                    if (!hasSingletons) {
+                        cxxBuilder.append('\n');
+                        hasSingletons = true;
+                    }
+                    cxxBuilder.append(String.format(
+                        "    core.addSingleton(new %s);\n",
+                        fragment.className
+                    ));
+                }
             }
+            cxxBuilder.append(
+                "}\n"
+            );
         }
-        cxxBuilder.append(
-            "}\n"
-        );
 
         cxxBuilder.commit(projectBuilder.database);
     }
 
-    private void generateQueryInterfaceMethod(StringBuilder output, String className, CxxClass cxxClass,
-        Map<String, String> typeIDs, boolean custom)
+    /**
+     * Collects fragments belonging to the specified shard.
+     * @param fragments Fragments to filter.
+     * @param output List where fragments of the shard should be appended.
+     * @param typeIDs Map where type identifiers of the collected classes should be stored.
+     * @param shard Index of the shard.
+     * @param numberOfShards Total number of shards.
+     * @return `true` if at least one fragment has been collected, otherwise returns `false`.
+     */
+    private static boolean collectFragments(List<MetaFragments.Fragment> fragments,
+        List<MetaFragments.Fragment> output, Map<String, String> typeIDs, int shard, int numberOfShards)
     {
-        // Global variable
-
-        String identifier = typeIDs.get(className);
-        if (identifier == null) {
-            identifier = "g_tid_" + StringUtils.makeIdentifier(StringUtils.makeIdentifier(className));
-            typeIDs.put(className, identifier);
+        boolean collected = false;
+        for (MetaFragments.Fragment fragment : fragments) {
+            if (numberOfShards > 1 && shardForClass(fragment.className, numberOfShards) != shard)
+                continue;
+            output.add(fragment);
+            typeIDs.put(fragment.className, fragment.typeID);
+            collected = true;
         }
+        return collected;
+    }
 
-        // queryInterface()
-
-        output.append(String.format(
-            "\n" +
-            "void* %s::queryInterface(Engine::TypeID typeID)\n" +
-            "{\n" +
-            "    if (typeID == %s)\n" +
-            "        return this;\n",
-            className, identifier
-        ));
-
-        if (!cxxClass.parentClasses().isEmpty()) {
-            output.append("    void* p;\n");
-            for (CxxParentClass parent : cxxClass.parentClasses()) {
-                output.append(String.format(
-                    "    p = %s::queryInterface(typeID);\n" +
-                    "    if (p != nullptr)\n" +
-                    "        return p;\n",
-                    parent.name.text
-                ));
-            }
-        }
+    /**
+     * Scans the specified header files.
+     * Files are scanned in parallel if project builder is allowed to use more than one thread.
+     * @param projectBuilder Project builder.
+     * @param files List of files to scan.
+     * @return List of code fragments (in the same order as the input files).
+     */
+    private List<MetaFragments> scanFiles(ProjectBuilder projectBuilder, List<File> files) throws Throwable
+    {
+        List<MetaFragments> results = new ArrayList<>(files.size());
 
-        if (custom) {
-            output.append(String.format(
-                "    return %s::_queryCustomInterface(typeID);\n" +
-                "}\n",
-                className));
-        } else {
-            output.append(
-                "    return nullptr;\n" +
-                "}\n");
+        int numberOfThreads = Math.min(projectBuilder.numberOfThreads(), files.size());
+        if (numberOfThreads <= 1) {
+            for (File file : files)
+                results.add(scanFile(projectBuilder, file));
+            return results;
         }
 
-        // queryAllInterfaces()
-
-        output.append(String.format(
-            "\n" +
-            "void %s::queryAllInterfaces(Engine::IUnknown::InterfaceList& out)\n" +
-            "{\n",
-            className
-        ));
-
-        for (CxxParentClass parent : cxxClass.parentClasses()) {
-           output.append(String.format(
-                "    %s::queryAllInterfaces(out);\n",
-                parent.name.text
-            ));
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        try {
+            List<Future<MetaFragments>> futures = new ArrayList<>(files.size());
+            for (File file : files)
+                futures.add(executor.submit(() -> scanFile(projectBuilder, file)));
+
+            for (Future<MetaFragments> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
-        output.append(String.format(
-            "    out.emplace_back(%s, this);\n",
-            identifier
-        ));
+        return results;
+    }
 
-        if (custom) {
-            output.append(String.format(
-                "    %s::_queryAllCustomInterfaces(out);\n",
-                className
-            ));
+    /**
+     * Scans the specified header file.
+     * @param projectBuilder Project builder.
+     * @param file File to scan.
+     * @return Code fragments for the file.
+     */
+    private MetaFragments scanFile(ProjectBuilder projectBuilder, File file)
+    {
+        try {
+            return projectBuilder.parseFile(file, new MetaFragments(projectBuilder));
+        } catch (CxxParser.Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new RuntimeException(String.format("Unable to parse file \"%s\".",
+                FileUtils.getCanonicalPath(file)), t);
         }
+    }
 
-        output.append("}\n");
+    @Override public Map<String, ProjectReader.DirectiveParser> customDirectives()
+    {
+        Map<String, ProjectReader.DirectiveParser> directives = new HashMap<>();
+        directives.put("metacompiler-shards", (r, k, v) -> {
+            int value = 0;
+            try {
+                value = Integer.parseInt(v.toString());
+            } catch (NumberFormatException ignored) {
+            }
+            if (value < 1 || value > MAX_SHARDS)
+                throw new YamlError(v, String.format("Expected number of shards between 1 and %d.", MAX_SHARDS));
+            numberOfShards = value;
+        });
+        return directives;
     }
 
     @Override public void preGenerate(ProjectBuilder projectBuilder) throws Throwable
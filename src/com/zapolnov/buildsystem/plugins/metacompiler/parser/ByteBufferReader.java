@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler.parser;
+
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * A reader that returns bytes of the buffer as characters without any charset decoding.
+ * All tokens recognized by the lexer consist of ASCII characters only, so they are read correctly from UTF-8 input
+ * and each byte of a multibyte character simply becomes an unrecognized token.
+ */
+final class ByteBufferReader extends Reader
+{
+    /** Buffer to read from. */
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     * @param buffer Buffer to read from (from position to limit).
+     */
+    ByteBufferReader(ByteBuffer buffer)
+    {
+        this.buffer = buffer.duplicate();
+    }
+
+    @Override public int read(char[] chars, int offset, int length)
+    {
+        int count = Math.min(length, buffer.remaining());
+        if (count == 0)
+            return (length == 0 ? 0 : -1);
+
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int position = buffer.arrayOffset() + buffer.position();
+            for (int i = 0; i < count; i++)
+                chars[offset + i] = (char)(array[position + i] & 0xFF);
+            buffer.position(buffer.position() + count);
+        } else {
+            for (int i = 0; i < count; i++)
+                chars[offset + i] = (char)(buffer.get() & 0xFF);
+        }
+
+        return count;
+    }
+
+    @Override public void close()
+    {
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler.parser;
+
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClassType;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxFullyQualifiedName;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxMemberProtection;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxParentClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxScope;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Reader for the binary representation of the C++ abstract syntax tree produced by `CxxAstWriter`. */
+public final class CxxAstReader
+{
+    /** Encoded tree. */
+    private final byte[] tree;
+    /** Current position in the encoded tree. */
+    private int position;
+    /** Table of unique strings. */
+    private final String[] strings;
+
+    /**
+     * Constructor.
+     * @param strings Table of unique strings.
+     * @param tree Encoded tree.
+     */
+    private CxxAstReader(String[] strings, byte[] tree)
+    {
+        this.strings = strings;
+        this.tree = tree;
+    }
+
+    /**
+     * Reads translation unit from the specified stream.
+     * @param stream Input stream.
+     * @return Translation unit.
+     */
+    public static CxxTranslationUnit read(DataInput stream) throws IOException
+    {
+        String[] strings = new String[readVarInt(stream)];
+        for (int i = 0; i < strings.length; i++)
+            strings[i] = stream.readUTF();
+
+        byte[] tree = new byte[readVarInt(stream)];
+        stream.readFully(tree);
+
+        CxxAstReader reader = new CxxAstReader(strings, tree);
+        CxxTranslationUnit translationUnit = reader.readTranslationUnit();
+        if (reader.position != tree.length)
+            throw new IOException("Unexpected data after the end of the syntax tree.");
+
+        return translationUnit;
+    }
+
+    /**
+     * Reads an unsigned variable-length integer.
+     * @param stream Input stream.
+     * @return Value.
+     */
+    static int readVarInt(DataInput stream) throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = stream.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable-length integer.");
+    }
+
+    /**
+     * Reads an unsigned variable-length integer from the tree buffer.
+     * @return Value.
+     */
+    private int readVarInt() throws IOException
+    {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (position >= tree.length)
+                throw new IOException("Unexpected end of the syntax tree.");
+            int b = tree[position++] & 0xFF;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IOException("Malformed variable-length integer.");
+    }
+
+    /**
+     * Reads a signed variable-length integer from the tree buffer.
+     * @return Value.
+     */
+    private int readSignedVarInt() throws IOException
+    {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a string from the tree buffer.
+     * @return String (could be `null`).
+     */
+    private String readString() throws IOException
+    {
+        int index = readVarInt();
+        if (index == 0)
+            return null;
+        if (index > strings.length)
+            throw new IOException("Invalid string index.");
+        return strings[index - 1];
+    }
+
+    /**
+     * Reads a translation unit from the tree buffer.
+     * @return Translation unit.
+     */
+    private CxxTranslationUnit readTranslationUnit() throws IOException
+    {
+        String path = readString();
+        CxxTranslationUnit translationUnit = new CxxTranslationUnit(path != null ? new File(path) : null);
+        readScope(translationUnit.globalScope);
+        return translationUnit;
+    }
+
+    /**
+     * Reads contents of a scope from the tree buffer.
+     * @param scope Scope to read symbols into.
+     */
+    private void readScope(CxxScope scope) throws IOException
+    {
+        int count = readVarInt();
+        for (int i = 0; i < count; i++) {
+            int tag = readVarInt();
+            switch (tag)
+            {
+            case CxxAstWriter.TAG_NAMESPACE: {
+                CxxNamespace namespace = new CxxNamespace(scope.translationUnit, readName());
+                readScope(namespace.scope);
+                scope.addSymbol(namespace);
+                break;
+            }
+
+            case CxxAstWriter.TAG_CLASS: {
+                CxxFullyQualifiedName name = readName();
+                CxxClassType type = readEnum(CxxClassType.values());
+                boolean isTemplateSpecialization = (readVarInt() != 0);
+
+                int parentCount = readVarInt();
+                List<CxxParentClass> parentClasses = new ArrayList<>(parentCount);
+                for (int j = 0; j < parentCount; j++) {
+                    CxxFullyQualifiedName parentName = readName();
+                    int protection = readVarInt();
+                    CxxMemberProtection protectionLevel =
+                        (protection != 0 ? readEnum(CxxMemberProtection.values(), protection - 1) : null);
+                    boolean virtual = (readVarInt() != 0);
+                    parentClasses.add(new CxxParentClass(parentName, protectionLevel, virtual));
+                }
+
+                CxxClass cxxClass = new CxxClass(scope.translationUnit, name, parentClasses, isTemplateSpecialization);
+                cxxClass.type = type;
+                readScope(cxxClass.scope);
+                scope.addSymbol(cxxClass);
+                break;
+            }
+
+            default:
+                throw new IOException(String.format("Invalid AST node tag %d.", tag));
+            }
+        }
+    }
+
+    /**
+     * Reads a fully qualified name from the tree buffer.
+     * @return Fully qualified name (could be `null`).
+     */
+    private CxxFullyQualifiedName readName() throws IOException
+    {
+        int flags = readVarInt();
+        if ((flags & CxxAstWriter.NAME_PRESENT) == 0)
+            return null;
+
+        boolean global = ((flags & CxxAstWriter.NAME_GLOBAL) != 0);
+        int numberOfComponents = readVarInt();
+        String[] components = new String[numberOfComponents];
+        for (int i = 0; i < numberOfComponents; i++) {
+            components[i] = readString();
+            if (components[i] == null)
+                throw new IOException("Invalid name component.");
+        }
+
+        CxxToken firstToken = null;
+        if ((flags & CxxAstWriter.NAME_HAS_TOKEN) != 0) {
+            int id = readSignedVarInt();
+            int line = readVarInt();
+            int column = readVarInt();
+            String text;
+            if ((flags & CxxAstWriter.NAME_HAS_TOKEN_TEXT) != 0)
+                text = readString();
+            else
+                text = (global ? "::" : (numberOfComponents > 0 ? components[0] : null));
+            firstToken = new CxxToken(id, line, column, text);
+        }
+
+        if (numberOfComponents == 0)
+            return new CxxFullyQualifiedName(firstToken, (global ? "::" : ""));
+
+        CxxFullyQualifiedName name = null;
+        for (String component : components)
+            name = new CxxFullyQualifiedName(firstToken, name, component, global);
+
+        return name;
+    }
+
+    /**
+     * Reads an enumeration value from the tree buffer.
+     * @param values Possible values of the enumeration.
+     * @return Enumeration value.
+     */
+    private <T extends Enum<T>> T readEnum(T[] values) throws IOException
+    {
+        return readEnum(values, readVarInt());
+    }
+
+    /**
+     * Validates ordinal of an enumeration value.
+     * @param values Possible values of the enumeration.
+     * @param ordinal Ordinal of the value.
+     * @return Enumeration value.
+     */
+    private static <T extends Enum<T>> T readEnum(T[] values, int ordinal) throws IOException
+    {
+        if (ordinal < 0 || ordinal >= values.length)
+            throw new IOException("Invalid enumeration value.");
+        return values[ordinal];
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler.parser;
+
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxFullyQualifiedName;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxParentClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxScope;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxSymbol;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writer for the binary representation of the C++ abstract syntax tree.
+ *
+ * The output consists of a table of unique strings followed by the tree itself. All integers are written as
+ * variable-length quantities and all strings are referenced by their index in the table.
+ */
+public final class CxxAstWriter
+{
+    /** Tag for a namespace symbol. */
+    static final int TAG_NAMESPACE = 0;
+    /** Tag for a class symbol. */
+    static final int TAG_CLASS = 1;
+
+    /** Flag indicating that fully qualified name is present. */
+    static final int NAME_PRESENT = 1;
+    /** Flag indicating that fully qualified name has a first token. */
+    static final int NAME_HAS_TOKEN = 2;
+    /** Flag indicating that fully qualified name starts with the global scope qualifier (`::`). */
+    static final int NAME_GLOBAL = 4;
+    /** Flag indicating that text of the first token can not be derived from the name and is stored explicitly. */
+    static final int NAME_HAS_TOKEN_TEXT = 8;
+
+    /** Buffer for the encoded tree. */
+    private final ByteArrayOutputStream tree = new ByteArrayOutputStream();
+    /** List of unique strings. */
+    private final List<String> strings = new ArrayList<>();
+    /** Map of unique strings to their indices. */
+    private final Map<String, Integer> stringIndices = new HashMap<>();
+
+    /**
+     * Writes the specified translation unit into the stream.
+     * @param stream Output stream.
+     * @param translationUnit Translation unit.
+     */
+    public static void write(DataOutput stream, CxxTranslationUnit translationUnit) throws IOException
+    {
+        CxxAstWriter writer = new CxxAstWriter();
+        writer.writeTranslationUnit(translationUnit);
+
+        writeVarInt(stream, writer.strings.size());
+        for (String string : writer.strings)
+            stream.writeUTF(string);
+
+        byte[] data = writer.tree.toByteArray();
+        writeVarInt(stream, data.length);
+        stream.write(data);
+    }
+
+    /**
+     * Writes an unsigned variable-length integer.
+     * @param stream Output stream.
+     * @param value Value to write.
+     */
+    static void writeVarInt(DataOutput stream, int value) throws IOException
+    {
+        while ((value & ~0x7F) != 0) {
+            stream.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        stream.writeByte(value);
+    }
+
+    /**
+     * Writes an unsigned variable-length integer into the tree buffer.
+     * @param value Value to write.
+     */
+    private void writeVarInt(int value)
+    {
+        while ((value & ~0x7F) != 0) {
+            tree.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        tree.write(value);
+    }
+
+    /**
+     * Writes a signed variable-length integer into the tree buffer.
+     * @param value Value to write.
+     */
+    private void writeSignedVarInt(int value)
+    {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a string into the tree buffer.
+     * @param string String to write (could be `null`).
+     */
+    private void writeString(String string)
+    {
+        if (string == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            index = strings.size();
+            strings.add(string);
+            stringIndices.put(string, index);
+        }
+        writeVarInt(index + 1);
+    }
+
+    /**
+     * Writes a translation unit into the tree buffer.
+     * @param translationUnit Translation unit.
+     */
+    private void writeTranslationUnit(CxxTranslationUnit translationUnit)
+    {
+        writeString(translationUnit.file != null ? translationUnit.file.getPath() : null);
+        writeScope(translationUnit.globalScope);
+    }
+
+    /**
+     * Writes a scope into the tree buffer.
+     * @param scope Scope.
+     */
+    private void writeScope(CxxScope scope)
+    {
+        List<CxxSymbol> symbols = scope.symbols();
+        writeVarInt(symbols.size());
+        for (CxxSymbol symbol : symbols) {
+            if (symbol instanceof CxxNamespace) {
+                CxxNamespace namespace = (CxxNamespace)symbol;
+                writeVarInt(TAG_NAMESPACE);
+                writeName(namespace.name);
+                writeScope(namespace.scope);
+            } else if (symbol instanceof CxxClass) {
+                CxxClass cxxClass = (CxxClass)symbol;
+                writeVarInt(TAG_CLASS);
+                writeName(cxxClass.name);
+                writeVarInt(cxxClass.type.ordinal());
+                writeVarInt(cxxClass.isTemplateSpecialization ? 1 : 0);
+
+                List<CxxParentClass> parentClasses = cxxClass.parentClasses();
+                writeVarInt(parentClasses.size());
+                for (CxxParentClass parentClass : parentClasses) {
+                    writeName(parentClass.name);
+                    writeVarInt(parentClass.protectionLevel != null ? parentClass.protectionLevel.ordinal() + 1 : 0);
+                    writeVarInt(parentClass.virtual ? 1 : 0);
+                }
+
+                writeScope(cxxClass.scope);
+            } else {
+                throw new IllegalArgumentException(
+                    String.format("Unsupported AST node \"%s\".", symbol.getClass().getName()));
+            }
+        }
+    }
+
+    /**
+     * Writes a fully qualified name into the tree buffer.
+     * @param name Fully qualified name (could be `null`).
+     */
+    private void writeName(CxxFullyQualifiedName name)
+    {
+        if (name == null) {
+            writeVarInt(0);
+            return;
+        }
+
+        String[] components = name.components();
+        String firstTokenText = (name.isGlobal() ? "::" : (components.length > 0 ? components[0] : null));
+
+        int flags = NAME_PRESENT;
+        if (name.isGlobal())
+            flags |= NAME_GLOBAL;
+        if (name.firstToken != null) {
+            flags |= NAME_HAS_TOKEN;
+            if (!Objects.equals(name.firstToken.text, firstTokenText))
+                flags |= NAME_HAS_TOKEN_TEXT;
+        }
+
+        writeVarInt(flags);
+        writeVarInt(components.length);
+        for (String component : components)
+            writeString(component);
+
+        if (name.firstToken != null) {
+            writeSignedVarInt(name.firstToken.id);
+            writeVarInt(name.firstToken.line);
+            writeVarInt(name.firstToken.column);
+            if ((flags & NAME_HAS_TOKEN_TEXT) != 0)
+                writeString(name.firstToken.text);
+        }
+    }
+}
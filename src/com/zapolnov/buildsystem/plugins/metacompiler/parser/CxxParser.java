@@ -29,15 +29,20 @@ import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxParentClass;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxScope;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import com.zapolnov.buildsystem.utility.FileUtils;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
 
-/** Parser for C++ files. */
+/**
+ * Parser for C++ files.
+ * Parser only keeps kind of the current token. Text and location of the token are materialized into a `CxxToken`
+ * only for identifiers that become part of the syntax tree and for error messages.
+ */
 public final class CxxParser
 {
     /** Parse error. */
@@ -75,8 +80,10 @@ public final class CxxParser
     private final File file;
     /** A lexer. */
     private final CxxLexer lexer;
-    /** Current token. */
-    private CxxToken token;
+    /** Raw bytes of the file (`null` if file is read through a `Reader`). */
+    private final ByteBuffer source;
+    /** Kind of the current token. */
+    private int token;
     /** Current scope. */
     private CxxScope currentScope;
     /** Stack of scopes. */
@@ -87,9 +94,21 @@ public final class CxxParser
      * @param file File to parse.
      */
     public CxxParser(File file) throws IOException
+    {
+        this(FileUtils.byteBufferFromFile(file), file);
+    }
+
+    /**
+     * Constructor.
+     * Lexer reads bytes of the buffer directly, without charset decoding. File is assumed to be in UTF-8.
+     * @param source Contents of the file (from position to limit).
+     * @param file Name of the file.
+     */
+    public CxxParser(ByteBuffer source, File file)
     {
         this.file = file;
-        this.lexer = new CxxLexer(new FileReader(file));
+        this.source = source.slice();
+        this.lexer = new CxxLexer(new ByteBufferReader(this.source));
     }
 
     /**
@@ -100,6 +119,7 @@ public final class CxxParser
     public CxxParser(Reader reader, File file)
     {
         this.file = file;
+        this.source = null;
         this.lexer = new CxxLexer(reader);
     }
 
@@ -129,7 +149,7 @@ public final class CxxParser
         pushScope(translationUnit.globalScope);
         try {
             nextToken();
-            while (token.id != CxxToken.EOF)
+            while (token != CxxToken.EOF)
                 parseNamespaceMember();
         } finally {
             this.currentScope = null;
@@ -145,7 +165,7 @@ public final class CxxParser
         nextToken();
 
         CxxFullyQualifiedName name = null;
-        if (token.id != CxxToken.LCURLY)
+        if (token != CxxToken.LCURLY)
             name = parseFullyQualifiedName();
 
         parseLeftCurly();
@@ -155,7 +175,7 @@ public final class CxxParser
 
         pushScope(namespace.scope);
         try {
-            while (token.id != CxxToken.RCURLY && token.id != CxxToken.EOF)
+            while (token != CxxToken.RCURLY && token != CxxToken.EOF)
                 parseNamespaceMember();
         } finally {
             popScope();
@@ -167,7 +187,7 @@ public final class CxxParser
     /** Parses a member of the namespace. */
     private void parseNamespaceMember() throws IOException
     {
-        switch (token.id)
+        switch (token)
         {
         case CxxToken.NAMESPACE:
             parseNamespace();
@@ -199,39 +219,39 @@ public final class CxxParser
         CxxFullyQualifiedName name = parseFullyQualifiedName();
 
         boolean isTemplateSpecialization = false;
-        if (token.id == CxxToken.LESS) {
+        if (token == CxxToken.LESS) {
             nextToken();
             skipUntilRightAngleBracket();
             isTemplateSpecialization = true;
         }
 
-        if (token.id == CxxToken.SEMICOLON) {
+        if (token == CxxToken.SEMICOLON) {
             // Forward declaration of a class
             nextToken();
             return;
         }
 
         List<CxxParentClass> parentClasses = new ArrayList<>();
-        if (token.id == CxxToken.COLON) {
+        if (token == CxxToken.COLON) {
             do {
                 nextToken();
 
                 boolean virtualInheritance = false;
-                if (token.id == CxxToken.VIRTUAL) {
+                if (token == CxxToken.VIRTUAL) {
                     nextToken();
                     virtualInheritance = true;
                 }
 
                 CxxMemberProtection protection = parseClassMemberProtection();
 
-                if (!virtualInheritance && token.id == CxxToken.VIRTUAL) {
+                if (!virtualInheritance && token == CxxToken.VIRTUAL) {
                     nextToken();
                     virtualInheritance = true;
                 }
 
                 CxxFullyQualifiedName parentName = parseFullyQualifiedName();
                 parentClasses.add(new CxxParentClass(parentName, protection, virtualInheritance));
-            } while (token.id == CxxToken.COMMA);
+            } while (token == CxxToken.COMMA);
         }
 
         parseLeftCurly();
@@ -241,7 +261,7 @@ public final class CxxParser
 
         pushScope(cxxClass.scope);
         try {
-            while (token.id != CxxToken.RCURLY && token.id != CxxToken.EOF)
+            while (token != CxxToken.RCURLY && token != CxxToken.EOF)
                 parseClassMember(cxxClass);
         } finally {
             popScope();
@@ -257,10 +277,10 @@ public final class CxxParser
      */
     private void parseClassMember(CxxClass cxxClass) throws IOException
     {
-        CxxToken firstToken = token;
+        CxxToken firstToken;
         CxxFullyQualifiedName name;
 
-        switch (token.id)
+        switch (token)
         {
         case CxxToken.CLASS:
         case CxxToken.STRUCT:
@@ -272,48 +292,52 @@ public final class CxxParser
             break;
 
         case CxxToken.Z_INTERFACE:
+            firstToken = currentToken();
             name = parseZInterface();
             if (cxxClass.type != CxxClassType.DEFAULT)
                 throw new Error(firstToken, "Unexpected Z_INTERFACE.");
             else if (cxxClass.isTemplateSpecialization)
                 throw new Error(name.firstToken, "Z_INTERFACE() is not supported in template specializations.");
-            else if (!name.text.equals(cxxClass.name.lastComponent()))
+            else if (!name.text().equals(cxxClass.name.lastComponent()))
                 throw new Error(name.firstToken, "Name in Z_INTERFACE() does not match the class name.");
             else
                 cxxClass.type = CxxClassType.INTERFACE;
             break;
 
         case CxxToken.Z_IMPLEMENTATION:
+            firstToken = currentToken();
             name = parseZImplementation();
             if (cxxClass.type != CxxClassType.DEFAULT)
                 throw new Error(firstToken, "Unexpected Z_IMPLEMENTATION.");
             else if (cxxClass.isTemplateSpecialization)
                 throw new Error(name.firstToken, "Z_IMPLEMENTATION() is not supported in template specializations.");
-            else if (!name.text.equals(cxxClass.name.lastComponent()))
+            else if (!name.text().equals(cxxClass.name.lastComponent()))
                 throw new Error(name.firstToken, "Name in Z_IMPLEMENTATION() does not match the class name.");
             else
                 cxxClass.type = CxxClassType.IMPLEMENTATION;
             break;
 
         case CxxToken.Z_SINGLETON_IMPLEMENTATION:
+            firstToken = currentToken();
             name = parseZSingletonImplementation();
             if (cxxClass.type != CxxClassType.DEFAULT)
                 throw new Error(firstToken, "Unexpected Z_SINGLETON_IMPLEMENTATION.");
             else if (cxxClass.isTemplateSpecialization)
                 throw new Error(name.firstToken, "Z_SINGLETON_IMPLEMENTATION() is not supported in template specializations.");
-            else if (!name.text.equals(cxxClass.name.lastComponent()))
+            else if (!name.text().equals(cxxClass.name.lastComponent()))
                 throw new Error(name.firstToken, "Name in Z_SINGLETON_IMPLEMENTATION() does not match the class name.");
             else
                 cxxClass.type = CxxClassType.SINGLETON_IMPLEMENTATION;
             break;
 
         case CxxToken.Z_CUSTOM_IMPLEMENTATION:
+            firstToken = currentToken();
             name = parseZCustomImplementation();
             if (cxxClass.type != CxxClassType.DEFAULT)
                 throw new Error(firstToken, "Unexpected Z_CUSTOM_IMPLEMENTATION.");
             else if (cxxClass.isTemplateSpecialization)
                 throw new Error(name.firstToken, "Z_CUSTOM_IMPLEMENTATION() is not supported in template specializations.");
-            else if (!name.text.equals(cxxClass.name.lastComponent()))
+            else if (!name.text().equals(cxxClass.name.lastComponent()))
                 throw new Error(name.firstToken, "Name in Z_CUSTOM_IMPLEMENTATION() does not match the class name.");
             else
                 cxxClass.type = CxxClassType.CUSTOM_IMPLEMENTATION;
@@ -335,7 +359,7 @@ public final class CxxParser
      */
     private CxxMemberProtection parseClassMemberProtection() throws IOException
     {
-        switch (token.id)
+        switch (token)
         {
         case CxxToken.PRIVATE:
             nextToken();
@@ -356,7 +380,7 @@ public final class CxxParser
         nextToken();
 
         parseLeftAngleBracket();
-        while (token.id != CxxToken.GREATER) {
+        while (token != CxxToken.GREATER) {
             nextToken();
         }
         parseRightAngleBracket();
@@ -428,44 +452,48 @@ public final class CxxParser
      */
     private CxxFullyQualifiedName parseFullyQualifiedName() throws IOException
     {
-        StringBuilder builder = new StringBuilder();
-        CxxToken firstToken = token;
+        CxxToken firstToken = currentToken();
 
-        if (token.id == CxxToken.SCOPE) {
-            builder.append("::");
+        CxxFullyQualifiedName name;
+        if (token == CxxToken.SCOPE) {
+            nextToken();
+            name = new CxxFullyQualifiedName(firstToken, null, parseIdentifier(), true);
+        } else {
+            // Text of the first identifier has already been materialized into the first token
+            if (token != CxxToken.IDENTIFIER)
+                throw new Error(firstToken, "Expected identifier.");
             nextToken();
+            name = new CxxFullyQualifiedName(firstToken, null, firstToken.text, false);
         }
 
-        builder.append(parseIdentifier().text);
-        while (token.id == CxxToken.SCOPE) {
-            builder.append("::");
+        while (token == CxxToken.SCOPE) {
             nextToken();
-            builder.append(parseIdentifier().text);
+            name = new CxxFullyQualifiedName(firstToken, name, parseIdentifier(), false);
         }
 
-        return new CxxFullyQualifiedName(firstToken, builder.toString());
+        return name;
     }
 
     /**
      * Parses an identifier.
-     * @return CxxToken for the identifier.
+     * @return Text of the identifier.
      */
-    private CxxToken parseIdentifier() throws IOException
+    private String parseIdentifier() throws IOException
     {
-        if (token.id != CxxToken.IDENTIFIER)
-            throw new Error(token, "Expected identifier.");
+        if (token != CxxToken.IDENTIFIER)
+            throw new Error(currentToken(), "Expected identifier.");
 
-        CxxToken identifierToken = token;
+        String text = lexer.yytext();
         nextToken();
 
-        return identifierToken;
+        return text;
     }
 
     /** Skips all tokens until the right angle bracket ('>'). */
     private void skipUntilRightAngleBracket() throws IOException
     {
-        while (token.id != CxxToken.GREATER && token.id != CxxToken.EOF) {
-            if (token.id != CxxToken.LESS)
+        while (token != CxxToken.GREATER && token != CxxToken.EOF) {
+            if (token != CxxToken.LESS)
                 nextToken();
             else {
                 nextToken();
@@ -478,8 +506,8 @@ public final class CxxParser
     /** Skips all tokens until the right curly bracket ('{'). */
     private void skipUntilRCurly() throws IOException
     {
-        while (token.id != CxxToken.RCURLY && token.id != CxxToken.EOF) {
-            if (token.id != CxxToken.LCURLY)
+        while (token != CxxToken.RCURLY && token != CxxToken.EOF) {
+            if (token != CxxToken.LCURLY)
                 nextToken();
             else {
                 nextToken();
@@ -492,59 +520,89 @@ public final class CxxParser
     /** Parses the left angle bracket (`<`). */
     private void parseLeftAngleBracket() throws IOException
     {
-        if (token.id != CxxToken.LESS)
-            throw new Error(token, "Expected '<'.");
+        if (token != CxxToken.LESS)
+            throw new Error(currentToken(), "Expected '<'.");
         nextToken();
     }
 
     /** Parses the right angle bracket (`>`). */
     private void parseRightAngleBracket() throws IOException
     {
-        if (token.id != CxxToken.GREATER)
-            throw new Error(token, "Expected '>'.");
+        if (token != CxxToken.GREATER)
+            throw new Error(currentToken(), "Expected '>'.");
         nextToken();
     }
 
     /** Parses the left parenthesis (`(`). */
     private void parseLeftParenthesis() throws IOException
     {
-        if (token.id != CxxToken.LPAREN)
-            throw new Error(token, "Expected '('.");
+        if (token != CxxToken.LPAREN)
+            throw new Error(currentToken(), "Expected '('.");
         nextToken();
     }
 
     /** Parses the right parenthesis (`)`). */
     private void parseRightParenthesis() throws IOException
     {
-        if (token.id != CxxToken.RPAREN)
-            throw new Error(token, "Expected ')'.");
+        if (token != CxxToken.RPAREN)
+            throw new Error(currentToken(), "Expected ')'.");
         nextToken();
     }
 
     /** Parses the left curly bracket (`{`). */
     private void parseLeftCurly() throws IOException
     {
-        if (token.id != CxxToken.LCURLY)
-            throw new Error(token, "Expected '{'.");
+        if (token != CxxToken.LCURLY)
+            throw new Error(currentToken(), "Expected '{'.");
         nextToken();
     }
 
     /** Parses the right curly bracket (`}`). */
     private void parseRightCurly() throws IOException
     {
-        if (token.id != CxxToken.RCURLY)
-            throw new Error(token, "Expected '}'.");
+        if (token != CxxToken.RCURLY)
+            throw new Error(currentToken(), "Expected '}'.");
         nextToken();
     }
 
     /** Parses the semicolon (`;`). */
     private void parseSemicolon() throws IOException
     {
-        if (token.id != CxxToken.SEMICOLON)
-            throw new Error(token, "Expected ';'.");
+        if (token != CxxToken.SEMICOLON)
+            throw new Error(currentToken(), "Expected ';'.");
         nextToken();
     }
 
+    /**
+     * Materializes the current token.
+     * @return Current token.
+     */
+    private CxxToken currentToken()
+    {
+        String text = (token != CxxToken.EOF ? lexer.yytext() : "");
+        int column = (source != null ? utf8Column(lexer.offset()) : lexer.column());
+        return new CxxToken(token, lexer.line(), column, text);
+    }
+
+    /**
+     * Calculates column number for the specified offset in the raw file data.
+     * Lexer counts bytes, but column numbers should count characters as if file was decoded from UTF-8.
+     * @param offset Offset in the file data.
+     * @return Column number (starting from 1).
+     */
+    private int utf8Column(int offset)
+    {
+        int column = 1;
+        for (int i = Math.min(offset, source.limit()) - 1; i >= 0; i--) {
+            byte b = source.get(i);
+            if (b == '\n' || b == '\r')
+                break;
+            if ((b & 0xC0) != 0x80)                     // Skip continuation bytes
+                column += ((b & 0xF8) == 0xF0 ? 2 : 1); // Four-byte sequences are surrogate pairs in UTF-16
+        }
+        return column;
+    }
+
     /**
      * Reads next token from the input file.
      * @return Token ID.
@@ -552,6 +610,6 @@ public final class CxxParser
     private int nextToken() throws IOException
     {
         token = lexer.yylex();
-        return token.id;
+        return token;
     }
 }
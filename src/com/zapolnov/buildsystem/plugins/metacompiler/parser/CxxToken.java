@@ -21,10 +21,8 @@
  */
 package com.zapolnov.buildsystem.plugins.metacompiler.parser;
 
-import java.io.Serializable;
-
 /** A token in the C++ file. */
-public final class CxxToken implements Serializable
+public final class CxxToken
 {
     /** End of file. */
     public static final int EOF = 0;
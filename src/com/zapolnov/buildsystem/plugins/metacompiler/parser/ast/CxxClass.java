@@ -22,13 +22,12 @@
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /** An AST node for a class. */
-public class CxxClass extends CxxSymbol implements Serializable
+public class CxxClass extends CxxSymbol
 {
     /** Translation unit containing this class. */
     public final CxxTranslationUnit translationUnit;
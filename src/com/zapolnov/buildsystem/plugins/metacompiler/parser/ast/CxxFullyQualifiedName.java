@@ -22,15 +22,29 @@
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxToken;
-import java.io.Serializable;
 
-/** AST node for a fully qualified name. */
-public class CxxFullyQualifiedName implements Serializable
+/**
+ * AST node for a fully qualified name.
+ *
+ * Name is represented as a chain of components linked to the enclosing name, so that names of nested scopes share
+ * their common prefix, and merging a name with a single-component name does not copy anything. Components are
+ * interned with `String.intern`, so they are shared by all translation units and are garbage collected once no
+ * longer referenced. Text of the name is built on the first request.
+ */
+public class CxxFullyQualifiedName
 {
     /** First token of the name. */
     public final CxxToken firstToken;
-    /** Text of the name. */
-    public final String text;
+    /** Enclosing name (`null` if this name consists of a single component). */
+    private final CxxFullyQualifiedName parent;
+    /** Last component of the name (empty for an empty name). */
+    private final String component;
+    /** Set to `true` if name starts with the global scope qualifier (`::`). */
+    private final boolean global;
+    /** Number of components in the name. */
+    private final int numberOfComponents;
+    /** Text of the name (`null` if it has not been built yet). */
+    private String text;
 
     /**
      * Constructor.
@@ -39,22 +53,110 @@ public class CxxFullyQualifiedName implements Serializable
      */
     public CxxFullyQualifiedName(CxxToken firstToken, String text)
     {
+        CxxFullyQualifiedName parent = null;
+        String component = "";
+        boolean global = text.startsWith("::");
+        int numberOfComponents = 0;
+
+        if (!text.isEmpty()) {
+            int start = (global ? 2 : 0);
+            for (;;) {
+                int end = text.indexOf("::", start);
+                if (end < 0)
+                    break;
+                parent = new CxxFullyQualifiedName(firstToken, parent, text.substring(start, end), global);
+                start = end + 2;
+            }
+            component = text.substring(start);
+            numberOfComponents = (parent != null ? parent.numberOfComponents : 0) + 1;
+        }
+
         this.firstToken = firstToken;
+        this.parent = parent;
+        this.component = component.intern();
+        this.global = global;
+        this.numberOfComponents = numberOfComponents;
         this.text = text;
     }
 
+    /**
+     * Constructor.
+     * @param firstToken First token of the name.
+     * @param parent Enclosing name (`null` if this is the first component).
+     * @param component Last component of the name.
+     * @param global Set to `true` if name starts with the global scope qualifier (`::`).
+     */
+    public CxxFullyQualifiedName(CxxToken firstToken, CxxFullyQualifiedName parent, String component, boolean global)
+    {
+        this.firstToken = firstToken;
+        this.parent = parent;
+        this.component = component.intern();
+        this.global = (parent != null ? parent.global : global);
+        this.numberOfComponents = (parent != null ? parent.numberOfComponents : 0) + 1;
+    }
+
+    /**
+     * Retrieves text of this fully qualified name.
+     * @return Text of the name.
+     */
+    public String text()
+    {
+        if (text == null) {
+            StringBuilder builder = new StringBuilder();
+            appendTo(builder);
+            text = builder.toString();
+        }
+        return text;
+    }
+
+    /**
+     * Appends text of this fully qualified name to the specified builder.
+     * @param builder String builder.
+     */
+    private void appendTo(StringBuilder builder)
+    {
+        if (parent != null) {
+            if (parent.text != null)
+                builder.append(parent.text);
+            else
+                parent.appendTo(builder);
+            builder.append("::");
+        } else if (global)
+            builder.append("::");
+        builder.append(component);
+    }
+
+    /**
+     * Checks whether this name starts with the global scope qualifier (`::`).
+     * @return `true` if name starts with `::`, otherwise returns `false`.
+     */
+    public boolean isGlobal()
+    {
+        return global;
+    }
+
+    /**
+     * Retrieves components of this fully qualified name.
+     * @return Array of name components (without the global scope qualifier).
+     */
+    public String[] components()
+    {
+        String[] components = new String[numberOfComponents];
+        CxxFullyQualifiedName name = this;
+        for (int i = numberOfComponents - 1; i >= 0; i--) {
+            components[i] = name.component;
+            name = name.parent;
+        }
+        return components;
+    }
+
     /**
      * Retrieves last component of this fully qualified name.
      * @return Last component of this fully qualified name.
      */
     public String lastComponent()
     {
-        if (text == null || text.isEmpty())
-            return "";
-
-        String[] parts = text.split("::");
-        int last = parts.length - 1;
-        return (last >= 0 ? parts[last] : "");
+        return component;
     }
 
     /**
@@ -64,12 +166,21 @@ public class CxxFullyQualifiedName implements Serializable
      */
     public CxxFullyQualifiedName mergeWith(CxxFullyQualifiedName other)
     {
-        if (other.text.startsWith("::"))
+        if (other.global)
             return other;
 
-        if (firstToken == null && text.isEmpty())
+        if (firstToken == null && numberOfComponents == 0)
             return other;
 
-        return new CxxFullyQualifiedName(firstToken, text + "::" + other.text);
+        CxxFullyQualifiedName result = this;
+        for (String otherComponent : other.components())
+            result = new CxxFullyQualifiedName(firstToken, result, otherComponent, false);
+
+        return result;
+    }
+
+    @Override public String toString()
+    {
+        return text();
     }
 }
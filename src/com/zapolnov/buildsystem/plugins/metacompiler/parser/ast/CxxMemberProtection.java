@@ -21,10 +21,8 @@
  */
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
-import java.io.Serializable;
-
 /** Protection level of a C++ class or struct member. */
-public enum CxxMemberProtection implements Serializable
+public enum CxxMemberProtection
 {
     /** Member is private. */
     PRIVATE,
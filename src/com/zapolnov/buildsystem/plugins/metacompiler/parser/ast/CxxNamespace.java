@@ -22,10 +22,9 @@
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
-import java.io.Serializable;
 
 /** An AST node for a namespace. */
-public class CxxNamespace extends CxxSymbol implements Serializable
+public class CxxNamespace extends CxxSymbol
 {
     /** Translation unit containing this namespace. */
     public final CxxTranslationUnit translationUnit;
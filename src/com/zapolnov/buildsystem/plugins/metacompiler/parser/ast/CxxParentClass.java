@@ -21,10 +21,8 @@
  */
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
-import java.io.Serializable;
-
 /** Parent class in a class declaration. */
-public class CxxParentClass implements Serializable
+public class CxxParentClass
 {
     /** Name of the parent class. */
     public final CxxFullyQualifiedName name;
@@ -22,13 +22,12 @@
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
-import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /** A scope. */
-public class CxxScope implements Serializable
+public class CxxScope
 {
     /** Translation unit containing this scope. */
     public final CxxTranslationUnit translationUnit;
@@ -22,10 +22,9 @@
 package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
-import java.io.Serializable;
 
 /** Base class for AST nodes for symbols. */
-public abstract class CxxSymbol implements Serializable
+public abstract class CxxSymbol
 {
     /** Name of the symbol (could be `null`). */
     public final CxxFullyQualifiedName name;
@@ -23,10 +23,9 @@ package com.zapolnov.buildsystem.plugins.metacompiler.parser.ast;
 
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstVisitor;
 import java.io.File;
-import java.io.Serializable;
 
 /** AST node for a translation unit. */
-public class CxxTranslationUnit implements Serializable
+public class CxxTranslationUnit
 {
     /** Path to the source file. */
     public final File file;
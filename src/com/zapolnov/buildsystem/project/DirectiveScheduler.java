@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.project;
+
+import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.Log;
+import com.zapolnov.buildsystem.utility.Statistics;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Scheduler for the `preBuild` and `build` actions of directives.
+ *
+ * Directives of the scope and of all nested scopes (see `ProjectDirective.nestedScope`) are arranged into a graph
+ * of tasks. A task depends on all preceding tasks that write files read or written by it, and on all preceding
+ * tasks that read files written by it. Independent tasks are executed concurrently on a work-stealing pool;
+ * dependent tasks are executed in the order of directives in the project file.
+ *
+ * After each phase the critical path (the longest chain of dependent tasks) is computed, written into the log and
+ * recorded into the statistics.
+ */
+public final class DirectiveScheduler
+{
+    /** Action performed by the task. */
+    private interface Action
+    {
+        /**
+         * Performs the action.
+         * @param directive Directive.
+         * @param projectBuilder Project builder.
+         */
+        void run(ProjectDirective directive, ProjectBuilder projectBuilder) throws Throwable;
+    }
+
+    /** A task in the graph. */
+    private static final class Task
+    {
+        /** Index of the task in the list of tasks. */
+        final int index;
+        /** Directive. */
+        final ProjectDirective directive;
+        /** Name of the task (used in statistics). */
+        final String name;
+        /** Canonical paths to the files read by the task. */
+        final List<String> inputs = new ArrayList<>();
+        /** Canonical paths to the files written by the task. */
+        final List<String> outputs = new ArrayList<>();
+        /** Tasks that depend on this task. */
+        final List<Task> successors = new ArrayList<>();
+        /** Tasks this task depends on. */
+        final List<Task> dependencies = new ArrayList<>();
+        /** Number of dependencies that have not completed yet. */
+        final AtomicInteger pendingDependencies = new AtomicInteger();
+        /** Wall time spent in the task, in nanoseconds. */
+        volatile long wallTime;
+
+        /**
+         * Constructor.
+         * @param index Index of the task in the list of tasks.
+         * @param directive Directive.
+         * @param name Name of the task.
+         */
+        Task(int index, ProjectDirective directive, String name)
+        {
+            this.index = index;
+            this.directive = directive;
+            this.name = name;
+        }
+    }
+
+    /** Root scope. */
+    private final ProjectScope scope;
+    /** Maximum number of threads to use. */
+    private final int numberOfThreads;
+    /** Statistics to record timings into. */
+    private final Statistics statistics;
+    /** Names of the tasks on the critical path of the last executed phase. */
+    private List<String> criticalPath = Collections.emptyList();
+    /** Length of the critical path of the last executed phase, in nanoseconds. */
+    private long criticalPathTime;
+
+    /**
+     * Constructor.
+     * @param scope Root scope.
+     * @param numberOfThreads Maximum number of threads to use (value of 1 disables multithreading).
+     * @param statistics Statistics to record timings into.
+     */
+    public DirectiveScheduler(ProjectScope scope, int numberOfThreads, Statistics statistics)
+    {
+        this.scope = scope;
+        this.numberOfThreads = Math.max(numberOfThreads, 1);
+        this.statistics = statistics;
+    }
+
+    /**
+     * Retrieves the critical path of the last executed phase.
+     * @return Names of the tasks on the critical path, in the order of execution.
+     */
+    public List<String> criticalPath()
+    {
+        return criticalPath;
+    }
+
+    /**
+     * Retrieves length of the critical path of the last executed phase.
+     * @return Sum of wall times of the tasks on the critical path, in nanoseconds.
+     */
+    public long criticalPathTime()
+    {
+        return criticalPathTime;
+    }
+
+    /**
+     * Performs pre-build actions of all directives.
+     * @param projectBuilder Project builder.
+     */
+    public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    {
+        run(projectBuilder, "preBuild", ProjectDirective::preBuild);
+    }
+
+    /**
+     * Performs build actions of all directives.
+     * @param projectBuilder Project builder.
+     */
+    public void build(ProjectBuilder projectBuilder) throws Throwable
+    {
+        run(projectBuilder, "build", ProjectDirective::build);
+    }
+
+    /**
+     * Executes the specified action for all directives.
+     * @param projectBuilder Project builder.
+     * @param actionName Name of the action (used in statistics).
+     * @param action Action to perform.
+     */
+    private void run(ProjectBuilder projectBuilder, String actionName, Action action) throws Throwable
+    {
+        List<Task> tasks = new ArrayList<>();
+        collectTasks(projectBuilder, scope, actionName, tasks);
+        linkTasks(tasks);
+
+        int threads = Math.min(numberOfThreads, tasks.size());
+        if (threads <= 1) {
+            for (Task task : tasks)
+                execute(projectBuilder, task, action);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                CountDownLatch remaining = new CountDownLatch(tasks.size());
+                AtomicReference<Throwable> failure = new AtomicReference<>();
+                for (Task task : tasks) {
+                    if (task.dependencies.isEmpty())
+                        pool.execute(() -> executeAsync(pool, projectBuilder, task, action, remaining, failure));
+                }
+                remaining.await();
+                if (failure.get() != null)
+                    throw failure.get();
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+
+        reportCriticalPath(tasks, actionName);
+    }
+
+    /**
+     * Collects tasks for directives of the specified scope and of its nested scopes.
+     * @param projectBuilder Project builder.
+     * @param scope Scope.
+     * @param actionName Name of the action.
+     * @param tasks Output list of tasks.
+     */
+    private static void collectTasks(ProjectBuilder projectBuilder, ProjectScope scope, String actionName,
+        List<Task> tasks)
+    {
+        for (ProjectDirective directive : scope.directives()) {
+            ProjectScope nestedScope = directive.nestedScope();
+            if (nestedScope != null) {
+                collectTasks(projectBuilder, nestedScope, actionName, tasks);
+                continue;
+            }
+
+            String name = String.format("%s: %s.%s", scope.relativePath(), directive.getClass().getSimpleName(),
+                actionName);
+            Task task = new Task(tasks.size(), directive, name);
+            for (File file : directive.inputFiles(projectBuilder))
+                task.inputs.add(FileUtils.getCanonicalPath(file));
+            for (File file : directive.outputFiles(projectBuilder))
+                task.outputs.add(FileUtils.getCanonicalPath(file));
+            tasks.add(task);
+        }
+    }
+
+    /**
+     * Calculates dependencies between tasks.
+     * @param tasks List of tasks (in the order of directives in the project file).
+     */
+    private static void linkTasks(List<Task> tasks)
+    {
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            for (int j = 0; j < i; j++) {
+                Task previous = tasks.get(j);
+                if (previous.outputs.isEmpty() && task.outputs.isEmpty())
+                    continue;
+                if (overlaps(previous.outputs, task.inputs) || overlaps(previous.outputs, task.outputs)
+                        || overlaps(task.outputs, previous.inputs)) {
+                    previous.successors.add(task);
+                    task.dependencies.add(previous);
+                }
+            }
+            task.pendingDependencies.set(task.dependencies.size());
+        }
+    }
+
+    /**
+     * Checks whether any path in the first list refers to the same file or directory as any path in the second
+     * list, or to its parent or child.
+     * @param paths1 First list of canonical paths.
+     * @param paths2 Second list of canonical paths.
+     * @return `true` if lists overlap, otherwise returns `false`.
+     */
+    private static boolean overlaps(List<String> paths1, List<String> paths2)
+    {
+        for (String path1 : paths1) {
+            for (String path2 : paths2) {
+                if (isSameOrParent(path1, path2) || isSameOrParent(path2, path1))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether first path is the same as the second path or is its parent.
+     * @param parent Canonical path to the possible parent.
+     * @param path Canonical path.
+     * @return `true` if paths are the same or if `parent` is a parent of `path`, otherwise returns `false`.
+     */
+    private static boolean isSameOrParent(String parent, String path)
+    {
+        if (!path.startsWith(parent))
+            return false;
+        return path.length() == parent.length() || parent.endsWith(File.separator)
+            || path.charAt(parent.length()) == File.separatorChar;
+    }
+
+    /**
+     * Executes the task in the calling thread.
+     * @param projectBuilder Project builder.
+     * @param task Task to execute.
+     * @param action Action to perform.
+     */
+    private void execute(ProjectBuilder projectBuilder, Task task, Action action) throws Throwable
+    {
+        long startTime = System.nanoTime();
+        try {
+            statistics.measure(Statistics.CATEGORY_DIRECTIVE, task.name,
+                () -> action.run(task.directive, projectBuilder));
+        } finally {
+            task.wallTime = System.nanoTime() - startTime;
+        }
+    }
+
+    /**
+     * Executes the task in the pool and schedules tasks depending on it.
+     * If any task fails, remaining tasks are not executed.
+     * @param pool Pool.
+     * @param projectBuilder Project builder.
+     * @param task Task to execute.
+     * @param action Action to perform.
+     * @param remaining Number of tasks that have not completed yet.
+     * @param failure Exception thrown by the first failed task.
+     */
+    private void executeAsync(ForkJoinPool pool, ProjectBuilder projectBuilder, Task task, Action action,
+        CountDownLatch remaining, AtomicReference<Throwable> failure)
+    {
+        try {
+            if (failure.get() == null)
+                execute(projectBuilder, task, action);
+        } catch (Throwable t) {
+            failure.compareAndSet(null, t);
+        } finally {
+            for (Task successor : task.successors) {
+                if (successor.pendingDependencies.decrementAndGet() == 0)
+                    pool.execute(() -> executeAsync(pool, projectBuilder, successor, action, remaining, failure));
+            }
+            remaining.countDown();
+        }
+    }
+
+    /**
+     * Calculates the critical path and writes it into the log.
+     * @param tasks List of executed tasks (in the order of directives in the project file).
+     * @param actionName Name of the action.
+     */
+    private void reportCriticalPath(List<Task> tasks, String actionName)
+    {
+        // Tasks depend only on preceding tasks, so the list is already sorted topologically
+        long[] pathTime = new long[tasks.size()];
+        int[] predecessor = new int[tasks.size()];
+        int last = -1;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            predecessor[i] = -1;
+            for (Task dependency : task.dependencies) {
+                if (predecessor[i] < 0 || pathTime[dependency.index] > pathTime[predecessor[i]])
+                    predecessor[i] = dependency.index;
+            }
+            pathTime[i] = task.wallTime + (predecessor[i] >= 0 ? pathTime[predecessor[i]] : 0);
+            if (last < 0 || pathTime[i] > pathTime[last])
+                last = i;
+        }
+
+        List<String> path = new ArrayList<>();
+        for (int i = last; i >= 0; i = predecessor[i])
+            path.add(tasks.get(i).name);
+        Collections.reverse(path);
+
+        criticalPath = Collections.unmodifiableList(path);
+        criticalPathTime = (last >= 0 ? pathTime[last] : 0);
+        statistics.record(Statistics.CATEGORY_CRITICAL_PATH, actionName, criticalPathTime, 0, 0);
+
+        Log.debug(String.format("Critical path of %s (%d of %d directives): %d ms.", actionName, path.size(),
+            tasks.size(), criticalPathTime / 1000000));
+        for (String name : path)
+            Log.trace(String.format("    %s", name));
+    }
+}
@@ -22,6 +22,9 @@
 package com.zapolnov.buildsystem.project;
 
 import com.zapolnov.buildsystem.build.ProjectBuilder;
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
 
 /** Base class for directives in the project file. */
 public abstract class ProjectDirective
@@ -47,6 +50,40 @@ public abstract class ProjectDirective
     {
     }
 
+    /**
+     * Retrieves scope nested into this directive.
+     * Directives of the nested scope are scheduled by the `DirectiveScheduler` along with directives of the
+     * enclosing scope, so directives exposing a nested scope should not override `preBuild` and `build` to
+     * process it.
+     * @return Nested scope or `null` if there is no nested scope.
+     */
+    public ProjectScope nestedScope()
+    {
+        return null;
+    }
+
+    /**
+     * Retrieves files and directories read by the `preBuild` and `build` methods of this directive.
+     * Directives overriding these methods should declare all files they access, as directives not sharing any
+     * files are executed concurrently.
+     * @param projectBuilder Project builder.
+     * @return List of files and directories.
+     */
+    public List<File> inputFiles(ProjectBuilder projectBuilder)
+    {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Retrieves files and directories written by the `preBuild` and `build` methods of this directive.
+     * @param projectBuilder Project builder.
+     * @return List of files and directories.
+     */
+    public List<File> outputFiles(ProjectBuilder projectBuilder)
+    {
+        return Collections.emptyList();
+    }
+
     /**
      * Visits this directive with the specified visitor.
      * @param visitor Visitor.
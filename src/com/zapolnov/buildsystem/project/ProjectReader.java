@@ -30,12 +30,14 @@ import com.zapolnov.buildsystem.project.directives.SourceDirectoriesDirective;
 import com.zapolnov.buildsystem.project.directives.SourceFilesDirective;
 import com.zapolnov.buildsystem.project.directives.TargetNameDirective;
 import com.zapolnov.buildsystem.project.directives.TargetPlatformSelectorDirective;
+import com.zapolnov.buildsystem.utility.DirectoryWalker;
 import com.zapolnov.buildsystem.utility.FileUtils;
 import com.zapolnov.buildsystem.utility.StringUtils;
 import com.zapolnov.buildsystem.utility.yaml.YamlError;
 import com.zapolnov.buildsystem.utility.yaml.YamlParser;
 import com.zapolnov.buildsystem.utility.yaml.YamlValue;
 import java.io.File;
+import java.nio.file.PathMatcher;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -211,14 +213,50 @@ public class ProjectReader
 
     /**
      * Parses directives 'source_directories' and '3rdparty_source_directories".
+     * Value of the directive is either a list of directories or a mapping with the list of directories in the
+     * 'directories' key and a list of glob (or 'regex:'-prefixed) patterns of files and subdirectories to skip in the
+     * 'exclude' key.
      * @param r Instance of the reader.
      * @param v Value of the directive.
      * @param thirdparty Set to `true` if directive is '3rdparty_source_directories'.
      */
     public static void parseSourceDirectories(ProjectReader r, YamlValue v, boolean thirdparty)
     {
+        YamlValue paths = v;
+        List<PathMatcher> excludes = new ArrayList<>();
+
+        if (v.isMapping()) {
+            paths = null;
+            for (Map.Entry<YamlValue, YamlValue> item : v.toMapping().entrySet()) {
+                YamlValue key = item.getKey();
+                YamlValue value = item.getValue();
+
+                switch (key.toString())
+                {
+                case "directories":
+                    paths = value;
+                    break;
+
+                case "exclude":
+                    for (YamlValue pattern : value.toSequence()) {
+                        try {
+                            excludes.add(DirectoryWalker.pathMatcher(pattern.toString()));
+                        } catch (IllegalArgumentException e) {
+                            throw new YamlError(pattern, String.format("Invalid pattern \"%s\".", pattern), e);
+                        }
+                    }
+                    break;
+
+                default:
+                    throw new YamlError(key, String.format("Unknown option \"%s\".", key.toString()));
+                }
+            }
+            if (paths == null)
+                throw new YamlError(v, "Missing list of directories.");
+        }
+
         List<File> directories = new ArrayList<>();
-        for (YamlValue path : v.toSequence()) {
+        for (YamlValue path : paths.toSequence()) {
             File file = new File(r.currentScope().directory, path.toString());
             if (!file.exists() || !file.isDirectory()) {
                 String fileName = FileUtils.getCanonicalPath(file);
@@ -227,7 +265,7 @@ public class ProjectReader
             }
             directories.add(FileUtils.getCanonicalFile(file));
         }
-        r.currentScope().addDirective(new SourceDirectoriesDirective(directories, thirdparty));
+        r.currentScope().addDirective(new SourceDirectoriesDirective(directories, excludes, thirdparty));
     }
 
     /**
@@ -21,9 +21,11 @@
  */
 package com.zapolnov.buildsystem.project;
 
-import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.utility.FileUtils;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** An individual namespace of a project. */
@@ -38,6 +40,8 @@ public class ProjectScope
 
     /** List of directives in this scope. */
     private final List<ProjectDirective> directives = new ArrayList<>();
+    /** Path to the base directory relative to the project directory (used in statistics). */
+    private String relativePath;
 
     /**
      * Constructor.
@@ -61,6 +65,15 @@ public class ProjectScope
         directives.add(directive);
     }
 
+    /**
+     * Retrieves list of directives in this scope.
+     * @return List of directives.
+     */
+    List<ProjectDirective> directives()
+    {
+        return Collections.unmodifiableList(directives);
+    }
+
     /** Clears cached values. */
     public void clearCaches() throws Throwable
     {
@@ -69,23 +82,25 @@ public class ProjectScope
     }
 
     /**
-     * Performs pre-build actions implemented by directives in this scope.
-     * @param projectBuilder Project builder.
+     * Retrieves path to the base directory of this scope relative to the project directory.
+     * @return Relative path.
      */
-    public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    String relativePath()
     {
-        for (ProjectDirective directive : directives)
-            directive.preBuild(projectBuilder);
-    }
+        if (relativePath == null) {
+            ProjectScope root = this;
+            while (root.parent != null)
+                root = root.parent;
 
-    /**
-     * Performs build actions implemented by directives in this scope.
-     * @param projectBuilder Project builder.
-     */
-    public void build(ProjectBuilder projectBuilder) throws Throwable
-    {
-        for (ProjectDirective directive : directives)
-            directive.build(projectBuilder);
+            try {
+                relativePath = FileUtils.getRelativePath(root.directory, directory);
+            } catch (IOException e) {
+                relativePath = directory.getPath();
+            }
+            if (relativePath.isEmpty())
+                relativePath = ".";
+        }
+        return relativePath;
     }
 
     /**
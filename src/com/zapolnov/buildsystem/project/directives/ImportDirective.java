@@ -21,7 +21,6 @@
  */
 package com.zapolnov.buildsystem.project.directives;
 
-import com.zapolnov.buildsystem.build.ProjectBuilder;
 import com.zapolnov.buildsystem.project.ProjectDirective;
 import com.zapolnov.buildsystem.project.ProjectScope;
 import com.zapolnov.buildsystem.project.ProjectVisitor;
@@ -46,14 +45,9 @@ public final class ImportDirective extends ProjectDirective
         scope.clearCaches();
     }
 
-    @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    @Override public ProjectScope nestedScope()
     {
-        scope.preBuild(projectBuilder);
-    }
-
-    @Override public void build(ProjectBuilder projectBuilder) throws Throwable
-    {
-        scope.build(projectBuilder);
+        return scope;
     }
 
     @Override public void visit(ProjectVisitor visitor)
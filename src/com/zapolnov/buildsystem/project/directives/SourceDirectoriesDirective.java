@@ -21,10 +21,13 @@
  */
 package com.zapolnov.buildsystem.project.directives;
 
+import com.zapolnov.buildsystem.build.ProjectBuilder;
 import com.zapolnov.buildsystem.project.ProjectDirective;
 import com.zapolnov.buildsystem.project.ProjectVisitor;
-import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.DirectoryWalker;
+import com.zapolnov.buildsystem.utility.FileType;
 import java.io.File;
+import java.nio.file.PathMatcher;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -34,19 +37,23 @@ public final class SourceDirectoriesDirective extends ProjectDirective
 {
     /** List of directories with source files. */
     private final List<File> sourceDirectories;
+    /** List of patterns for files and directories to exclude. */
+    private final List<PathMatcher> excludes;
     /** Cached list of source files. */
-    private List<File> sourceFiles;
+    private SourceFilesDirective sourceFiles;
     /** Set to `true` if this directive is a '3rdparty_source_directories' directive. */
     public final boolean thirdparty;
 
     /**
      * Constructor.
      * @param sourceDirectories List of directories with source files.
+     * @param excludes List of patterns for files and directories to exclude.
      * @param thirdparty Set to `true` if this directive is a '3rdparty_source_directories' directive.
      */
-    public SourceDirectoriesDirective(List<File> sourceDirectories, boolean thirdparty)
+    public SourceDirectoriesDirective(List<File> sourceDirectories, List<PathMatcher> excludes, boolean thirdparty)
     {
         this.sourceDirectories = new ArrayList<>(sourceDirectories);
+        this.excludes = new ArrayList<>(excludes);
         this.thirdparty = thirdparty;
     }
 
@@ -59,18 +66,46 @@ public final class SourceDirectoriesDirective extends ProjectDirective
         return Collections.unmodifiableList(sourceDirectories);
     }
 
+    /**
+     * Retrieves a list of patterns for files and directories to exclude.
+     * @return List of patterns.
+     */
+    public List<PathMatcher> excludes()
+    {
+        return Collections.unmodifiableList(excludes);
+    }
+
     /**
      * Enumerates all source files in all directories provided in this directive.
      * @return List of source files.
      */
     public List<File> sourceFiles()
+    {
+        return sourceFilesDirective().sourceFiles();
+    }
+
+    /**
+     * Enumerates source files of the specified types in all directories provided in this directive.
+     * @param type Type of files.
+     * @param otherTypes Additional types of files.
+     * @return List of source files.
+     */
+    public List<File> sourceFiles(FileType type, FileType... otherTypes)
+    {
+        return sourceFilesDirective().sourceFiles(type, otherTypes);
+    }
+
+    /**
+     * Retrieves a cached `SourceFilesDirective` with all source files, enumerating them if necessary.
+     * @return Source files directive.
+     */
+    private SourceFilesDirective sourceFilesDirective()
     {
         if (sourceFiles == null) {
-            sourceFiles = new ArrayList<>();
-            for (File directory : sourceDirectories())
-                sourceFiles.addAll(FileUtils.recursivelyEnumerateFilesInDirectory(directory));
+            DirectoryWalker walker = new DirectoryWalker(null, Runtime.getRuntime().availableProcessors(), excludes);
+            sourceFiles = new SourceFilesDirective(walker.walk(sourceDirectories), thirdparty);
         }
-        return Collections.unmodifiableList(sourceFiles);
+        return sourceFiles;
     }
 
     @Override public void clearCaches() throws Throwable
@@ -78,6 +113,20 @@ public final class SourceDirectoriesDirective extends ProjectDirective
         sourceFiles = null;
     }
 
+    @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    {
+        if (sourceFiles == null) {
+            DirectoryWalker walker = new DirectoryWalker(projectBuilder.database, projectBuilder.numberOfThreads(),
+                excludes);
+            sourceFiles = new SourceFilesDirective(walker.walk(sourceDirectories), thirdparty);
+        }
+    }
+
+    @Override public List<File> inputFiles(ProjectBuilder projectBuilder)
+    {
+        return sourceDirectories();
+    }
+
     @Override public void visit(ProjectVisitor visitor)
     {
         visitor.visitSourceDirectories(this);
@@ -89,6 +138,6 @@ public final class SourceDirectoriesDirective extends ProjectDirective
      */
     public void visitFiles(ProjectVisitor visitor)
     {
-        visitor.visitSourceFiles(new SourceFilesDirective(sourceFiles(), thirdparty));
+        visitor.visitSourceFiles(sourceFilesDirective());
     }
 }
@@ -23,9 +23,11 @@ package com.zapolnov.buildsystem.project.directives;
 
 import com.zapolnov.buildsystem.project.ProjectDirective;
 import com.zapolnov.buildsystem.project.ProjectVisitor;
+import com.zapolnov.buildsystem.utility.FileType;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
 
 /** A 'source_files' or '3rdparty_source_files' directive in the project file. */
@@ -33,6 +35,8 @@ public final class SourceFilesDirective extends ProjectDirective
 {
     /** List of source files. */
     private final List<File> sourceFiles;
+    /** Types of source files (in the same order as files). */
+    private final FileType[] fileTypes;
     /** Set to `true` if this directive is a '3rdparty_source_files' directive. */
     public final boolean thirdparty;
 
@@ -45,6 +49,10 @@ public final class SourceFilesDirective extends ProjectDirective
     {
         this.sourceFiles = new ArrayList<>(sourceFiles);
         this.thirdparty = thirdparty;
+
+        fileTypes = new FileType[this.sourceFiles.size()];
+        for (int i = 0; i < fileTypes.length; i++)
+            fileTypes[i] = FileType.forFile(this.sourceFiles.get(i));
     }
 
     /**
@@ -56,6 +64,24 @@ public final class SourceFilesDirective extends ProjectDirective
         return Collections.unmodifiableList(sourceFiles);
     }
 
+    /**
+     * Retrieves a list of source files of the specified types.
+     * Files are classified only once, when directive is created.
+     * @param type Type of files.
+     * @param otherTypes Additional types of files.
+     * @return List of source files (in the same order as in the list of all source files).
+     */
+    public List<File> sourceFiles(FileType type, FileType... otherTypes)
+    {
+        EnumSet<FileType> types = EnumSet.of(type, otherTypes);
+        List<File> result = new ArrayList<>();
+        for (int i = 0; i < fileTypes.length; i++) {
+            if (types.contains(fileTypes[i]))
+                result.add(sourceFiles.get(i));
+        }
+        return result;
+    }
+
     @Override public void visit(ProjectVisitor visitor)
     {
         visitor.visitSourceFiles(this);
@@ -21,7 +21,6 @@
  */
 package com.zapolnov.buildsystem.project.directives;
 
-import com.zapolnov.buildsystem.build.ProjectBuilder;
 import com.zapolnov.buildsystem.build.TargetPlatform;
 import com.zapolnov.buildsystem.project.ProjectDirective;
 import com.zapolnov.buildsystem.project.ProjectScope;
@@ -51,14 +50,9 @@ public final class TargetPlatformSelectorDirective extends ProjectDirective
         scope.clearCaches();
     }
 
-    @Override public void preBuild(ProjectBuilder projectBuilder) throws Throwable
+    @Override public ProjectScope nestedScope()
     {
-        scope.preBuild(projectBuilder);
-    }
-
-    @Override public void build(ProjectBuilder projectBuilder) throws Throwable
-    {
-        scope.build(projectBuilder);
+        return scope;
     }
 
     @Override public void visit(ProjectVisitor visitor)
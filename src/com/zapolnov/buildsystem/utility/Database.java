@@ -23,11 +23,18 @@ package com.zapolnov.buildsystem.utility;
 
 import java.io.File;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 
-/** A database. */
+/**
+ * A database.
+ * Modifications are buffered in memory and written into the database file in a single sorted batch on commit.
+ * All methods of this class are thread-safe.
+ */
 public class Database
 {
     /** File name for the database. */
@@ -36,28 +43,67 @@ public class Database
     public final static String OPTION_TARGET_PLATFORM = "TargetPlatform";
     public final static String OPTION_GENERATOR_NAME = "GeneratorName";
 
-    private final static String INPUT_FILES_TABLE = "InputFiles";
+    private final static String INPUT_FILES_FINGERPRINTS_TABLE = "InputFilesFingerprints";
     private final static String INPUT_FILES_OPTIONS_HASHES_TABLE = "InputFilesOptionsHashes";
     private final static String OUTPUT_FILES_TABLE = "OutputFiles";
     private final static String FILES_PARSE_RESULTS_TABLE = "FileParseResults";
+    private final static String DIRECTORY_SNAPSHOTS_TABLE = "DirectorySnapshots";
     private final static String OPTIONS_TABLE = "Options";
 
     /** Directory containing the database file. */
     public final File directory;
+    /** Statistics to record database activity into. */
+    private volatile Statistics statistics;
     /** Database. */
     protected DB db;
+    /** Set to `true` if database should not be closed after commit or rollback. */
+    private boolean keepOpen;
+    /** Cached handles of the opened tables. */
+    private final Map<String, ConcurrentNavigableMap<String, Object>> tables = new HashMap<>();
+    /** Uncommitted modifications (sorted by table name and key). */
+    private final Map<String, TreeMap<String, Object>> pendingWrites = new TreeMap<>();
 
     /**
      * Constructor.
      * @param directory Directory where database should be created.
      */
     public Database(File directory)
+    {
+        this(directory, new Statistics());
+    }
+
+    /**
+     * Constructor.
+     * @param directory Directory where database should be created.
+     * @param statistics Statistics to record database activity into.
+     */
+    public Database(File directory, Statistics statistics)
     {
         this.directory = directory;
+        this.statistics = statistics;
+    }
+
+    /**
+     * Retrieves statistics that database activity is recorded into.
+     * @return Statistics.
+     */
+    public Statistics statistics()
+    {
+        return statistics;
+    }
+
+    /**
+     * Sets statistics to record database activity into.
+     * Databases reused between builds are attached to the statistics of the current project builder.
+     * @param statistics Statistics.
+     */
+    public void setStatistics(Statistics statistics)
+    {
+        this.statistics = statistics;
     }
 
     /** Opens the database if it has not been opened yet. */
-    public void open()
+    public synchronized void open()
     {
         if (db == null) {
             db = DBMaker.newFileDB(new File(directory, FILE_NAME))
@@ -66,32 +112,49 @@ public class Database
         }
     }
 
+    /**
+     * Specifies whether database should be kept open after commit or rollback.
+     * Long-running sessions keep the database open to avoid reopening it for each build.
+     * @param keepOpen Set to `true` to keep the database open.
+     */
+    public synchronized void setKeepOpen(boolean keepOpen)
+    {
+        this.keepOpen = keepOpen;
+    }
+
     /** Saves all uncommitted changes to the file. */
-    public void commit()
+    public synchronized void commit()
     {
-        if (db != null) {
-            db.commit();
+        if (!pendingWrites.isEmpty()) {
             try {
-                db.close();
+                for (Map.Entry<String, TreeMap<String, Object>> pendingTable : pendingWrites.entrySet()) {
+                    ConcurrentNavigableMap<String, Object> table = table(pendingTable.getKey());
+                    for (Map.Entry<String, Object> pendingWrite : pendingTable.getValue().entrySet())
+                        table.put(pendingWrite.getKey(), pendingWrite.getValue());
+                }
             } finally {
-                db = null;
+                pendingWrites.clear();
             }
         }
+
+        if (db != null) {
+            db.commit();
+            if (!keepOpen)
+                close();
+        }
     }
 
     /**
      * Reverts all uncommitted changes.
      * This method may throw an exception.
      */
-    public void rollback()
+    public synchronized void rollback()
     {
+        pendingWrites.clear();
         if (db != null) {
             db.rollback();
-            try {
-                db.close();
-            } finally {
-                db = null;
-            }
+            if (!keepOpen)
+                close();
         }
     }
 
@@ -110,29 +173,81 @@ public class Database
 
     /**
      * Closes the database.
-     * Database can't be used after this method has been invoked.
+     * All uncommitted changes are discarded.
      */
-    public void close()
+    public synchronized void close()
     {
+        pendingWrites.clear();
         if (db != null) {
             try {
                 db.close();
             } finally {
                 db = null;
+                tables.clear();
             }
         }
     }
 
+    /**
+     * Retrieves handle of the specified table, opening the database if necessary.
+     * @param name Name of the table.
+     * @return Table.
+     */
+    private ConcurrentNavigableMap<String, Object> table(String name)
+    {
+        open();
+        ConcurrentNavigableMap<String, Object> table = tables.get(name);
+        if (table == null) {
+            table = db.getTreeMap(name);
+            tables.put(name, table);
+        }
+        return table;
+    }
+
+    /**
+     * Retrieves value from the table, taking uncommitted changes into account.
+     * @param tableName Name of the table.
+     * @param key Key.
+     * @return Value or `null` if there is no value for the specified key.
+     */
+    @SuppressWarnings("unchecked") private <T> T get(String tableName, String key)
+    {
+        TreeMap<String, Object> pendingTable = pendingWrites.get(tableName);
+        if (pendingTable != null) {
+            Object value = pendingTable.get(key);
+            if (value != null)
+                return (T)value;
+        }
+        return (T)table(tableName).get(key);
+    }
+
+    /**
+     * Stores value into the table. Value is written into the database file on commit.
+     * @param tableName Name of the table.
+     * @param key Key.
+     * @param value Value.
+     */
+    private void put(String tableName, String key, Object value)
+    {
+        if (value == null)
+            throw new NullPointerException(String.format("Attempted to store null value for key \"%s\".", key));
+
+        TreeMap<String, Object> pendingTable = pendingWrites.get(tableName);
+        if (pendingTable == null) {
+            pendingTable = new TreeMap<>();
+            pendingWrites.put(tableName, pendingTable);
+        }
+        pendingTable.put(key, value);
+    }
+
     /**
      * Retrieves value of the specified option.
      * @param key Name of the option.
      */
-    public String getOption(String key)
+    public synchronized String getOption(String key)
     {
         try {
-            open();
-            ConcurrentNavigableMap<String, String> table = db.getTreeMap(OPTIONS_TABLE);
-            return table.get(key);
+            return get(OPTIONS_TABLE, key);
         } catch (Throwable t) {
             t.printStackTrace();
         }
@@ -144,15 +259,16 @@ public class Database
      * @param key Name of the option.
      * @param value Option value.
      */
-    public void setOption(String key, String value)
+    public synchronized void setOption(String key, String value)
     {
-        open();
-        ConcurrentNavigableMap<String, String> table = db.getTreeMap(OPTIONS_TABLE);
-        table.put(key, value);
+        put(OPTIONS_TABLE, key, value);
     }
 
     /**
      * Checks whether the specified input file has changed from the time of previous check.
+     * File is considered unchanged if its size and modification time did not change. Otherwise a hash of the
+     * file contents is compared to the previously calculated one, so that touching the file without modifying
+     * it does not cause regeneration.
      * @param file Input file.
      * @param extraData Additional metadata for the file.
      * File is considered modified if this data differs from the previously specified data.
@@ -166,22 +282,31 @@ public class Database
             return true;
 
         try {
-            open();
             String path = FileUtils.getCanonicalPath(file);
 
-            ConcurrentNavigableMap<String, byte[]> hashesTable = db.getTreeMap(INPUT_FILES_OPTIONS_HASHES_TABLE);
-            byte[] previousHash = hashesTable.get(path);
-            if (previousHash == null || !Arrays.equals(extraData, previousHash)) {
-                hashesTable.put(path, extraData);
-                result = true;
+            FileFingerprint previousFingerprint = null;
+            synchronized (this) {
+                byte[] previousHash = get(INPUT_FILES_OPTIONS_HASHES_TABLE, path);
+                if (previousHash == null || !Arrays.equals(extraData, previousHash)) {
+                    put(INPUT_FILES_OPTIONS_HASHES_TABLE, path, extraData);
+                    result = true;
+                }
+
+                byte[] previousFingerprintData = get(INPUT_FILES_FINGERPRINTS_TABLE, path);
+                if (previousFingerprintData != null)
+                    previousFingerprint = FileFingerprint.fromByteArray(previousFingerprintData);
             }
 
-            ConcurrentNavigableMap<String, Long> table = db.getTreeMap(INPUT_FILES_TABLE);
-            Long expectedLastModificationTime = table.get(path);
-            long actualLastModificationTime = file.lastModified();
-            if (expectedLastModificationTime == null || expectedLastModificationTime != actualLastModificationTime) {
-                table.put(path, actualLastModificationTime);
+            if (previousFingerprint != null && previousFingerprint.hasSameAttributes(file))
+                return result;
+
+            // Hashing could take a while, so do not hold the lock while calculating it
+            FileFingerprint actualFingerprint = FileFingerprint.forFile(file);
+            if (!actualFingerprint.hasSameContents(previousFingerprint))
                 result = true;
+
+            synchronized (this) {
+                put(INPUT_FILES_FINGERPRINTS_TABLE, path, actualFingerprint.toByteArray());
             }
 
             return result;
@@ -191,6 +316,22 @@ public class Database
         }
     }
 
+    /**
+     * Retrieves fingerprint of the input file recorded by the `didInputFileChange` method.
+     * @param file Input file.
+     * @return Fingerprint of the file or `null` if file has not been checked yet.
+     */
+    public synchronized FileFingerprint inputFileFingerprint(File file)
+    {
+        try {
+            byte[] data = get(INPUT_FILES_FINGERPRINTS_TABLE, FileUtils.getCanonicalPath(file));
+            return (data != null ? FileFingerprint.fromByteArray(data) : null);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * Checks whether new contents for the output file differ from the previously written contents.
      * @param file Ouptut file.
@@ -198,20 +339,20 @@ public class Database
      * @return `true` if the provided MD5 hash differs from the previously written one, or if file has never
      * been written, otherwise returns `false`.
      */
-    public boolean didOutputFileChange(File file, byte[] md5)
+    public synchronized boolean didOutputFileChange(File file, byte[] md5)
     {
         try {
-            open();
-            ConcurrentNavigableMap<String, byte[]> table = db.getTreeMap(OUTPUT_FILES_TABLE);
-
             String path = FileUtils.getCanonicalPath(file);
             if (file.exists()) {
-                byte[] previousMd5 = table.get(path);
-                if (previousMd5 != null && Arrays.equals(md5, previousMd5))
+                byte[] previousMd5 = get(OUTPUT_FILES_TABLE, path);
+                if (previousMd5 != null && Arrays.equals(md5, previousMd5)) {
+                    statistics.increment(Statistics.OUTPUT_FILES_KEPT);
                     return false;
+                }
             }
 
-            table.put(path, md5);
+            put(OUTPUT_FILES_TABLE, path, md5);
+            statistics.increment(Statistics.OUTPUT_FILES_WRITTEN);
         } catch (Throwable t) {
             t.printStackTrace();
         }
@@ -225,14 +366,11 @@ public class Database
      * @param parserClass Class that performed the parse.
      * @return Parse results for the file or `null` if there are no parse results for the file.
      */
-    public byte[] loadFileParseResults(File file, Class<?> parserClass)
+    public synchronized byte[] loadFileParseResults(File file, Class<?> parserClass)
     {
         try {
-            open();
-            ConcurrentNavigableMap<String, byte[]> table = db.getTreeMap(FILES_PARSE_RESULTS_TABLE);
-
             String key = StringUtils.toHex(StringUtils.md5ForObjects(FileUtils.getCanonicalPath(file), parserClass.getName()));
-            return table.get(key);
+            return get(FILES_PARSE_RESULTS_TABLE, key);
         } catch (Throwable t) {
             t.printStackTrace();
             return null;
@@ -245,12 +383,35 @@ public class Database
      * @param parserClass Class that performed the parse.
      * @param data Parse results.
      */
-    public void saveFileParseResults(File file, Class<?> parserClass, byte[] data)
+    public synchronized void saveFileParseResults(File file, Class<?> parserClass, byte[] data)
     {
-        open();
-        ConcurrentNavigableMap<String, byte[]> table = db.getTreeMap(FILES_PARSE_RESULTS_TABLE);
-
         String key = StringUtils.toHex(StringUtils.md5ForObjects(FileUtils.getCanonicalPath(file), parserClass.getName()));
-        table.put(key, data);
+        put(FILES_PARSE_RESULTS_TABLE, key, data);
+    }
+
+    /**
+     * Retrieves snapshot of the specified directory.
+     * @param directory Path to the directory.
+     * @return Snapshot of the directory or `null` if there is no snapshot for the directory.
+     */
+    public synchronized DirectorySnapshot loadDirectorySnapshot(File directory)
+    {
+        try {
+            byte[] data = get(DIRECTORY_SNAPSHOTS_TABLE, directory.getAbsolutePath());
+            return (data != null ? DirectorySnapshot.fromByteArray(data) : null);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Stores snapshot of the specified directory.
+     * @param directory Path to the directory.
+     * @param snapshot Snapshot of the directory.
+     */
+    public synchronized void saveDirectorySnapshot(File directory, DirectorySnapshot snapshot)
+    {
+        put(DIRECTORY_SNAPSHOTS_TABLE, directory.getAbsolutePath(), snapshot.toByteArray());
     }
 }
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A snapshot of directory contents.
+ * Snapshot is valid as long as modification time of the directory does not change. Entries are sorted by name.
+ */
+public final class DirectorySnapshot
+{
+    /** Version of the binary format for snapshots. */
+    private static final int FORMAT_VERSION = 0x5A445302;
+
+    /** An entry in the directory. */
+    public static final class Entry
+    {
+        /** Name of the entry in the directory (for symbolic links this is the name of the link itself). */
+        public final String name;
+        /** Name of the subdirectory or canonical path to the file. */
+        public final String path;
+        /** Set to `true` if this entry is a subdirectory. */
+        public final boolean isDirectory;
+
+        /**
+         * Constructor.
+         * @param name Name of the entry in the directory.
+         * @param path Name of the subdirectory or canonical path to the file.
+         * @param isDirectory Set to `true` if this entry is a subdirectory.
+         */
+        public Entry(String name, String path, boolean isDirectory)
+        {
+            this.name = name;
+            this.path = path;
+            this.isDirectory = isDirectory;
+        }
+    }
+
+    /** Comparator that sorts entries by name. */
+    private static final Comparator<Entry> ENTRY_COMPARATOR =
+        Comparator.comparing((Entry entry) -> entry.name).thenComparing(entry -> entry.path)
+            .thenComparing(entry -> entry.isDirectory);
+
+
+    /** Modification time of the directory at the time of the snapshot. */
+    public final long lastModified;
+    /** List of entries in the directory. */
+    private final List<Entry> entries;
+
+    /**
+     * Constructor.
+     * @param lastModified Modification time of the directory.
+     * @param entries List of entries in the directory.
+     */
+    public DirectorySnapshot(long lastModified, List<Entry> entries)
+    {
+        this.lastModified = lastModified;
+        this.entries = new ArrayList<>(entries);
+        this.entries.sort(ENTRY_COMPARATOR);
+    }
+
+    /**
+     * Lists contents of the specified directory.
+     * Symbolic links are not followed. Canonical path of the directory is queried only once: canonical paths of
+     * regular files are derived from it and only symbolic links are resolved individually.
+     * @param directory Path to the directory.
+     * @return Snapshot of the directory.
+     */
+    public static DirectorySnapshot forDirectory(File directory) throws IOException
+    {
+        long lastModified = directory.lastModified();
+        String canonicalPath = FileUtils.getCanonicalPath(directory);
+
+        List<Entry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath())) {
+            for (Path path : stream) {
+                BasicFileAttributes attributes =
+                    Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                String name = path.getFileName().toString();
+                if (attributes.isDirectory())
+                    entries.add(new Entry(name, name, true));
+                else if (!attributes.isSymbolicLink())
+                    entries.add(new Entry(name, canonicalPath + File.separatorChar + name, false));
+                else
+                    entries.add(new Entry(name, path.toFile().getCanonicalPath(), false));
+            }
+        }
+
+        return new DirectorySnapshot(lastModified, entries);
+    }
+
+    /**
+     * Retrieves list of entries in the directory.
+     * @return List of entries.
+     */
+    public List<Entry> entries()
+    {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Serializes this snapshot into a byte array.
+     * @return Byte array.
+     */
+    public byte[] toByteArray()
+    {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(byteStream)) {
+            stream.writeInt(FORMAT_VERSION);
+            stream.writeLong(lastModified);
+            stream.writeInt(entries.size());
+            for (Entry entry : entries) {
+                stream.writeBoolean(entry.isDirectory);
+                stream.writeUTF(entry.name);
+                if (!entry.isDirectory)
+                    stream.writeUTF(entry.path);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serialize directory snapshot.", e);
+        }
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Deserializes snapshot from a byte array.
+     * @param data Byte array.
+     * @return Snapshot or `null` if data has been written in an unsupported format.
+     */
+    public static DirectorySnapshot fromByteArray(byte[] data) throws IOException
+    {
+        try (DataInputStream stream = new DataInputStream(new ByteArrayInputStream(data))) {
+            // Snapshots written by older versions start with the modification time instead of the format version
+            if (stream.readInt() != FORMAT_VERSION)
+                return null;
+
+            long lastModified = stream.readLong();
+            int count = stream.readInt();
+            List<Entry> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                boolean isDirectory = stream.readBoolean();
+                String name = stream.readUTF();
+                entries.add(new Entry(name, (isDirectory ? name : stream.readUTF()), isDirectory));
+            }
+            return new DirectorySnapshot(lastModified, entries);
+        }
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recursively enumerates files in directories.
+ *
+ * Subdirectories are listed in parallel on a work-stealing thread pool. Entries of each directory are sorted by
+ * name and the resulting list of files is always in the same order regardless of the number of threads and of the
+ * order in which the file system returns directory entries.
+ *
+ * If database is provided, directory snapshots stored in the database are used and only directories that have been
+ * modified since the previous enumeration are actually listed.
+ *
+ * Files and directories matching any of the exclusion patterns are skipped, and excluded directories are never
+ * listed. Patterns are matched against the path relative to the directory being walked (with forward slashes as
+ * separators) and against the bare name of the file or directory.
+ */
+public final class DirectoryWalker
+{
+    /** Interval (in milliseconds) during which modification time of a directory is not trusted. */
+    private static final long RECENT_MODIFICATION_INTERVAL = 2000;
+
+    /** Database with directory snapshots (could be `null`). */
+    private final Database database;
+    /** Maximum number of threads to use. */
+    private final int numberOfThreads;
+    /** List of patterns for files and directories to exclude. */
+    private final List<PathMatcher> excludes;
+
+    /**
+     * Constructor.
+     * @param database Database with directory snapshots (could be `null`).
+     * @param numberOfThreads Maximum number of threads to use (value of 1 disables multithreading).
+     */
+    public DirectoryWalker(Database database, int numberOfThreads)
+    {
+        this(database, numberOfThreads, Collections.emptyList());
+    }
+
+    /**
+     * Constructor.
+     * @param database Database with directory snapshots (could be `null`).
+     * @param numberOfThreads Maximum number of threads to use (value of 1 disables multithreading).
+     * @param excludes List of patterns for files and directories to exclude.
+     */
+    public DirectoryWalker(Database database, int numberOfThreads, List<PathMatcher> excludes)
+    {
+        this.database = database;
+        this.numberOfThreads = Math.max(numberOfThreads, 1);
+        this.excludes = new ArrayList<>(excludes);
+    }
+
+    /**
+     * Compiles the specified exclusion pattern.
+     * Patterns prefixed with `regex:` are regular expressions, all other patterns are globs (optionally prefixed
+     * with `glob:`). See `FileSystem.getPathMatcher` for the syntax.
+     * @param pattern Pattern.
+     * @return Path matcher.
+     * @throws IllegalArgumentException if pattern is invalid.
+     */
+    public static PathMatcher pathMatcher(String pattern)
+    {
+        if (!pattern.startsWith("glob:") && !pattern.startsWith("regex:"))
+            pattern = "glob:" + pattern;
+        return FileSystems.getDefault().getPathMatcher(pattern);
+    }
+
+    /**
+     * Checks whether the specified path matches any of the exclusion patterns.
+     * @param excludes List of patterns for files and directories to exclude.
+     * @param relativePath Path relative to the directory being walked.
+     * @return `true` if either the path or the bare name of the file or directory matches any of the patterns,
+     * otherwise returns `false`.
+     */
+    public static boolean isExcluded(List<PathMatcher> excludes, Path relativePath)
+    {
+        Path fileName = relativePath.getFileName();
+        for (PathMatcher exclude : excludes) {
+            if (exclude.matches(relativePath) || exclude.matches(fileName))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recursively enumerates all files in the specified directory and it's subdirectories.
+     * @param directory Path to the directory.
+     * @return List of files.
+     */
+    public List<File> walk(File directory)
+    {
+        return walk(Collections.singletonList(directory));
+    }
+
+    /**
+     * Recursively enumerates all files in the specified directories and their subdirectories.
+     * @param directories List of directories.
+     * @return List of files (files of each directory follow files of the previous one).
+     */
+    public List<File> walk(List<File> directories)
+    {
+        List<File> files = new ArrayList<>();
+
+        if (numberOfThreads <= 1) {
+            for (File directory : directories) {
+                Log.debug(String.format("Enumerating files in source directory \"%s\".", directory));
+                walkDirectory(directory.getAbsoluteFile(), "", files);
+            }
+            return files;
+        }
+
+        // Tasks of another fork/join pool (e.g. of the directive scheduler) share their pool with the walk
+        if (ForkJoinTask.inForkJoinPool()) {
+            List<ForkJoinTask<List<File>>> tasks = new ArrayList<>(directories.size());
+            for (File directory : directories) {
+                Log.debug(String.format("Enumerating files in source directory \"%s\".", directory));
+                tasks.add(new WalkTask(directory.getAbsoluteFile(), "").fork());
+            }
+            for (ForkJoinTask<List<File>> task : tasks)
+                files.addAll(task.join());
+            return files;
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(numberOfThreads);
+        try {
+            List<ForkJoinTask<List<File>>> tasks = new ArrayList<>(directories.size());
+            for (File directory : directories) {
+                Log.debug(String.format("Enumerating files in source directory \"%s\".", directory));
+                tasks.add(pool.submit(new WalkTask(directory.getAbsoluteFile(), "")));
+            }
+            for (ForkJoinTask<List<File>> task : tasks)
+                files.addAll(task.join());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        return files;
+    }
+
+    /**
+     * Recursively enumerates all files in the specified directory in the calling thread.
+     * @param directory Path to the directory.
+     * @param relativePath Path to the directory relative to the root of the walk.
+     * @param files Output list of files.
+     */
+    private void walkDirectory(File directory, String relativePath, List<File> files)
+    {
+        for (DirectorySnapshot.Entry entry : snapshot(directory).entries()) {
+            String entryRelativePath = relativePath(relativePath, entry);
+            if (entryRelativePath == null)
+                continue;
+            if (!entry.isDirectory)
+                files.add(new File(entry.path));
+            else
+                walkDirectory(new File(directory, entry.path), entryRelativePath, files);
+        }
+    }
+
+    /** Task that recursively enumerates files in a directory, forking a subtask for each subdirectory. */
+    private final class WalkTask extends RecursiveTask<List<File>>
+    {
+        /** Path to the directory. */
+        private final File directory;
+        /** Path to the directory relative to the root of the walk. */
+        private final String relativePath;
+
+        /**
+         * Constructor.
+         * @param directory Path to the directory.
+         * @param relativePath Path to the directory relative to the root of the walk.
+         */
+        WalkTask(File directory, String relativePath)
+        {
+            this.directory = directory;
+            this.relativePath = relativePath;
+        }
+
+        @Override protected List<File> compute()
+        {
+            List<DirectorySnapshot.Entry> entries = snapshot(directory).entries();
+
+            // Subdirectories are forked first and joined in order of entries, so that result is sorted
+            WalkTask[] subtasks = new WalkTask[entries.size()];
+            boolean[] included = new boolean[entries.size()];
+            for (int i = 0; i < subtasks.length; i++) {
+                DirectorySnapshot.Entry entry = entries.get(i);
+                String entryRelativePath = relativePath(relativePath, entry);
+                included[i] = (entryRelativePath != null);
+                if (included[i] && entry.isDirectory) {
+                    subtasks[i] = new WalkTask(new File(directory, entry.path), entryRelativePath);
+                    subtasks[i].fork();
+                }
+            }
+
+            List<File> files = new ArrayList<>();
+            for (int i = 0; i < subtasks.length; i++) {
+                if (subtasks[i] != null)
+                    files.addAll(subtasks[i].join());
+                else if (included[i] && !entries.get(i).isDirectory)
+                    files.add(new File(entries.get(i).path));
+            }
+
+            return files;
+        }
+    }
+
+    /**
+     * Calculates path to the directory entry relative to the root of the walk and checks it against exclusions.
+     * @param parentRelativePath Path to the parent directory relative to the root of the walk.
+     * @param entry Directory entry.
+     * @return Relative path to the entry or `null` if entry is excluded.
+     */
+    private String relativePath(String parentRelativePath, DirectorySnapshot.Entry entry)
+    {
+        String name = entry.name;
+        String path = (parentRelativePath.isEmpty() ? name : parentRelativePath + '/' + name);
+        if (excludes.isEmpty())
+            return path;
+
+        if (isExcluded(excludes, Paths.get(path))) {
+            Log.trace(String.format("Excluding \"%s\".", path));
+            return null;
+        }
+
+        return path;
+    }
+
+    /**
+     * Retrieves snapshot of the specified directory.
+     * @param directory Path to the directory.
+     * @return Snapshot of the directory.
+     */
+    private DirectorySnapshot snapshot(File directory)
+    {
+        try {
+            if (database == null)
+                return DirectorySnapshot.forDirectory(directory);
+
+            long lastModified = directory.lastModified();
+
+            DirectorySnapshot snapshot = database.loadDirectorySnapshot(directory);
+            if (snapshot == null || snapshot.lastModified != lastModified) {
+                snapshot = DirectorySnapshot.forDirectory(directory);
+                // Directory could be modified again within the resolution of the file system timestamps,
+                // so do not trust snapshots of recently modified directories.
+                if (System.currentTimeMillis() - snapshot.lastModified > RECENT_MODIFICATION_INTERVAL)
+                    database.saveDirectorySnapshot(directory, snapshot);
+            }
+
+            return snapshot;
+        } catch (IOException e) {
+            String msg = String.format("Unable to enumerate files in directory \"%s\".", directory.getAbsolutePath());
+            throw new RuntimeException(msg, e);
+        }
+    }
+}
@@ -34,6 +34,13 @@ import java.security.NoSuchAlgorithmException;
  */
 public final class FileBuilder
 {
+    /** The 'this is an automatically generated file' message using the C++-style comments. */
+    public static final String CXX_AUTOGENERATED_HEADER =
+        "// ------------------------------------------------------\n" +
+        "// THIS IS AN AUTOMATICALLY GENERATED FILE. DO NOT EDIT!\n" +
+        "// ------------------------------------------------------\n" +
+        "\n";
+
     /** Path to the file being written. */
     public final File file;
     /** Buffer with contents of the file. */
@@ -91,10 +98,7 @@ public final class FileBuilder
     /** Appends the 'this is an automatically generated file' message using the C++-style comments. */
     public void appendCxxAutogeneratedHeader()
     {
-        stringBuilder.append("// ------------------------------------------------------\n");
-        stringBuilder.append("// THIS IS AN AUTOMATICALLY GENERATED FILE. DO NOT EDIT!\n");
-        stringBuilder.append("// ------------------------------------------------------\n");
-        stringBuilder.append('\n');
+        stringBuilder.append(CXX_AUTOGENERATED_HEADER);
     }
 
     /**
@@ -119,6 +123,7 @@ public final class FileBuilder
             stream.write(bytes);
             stream.flush();
         }
+        database.statistics().add(Statistics.BYTES_WRITTEN, bytes.length);
 
         return true;
     }
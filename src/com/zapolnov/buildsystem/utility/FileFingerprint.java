@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Fingerprint of a file.
+ * Fingerprint consists of file size, modification time and a hash of file contents. Size and modification time
+ * are used for quick checks, while hash is used to detect whether file contents actually changed.
+ */
+public final class FileFingerprint
+{
+    /** Name of the hashing algorithm. */
+    public static final String HASH_ALGORITHM = "SHA-1";
+
+    /** Size of the file. */
+    public final long length;
+    /** Modification time of the file. */
+    public final long lastModified;
+    /** Hash of the file contents. */
+    private final byte[] hash;
+
+    /**
+     * Constructor.
+     * @param length Size of the file.
+     * @param lastModified Modification time of the file.
+     * @param hash Hash of the file contents.
+     */
+    public FileFingerprint(long length, long lastModified, byte[] hash)
+    {
+        this.length = length;
+        this.lastModified = lastModified;
+        this.hash = hash.clone();
+    }
+
+    /**
+     * Calculates fingerprint for the specified file.
+     * @param file File.
+     * @return Fingerprint of the file.
+     */
+    public static FileFingerprint forFile(File file) throws IOException
+    {
+        long length = file.length();
+        long lastModified = file.lastModified();
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(String.format("Unable to calculate %s hash.", HASH_ALGORITHM), e);
+        }
+
+        try (FileInputStream stream = new FileInputStream(file)) {
+            byte[] buffer = new byte[65536];
+            int bytesRead;
+            while ((bytesRead = stream.read(buffer)) >= 0)
+                digest.update(buffer, 0, bytesRead);
+        }
+
+        return new FileFingerprint(length, lastModified, digest.digest());
+    }
+
+    /**
+     * Retrieves hash of the file contents.
+     * @return Hash of the file contents.
+     */
+    public byte[] hash()
+    {
+        return hash.clone();
+    }
+
+    /**
+     * Quickly checks whether size and modification time of the specified file match this fingerprint.
+     * @param file File to check.
+     * @return `true` if size and modification time of the file match, otherwise returns `false`.
+     */
+    public boolean hasSameAttributes(File file)
+    {
+        return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    /**
+     * Checks whether the specified fingerprint has been calculated for the same file contents.
+     * @param other Fingerprint to compare with.
+     * @return `true` if both fingerprints describe the same contents, otherwise returns `false`.
+     */
+    public boolean hasSameContents(FileFingerprint other)
+    {
+        return other != null && other.length == length && Arrays.equals(other.hash, hash);
+    }
+
+    /**
+     * Writes this fingerprint into the specified stream.
+     * @param stream Output stream.
+     */
+    public void write(DataOutput stream) throws IOException
+    {
+        stream.writeLong(length);
+        stream.writeLong(lastModified);
+        stream.writeShort(hash.length);
+        stream.write(hash);
+    }
+
+    /**
+     * Reads fingerprint from the specified stream.
+     * @param stream Input stream.
+     * @return Fingerprint.
+     */
+    public static FileFingerprint read(DataInput stream) throws IOException
+    {
+        long length = stream.readLong();
+        long lastModified = stream.readLong();
+        byte[] hash = new byte[stream.readUnsignedShort()];
+        stream.readFully(hash);
+        return new FileFingerprint(length, lastModified, hash);
+    }
+
+    /**
+     * Serializes this fingerprint into a byte array.
+     * @return Byte array.
+     */
+    public byte[] toByteArray()
+    {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(byteStream)) {
+            write(stream);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to serialize file fingerprint.", e);
+        }
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Deserializes fingerprint from a byte array.
+     * @param data Byte array.
+     * @return Fingerprint.
+     */
+    public static FileFingerprint fromByteArray(byte[] data) throws IOException
+    {
+        try (DataInputStream stream = new DataInputStream(new ByteArrayInputStream(data))) {
+            return read(stream);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Type of a file, determined by its extension. */
+public enum FileType
+{
+    /** C source file. */
+    C_SOURCE(".c"),
+    /** C++ source file. */
+    CXX_SOURCE(".cc", ".cpp", ".cxx"),
+    /** Assembler source file. */
+    ASSEMBLER_SOURCE(".s", ".S"),
+    /** C or C++ header file. */
+    HEADER(".h", ".hh", ".hpp", ".hxx", ".inl"),
+    /** Doxygen documentation file. */
+    DOX(".dox"),
+    /** Any other file. */
+    OTHER;
+
+    /** Map of file extensions to file types. */
+    private static final Map<String, FileType> typesByExtension = new HashMap<>();
+    static {
+        for (FileType type : values()) {
+            for (String extension : type.extensions)
+                typesByExtension.put(extension, type);
+        }
+    }
+
+    /** List of file extensions (including the leading dot). */
+    private final String[] extensions;
+
+    /**
+     * Constructor.
+     * @param extensions List of file extensions (including the leading dot).
+     */
+    FileType(String... extensions)
+    {
+        this.extensions = extensions;
+    }
+
+    /**
+     * Determines type of the specified file.
+     * @param file File.
+     * @return Type of the file.
+     */
+    public static FileType forFile(File file)
+    {
+        return forFileName(file.getName());
+    }
+
+    /**
+     * Determines type of the file with the specified name.
+     * @param fileName Name of the file.
+     * @return Type of the file.
+     */
+    public static FileType forFileName(String fileName)
+    {
+        int index = fileName.lastIndexOf('.');
+        if (index <= 0)
+            return OTHER;
+
+        FileType type = typesByExtension.get(fileName.substring(index));
+        return (type != null ? type : OTHER);
+    }
+}
@@ -26,46 +26,86 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.nio.file.FileVisitResult;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** Utility functions for filesystem operations. */
 public class FileUtils
 {
+    /** Files larger than this size are memory-mapped by `byteBufferFromFile`. */
+    private static final long MAPPING_THRESHOLD = 256 * 1024;
+    /** Maximum length of a byte array supported by most JVMs. */
+    private static final long MAX_BYTE_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    /** Maximum number of entries in the canonical path cache. */
+    private static final int CANONICAL_PATH_CACHE_CAPACITY = 131072;
+
+    /** Cache of canonical paths (keyed by absolute path). */
+    private static final ConcurrentHashMap<String, String> canonicalPathCache = new ConcurrentHashMap<>();
+
     /**
      * Retrieves canonical path for the provided file.
      * @param file File.
      * @return Canonical path to the file.
+     * @see #getCanonicalPath(File)
      */
     public static File getCanonicalFile(File file)
     {
-        try {
-            return file.getCanonicalFile();
-        } catch (Throwable ignored) {
-            return file.getAbsoluteFile();
-        }
+        return new File(getCanonicalPath(file));
     }
 
     /**
      * Retrieves canonical path for the provided file.
+     * Canonical paths are cached for the lifetime of the process, so that file system is queried only once for
+     * each path. Long-running sessions should invalidate the cache when files or directories are created or deleted.
      * @param file File.
      * @return Canonical path to the file.
      */
     public static String getCanonicalPath(File file)
     {
+        String absolutePath = file.getAbsolutePath();
+        String canonicalPath = canonicalPathCache.get(absolutePath);
+        if (canonicalPath != null)
+            return canonicalPath;
+
         try {
-            return file.getCanonicalPath();
+            canonicalPath = file.getCanonicalPath();
         } catch (Throwable ignored) {
-            return file.getAbsolutePath();
+            return absolutePath;
         }
+
+        // Cache is simply flushed when it becomes full, which is rare enough to not affect performance
+        if (canonicalPathCache.size() >= CANONICAL_PATH_CACHE_CAPACITY)
+            canonicalPathCache.clear();
+        canonicalPathCache.put(absolutePath, canonicalPath);
+
+        return canonicalPath;
+    }
+
+    /**
+     * Removes the specified file from the canonical path cache.
+     * If file is a directory, all files inside of this directory are removed from the cache as well.
+     * @param file File or directory.
+     */
+    public static void invalidateCanonicalPath(File file)
+    {
+        String path = file.getAbsolutePath();
+        String prefix = (path.endsWith(File.separator) ? path : path + File.separator);
+        canonicalPathCache.keySet().removeIf(key -> key.equals(path) || key.startsWith(prefix));
+    }
+
+    /** Removes all files from the canonical path cache. */
+    public static void invalidateCanonicalPathCache()
+    {
+        canonicalPathCache.clear();
     }
 
     /**
@@ -75,8 +115,7 @@ public class FileUtils
      */
     public static boolean isCSourceFile(File file)
     {
-        final String[] extensions = new String[]{ ".c" };
-        return StringUtils.fileHasExtension(file, extensions);
+        return FileType.forFile(file) == FileType.C_SOURCE;
     }
 
     /**
@@ -86,8 +125,17 @@ public class FileUtils
      */
     public static boolean isCxxSourceFile(File file)
     {
-        final String[] extensions = new String[]{ ".cc", ".cpp", ".cxx" };
-        return StringUtils.fileHasExtension(file, extensions);
+        return FileType.forFile(file) == FileType.CXX_SOURCE;
+    }
+
+    /**
+     * Checks whether given file is an assembler source file.
+     * @param file File to check.
+     * @return `true` if given file is an assembler source file.
+     */
+    public static boolean isAssemblerSourceFile(File file)
+    {
+        return FileType.forFile(file) == FileType.ASSEMBLER_SOURCE;
     }
 
     /**
@@ -97,8 +145,7 @@ public class FileUtils
      */
     public static boolean isHeaderFile(File file)
     {
-        final String[] extensions = new String[]{ ".h", ".hh", ".hpp", ".hxx", ".inl" };
-        return StringUtils.fileHasExtension(file, extensions);
+        return FileType.forFile(file) == FileType.HEADER;
     }
 
     /**
@@ -145,17 +192,42 @@ public class FileUtils
     public static byte[] byteArrayFromFile(File file) throws IOException
     {
         try (FileInputStream stream = new FileInputStream(file)) {
-            int fileLength = (int)file.length();
-            byte[] buffer = new byte[fileLength];
-            int bytesRead = stream.read(buffer, 0, fileLength);
-            if (bytesRead != fileLength) {
-                throw new RuntimeException(String.format("Incomplete read in file \"%s\".",
+            long fileLength = stream.getChannel().size();
+            if (fileLength > MAX_BYTE_ARRAY_LENGTH) {
+                throw new RuntimeException(String.format("File \"%s\" is too large to be loaded into memory.",
                     FileUtils.getCanonicalPath(file)));
             }
+
+            byte[] buffer = new byte[(int)fileLength];
+            int offset = 0;
+            while (offset < buffer.length) {
+                int bytesRead = stream.read(buffer, offset, buffer.length - offset);
+                if (bytesRead < 0) {
+                    throw new RuntimeException(String.format("Incomplete read in file \"%s\".",
+                        FileUtils.getCanonicalPath(file)));
+                }
+                offset += bytesRead;
+            }
             return buffer;
         }
     }
 
+    /**
+     * Loads the specified file into a byte buffer.
+     * Large files are memory-mapped, small files are read into the heap because mapping them costs more than reading.
+     * @param file File to load.
+     * @return Byte buffer with file data (mapped buffers are read-only).
+     */
+    public static ByteBuffer byteBufferFromFile(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long fileLength = channel.size();
+            if (fileLength > MAPPING_THRESHOLD)
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, fileLength);
+        }
+        return ByteBuffer.wrap(byteArrayFromFile(file));
+    }
+
     /**
      * Reads all data from the specified stream into a string.
      * @param stream input stream.
@@ -174,33 +246,6 @@ public class FileUtils
     }
 
 
-    /**
-     * Recursively enumerates all files in the specified directory and it's subdirectories.
-     * @param directory Path to the directory.
-     * @return List of files.
-     */
-    public static List<File> recursivelyEnumerateFilesInDirectory(File directory)
-    {
-        final List<File> files = new ArrayList<>();
-        Log.debug(String.format("Enumerating files in source directory \"%s\".", directory));
-
-        try {
-            final Path path = Paths.get(directory.getAbsolutePath());
-
-            Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
-                @Override public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    files.add(file.toFile().getCanonicalFile());
-                    return FileVisitResult.CONTINUE;
-                }
-            });
-        } catch (IOException e) {
-            String msg = String.format("Unable to enumerate files in directory \"%s\".", directory.getAbsolutePath());
-            throw new RuntimeException(msg, e);
-        }
-
-        return files;
-    }
-
     /**
      * Calculates a relative path from one file to another.
      * @param fromFile Source file to calculate relative path from.
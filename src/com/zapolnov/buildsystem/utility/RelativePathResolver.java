@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Calculates relative paths from a fixed base directory to a large number of files.
+ *
+ * Produces exactly the same results as {@link FileUtils#getRelativePath(File, File)}, but the base directory is
+ * canonicalized and split only once. Relative path of each directory is calculated once from the relative path of
+ * its parent directory and then reused for all files and subdirectories inside of it, so that resolving a file is
+ * a single hash lookup plus one string concatenation.
+ *
+ * This class is not thread-safe.
+ */
+public final class RelativePathResolver
+{
+    /** Canonical path to the base directory, with forward slashes as separators. */
+    private final String basePath;
+    /** Components of the canonical path to the base directory. */
+    private final String[] basePathStack;
+    /** Cache of relative paths for directories, keyed by the canonical path with forward slashes. */
+    private final Map<String, String> directoryCache = new HashMap<>();
+
+    /**
+     * Constructor.
+     * @param baseDirectory Directory to calculate relative paths from.
+     */
+    public RelativePathResolver(File baseDirectory)
+    {
+        basePath = FileUtils.getCanonicalPath(baseDirectory).replace(File.separatorChar, '/');
+        basePathStack = basePath.split("/");
+    }
+
+    /**
+     * Calculates a relative path from the base directory to the specified file.
+     * @param file Target file.
+     * @return Relative path from the base directory to `file`.
+     */
+    public String resolve(File file)
+    {
+        return resolvePath(FileUtils.getCanonicalPath(file).replace(File.separatorChar, '/'));
+    }
+
+    /**
+     * Calculates a relative path from the base directory to the specified path.
+     * @param path Canonical path with forward slashes as separators.
+     * @return Relative path from the base directory to `path`.
+     */
+    private String resolvePath(String path)
+    {
+        int index = path.lastIndexOf('/');
+        if (index <= 0 || isBaseOrParentOfBase(path))
+            return resolveSlow(path);
+
+        String parentPath = path.substring(0, index);
+        String parent = directoryCache.get(parentPath);
+        if (parent == null) {
+            parent = resolvePath(parentPath);
+            directoryCache.put(parentPath, parent);
+        }
+
+        String name = path.substring(index + 1);
+        return (parent.isEmpty() ? name : parent + '/' + name);
+    }
+
+    /**
+     * Checks whether the specified path is the base directory itself or one of its parent directories.
+     * @param path Canonical path with forward slashes as separators.
+     * @return `true` if `path` is the base directory or a parent of it, otherwise returns `false`.
+     */
+    private boolean isBaseOrParentOfBase(String path)
+    {
+        return basePath.startsWith(path) && (basePath.length() == path.length() || basePath.charAt(path.length()) == '/');
+    }
+
+    /**
+     * Calculates a relative path by comparing individual path components.
+     * @param path Canonical path with forward slashes as separators.
+     * @return Relative path from the base directory to `path`.
+     * @see FileUtils#getRelativePath(File, File)
+     */
+    private String resolveSlow(String path)
+    {
+        String[] pathStack = path.split("/");
+        if (pathStack.length == 0 || basePathStack.length == 0 || !basePathStack[0].equals(pathStack[0]))
+            return String.join("/", pathStack);
+
+        int minLength = Math.min(basePathStack.length, pathStack.length);
+        int same = 1;
+        while (same < minLength && basePathStack[same].equals(pathStack[same]))
+            ++same;
+
+        StringBuilder builder = new StringBuilder();
+        for (int i = same; i < basePathStack.length; i++) {
+            if (builder.length() > 0)
+                builder.append('/');
+            builder.append("..");
+        }
+        for (int i = same; i < pathStack.length; i++) {
+            if (builder.length() > 0)
+                builder.append('/');
+            builder.append(pathStack[i]);
+        }
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,407 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects timings and counters of the project generation.
+ *
+ * CPU time and allocations are measured for the thread that performs the measurement only. Phases that hand work
+ * over to worker threads (e.g. building directives) therefore report only the work done by the calling thread;
+ * work of the worker threads is reported by the timings of the individual directives. The report and the log
+ * summary label these numbers accordingly.
+ *
+ * All methods of this class are thread-safe.
+ */
+public final class Statistics
+{
+    /** File name for the report. */
+    public final static String FILE_NAME = "statistics.json";
+
+    /** Name of the phase that covers the whole project generation. */
+    public final static String PHASE_TOTAL = "Total";
+
+    /** Category of timings for phases of the project builder. */
+    public final static String CATEGORY_PHASE = "phase";
+    /** Category of timings for plugins. */
+    public final static String CATEGORY_PLUGIN = "plugin";
+    /** Category of timings for directives. */
+    public final static String CATEGORY_DIRECTIVE = "directive";
+    /** Category of timings for critical paths of directive execution. */
+    public final static String CATEGORY_CRITICAL_PATH = "criticalPath";
+
+    /** Scope of the CPU time and allocation measurements, written into the report. */
+    public final static String MEASUREMENT_SCOPE = "callingThreadOnly";
+
+    /** Number of files whose parse results have been loaded from the database (nested parses are not counted). */
+    public final static String PARSE_CACHE_HITS = "parseFile.cacheHits";
+    /** Number of files that have been parsed (nested parses are not counted). */
+    public final static String PARSE_CACHE_MISSES = "parseFile.cacheMisses";
+    /** Number of output files whose contents did not change. */
+    public final static String OUTPUT_FILES_KEPT = "didOutputFileChange.kept";
+    /** Number of output files that have been written. */
+    public final static String OUTPUT_FILES_WRITTEN = "didOutputFileChange.written";
+    /** Number of bytes written by file builders. */
+    public final static String BYTES_WRITTEN = "FileBuilder.bytesWritten";
+
+    /** Accumulated timings of a single operation. */
+    public final static class Timing
+    {
+        /** Category of the operation. */
+        public final String category;
+        /** Name of the operation. */
+        public final String name;
+        /** Number of times the operation has been performed. */
+        public long count;
+        /** Total wall clock time, in nanoseconds. */
+        public long wallTime;
+        /** Total CPU time of the calling thread, in nanoseconds. */
+        public long cpuTime;
+        /** Total number of bytes allocated by the calling thread. */
+        public long allocatedBytes;
+
+        /**
+         * Constructor.
+         * @param category Category of the operation.
+         * @param name Name of the operation.
+         */
+        private Timing(String category, String name)
+        {
+            this.category = category;
+            this.name = name;
+        }
+
+        /**
+         * Creates a copy of this timing.
+         * @return Copy of the timing.
+         */
+        private Timing copy()
+        {
+            Timing timing = new Timing(category, name);
+            timing.count = count;
+            timing.wallTime = wallTime;
+            timing.cpuTime = cpuTime;
+            timing.allocatedBytes = allocatedBytes;
+            return timing;
+        }
+    }
+
+    /** An operation to measure. */
+    public interface Operation
+    {
+        /** Performs the operation. */
+        void run() throws Throwable;
+    }
+
+
+    /** Thread management interface of the JVM. */
+    private static final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    /** Set to `true` if JVM supports measurement of the thread CPU time. */
+    private static final boolean cpuTimeSupported;
+    /** Set to `true` if JVM supports measurement of the thread memory allocation. */
+    private static final boolean allocatedBytesSupported;
+
+    /** Accumulated timings. */
+    private final Map<String, Timing> timings = new LinkedHashMap<>();
+    /** Counters. */
+    private final Map<String, Long> counters = new TreeMap<>();
+
+
+    /** Discards all collected data. */
+    public synchronized void reset()
+    {
+        timings.clear();
+        counters.clear();
+    }
+
+    /**
+     * Performs the operation and records its timings.
+     * CPU time and allocations are measured for the calling thread only.
+     * @param category Category of the operation.
+     * @param name Name of the operation.
+     * @param operation Operation to perform.
+     */
+    public void measure(String category, String name, Operation operation) throws Throwable
+    {
+        long startAllocatedBytes = currentThreadAllocatedBytes();
+        long startCpuTime = currentThreadCpuTime();
+        long startWallTime = System.nanoTime();
+        try {
+            operation.run();
+        } finally {
+            long wallTime = System.nanoTime() - startWallTime;
+            long cpuTime = currentThreadCpuTime() - startCpuTime;
+            long allocatedBytes = currentThreadAllocatedBytes() - startAllocatedBytes;
+            record(category, name, wallTime, cpuTime, allocatedBytes);
+        }
+    }
+
+    /**
+     * Records a measurement of the operation.
+     * @param category Category of the operation.
+     * @param name Name of the operation.
+     * @param wallTime Wall clock time, in nanoseconds.
+     * @param cpuTime CPU time, in nanoseconds.
+     * @param allocatedBytes Number of allocated bytes.
+     */
+    public synchronized void record(String category, String name, long wallTime, long cpuTime, long allocatedBytes)
+    {
+        String key = String.format("%s\u0000%s", category, name);
+        Timing timing = timings.get(key);
+        if (timing == null) {
+            timing = new Timing(category, name);
+            timings.put(key, timing);
+        }
+
+        ++timing.count;
+        timing.wallTime += wallTime;
+        timing.cpuTime += cpuTime;
+        timing.allocatedBytes += allocatedBytes;
+    }
+
+    /**
+     * Increments value of the counter.
+     * @param counter Name of the counter.
+     */
+    public void increment(String counter)
+    {
+        add(counter, 1);
+    }
+
+    /**
+     * Adds the specified value to the counter.
+     * @param counter Name of the counter.
+     * @param value Value to add.
+     */
+    public synchronized void add(String counter, long value)
+    {
+        Long previousValue = counters.get(counter);
+        counters.put(counter, (previousValue != null ? previousValue : 0) + value);
+    }
+
+    /**
+     * Retrieves value of the counter.
+     * @param counter Name of the counter.
+     * @return Value of the counter.
+     */
+    public synchronized long counter(String counter)
+    {
+        Long value = counters.get(counter);
+        return (value != null ? value : 0);
+    }
+
+    /**
+     * Retrieves a snapshot of the accumulated timings in the order they were first recorded.
+     * @return List of timings.
+     */
+    public synchronized List<Timing> timings()
+    {
+        List<Timing> result = new ArrayList<>(timings.size());
+        for (Timing timing : timings.values())
+            result.add(timing.copy());
+        return result;
+    }
+
+    /**
+     * Retrieves a snapshot of the accumulated timings of the specified category.
+     * @param category Category of timings.
+     * @return List of timings.
+     */
+    public List<Timing> timings(String category)
+    {
+        List<Timing> result = new ArrayList<>();
+        for (Timing timing : timings()) {
+            if (timing.category.equals(category))
+                result.add(timing);
+        }
+        return result;
+    }
+
+    /**
+     * Writes collected data as a JSON document.
+     * @param file File to write.
+     */
+    public void writeReport(File file) throws IOException
+    {
+        Files.write(file.toPath(), toJson().getBytes(StringUtils.UTF8_CHARSET));
+    }
+
+    /**
+     * Converts collected data into a JSON document.
+     * @return JSON document.
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("{\n");
+
+        builder.append(String.format("  \"cpuTimeAndAllocationsScope\": %s,\n", jsonString(MEASUREMENT_SCOPE)));
+
+        builder.append("  \"timings\": [");
+        String separator = "\n";
+        for (Timing timing : timings.values()) {
+            builder.append(separator);
+            builder.append(String.format("    { \"category\": %s, \"name\": %s, \"count\": %d, " +
+                "\"wallTimeNanos\": %d, \"cpuTimeNanos\": %d, \"allocatedBytes\": %d }",
+                jsonString(timing.category), jsonString(timing.name), timing.count,
+                timing.wallTime, timing.cpuTime, timing.allocatedBytes));
+            separator = ",\n";
+        }
+        builder.append("\n  ],\n");
+
+        builder.append("  \"counters\": {");
+        separator = "\n";
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            builder.append(separator);
+            builder.append(String.format("    %s: %d", jsonString(counter.getKey()), counter.getValue()));
+            separator = ",\n";
+        }
+        builder.append("\n  }\n");
+
+        builder.append("}\n");
+        return builder.toString();
+    }
+
+    /** Prints summary of the collected data into the log. */
+    public void logSummary()
+    {
+        Timing total = null;
+        StringBuilder phases = new StringBuilder();
+        for (Timing timing : timings(CATEGORY_PHASE)) {
+            if (PHASE_TOTAL.equals(timing.name)) {
+                total = timing;
+                continue;
+            }
+            phases.append(phases.length() == 0 ? "Phases: " : ", ");
+            phases.append(String.format("%s %d ms", timing.name, timing.wallTime / 1000000));
+        }
+        if (total != null)
+            Log.info(String.format("Total: %s", formatTiming(total)));
+        if (phases.length() != 0)
+            Log.info(phases.toString());
+
+        Log.info(String.format("Parsed %d files (%d cached). Wrote %d files, %d bytes (%d files unchanged).",
+            counter(PARSE_CACHE_MISSES), counter(PARSE_CACHE_HITS), counter(OUTPUT_FILES_WRITTEN),
+            counter(BYTES_WRITTEN), counter(OUTPUT_FILES_KEPT)));
+
+        for (Timing timing : timings(CATEGORY_PLUGIN))
+            Log.debug(String.format("Plugin %s: %s", timing.name, formatTiming(timing)));
+
+        List<Timing> directives = timings(CATEGORY_DIRECTIVE);
+        Collections.sort(directives, (a, b) -> Long.compare(b.wallTime, a.wallTime));
+        for (int i = 0; i < Math.min(directives.size(), 5); i++)
+            Log.debug(String.format("Directive %s: %s", directives.get(i).name, formatTiming(directives.get(i))));
+    }
+
+    /**
+     * Formats timing for the log.
+     * @param timing Timing.
+     * @return Formatted string.
+     */
+    private static String formatTiming(Timing timing)
+    {
+        if (!allocatedBytesSupported)
+            return String.format("%d ms (calling thread: CPU %d ms)", timing.wallTime / 1000000,
+                timing.cpuTime / 1000000);
+        return String.format("%d ms (calling thread: CPU %d ms, %.1f MB allocated)", timing.wallTime / 1000000,
+            timing.cpuTime / 1000000, timing.allocatedBytes / (1024.0 * 1024.0));
+    }
+
+    /**
+     * Converts string into a JSON string literal.
+     * @param string String to convert.
+     * @return JSON string literal.
+     */
+    private static String jsonString(String string)
+    {
+        StringBuilder builder = new StringBuilder(string.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < string.length(); i++) {
+            char ch = string.charAt(i);
+            switch (ch)
+            {
+            case '"': builder.append("\\\""); break;
+            case '\\': builder.append("\\\\"); break;
+            case '\n': builder.append("\\n"); break;
+            case '\r': builder.append("\\r"); break;
+            case '\t': builder.append("\\t"); break;
+            default:
+                if (ch < 0x20)
+                    builder.append(String.format("\\u%04x", (int)ch));
+                else
+                    builder.append(ch);
+            }
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+
+    /**
+     * Retrieves CPU time of the calling thread.
+     * @return CPU time in nanoseconds or 0 if it is not supported by the JVM.
+     */
+    private static long currentThreadCpuTime()
+    {
+        return (cpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0);
+    }
+
+    /**
+     * Retrieves number of bytes allocated by the calling thread.
+     * @return Number of bytes or 0 if it is not supported by the JVM.
+     */
+    private static long currentThreadAllocatedBytes()
+    {
+        if (!allocatedBytesSupported)
+            return 0;
+        return ((com.sun.management.ThreadMXBean)threadMXBean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    static {
+        boolean supported = false;
+        try {
+            supported = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
+        } catch (Throwable ignored) {
+        }
+        cpuTimeSupported = supported;
+
+        supported = false;
+        try {
+            if (threadMXBean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)threadMXBean;
+                supported = bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+            }
+        } catch (Throwable ignored) {
+        }
+        allocatedBytesSupported = supported;
+    }
+}
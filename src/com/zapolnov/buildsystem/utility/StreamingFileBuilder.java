@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.utility;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writer for large generated files.
+ * Unlike the `FileBuilder`, this class does not keep file contents in memory. Data is written into a temporary file
+ * in the same directory and hashed as it is written. On commit, the temporary file is atomically moved into place
+ * if the contents changed, otherwise it is deleted and the existing file is kept intact.
+ */
+public final class StreamingFileBuilder implements AutoCloseable
+{
+    /** Size of the output buffer. */
+    private static final int BUFFER_SIZE = 256 * 1024;
+    /** Maximum size of a memory-mapped chunk of the input file. */
+    private static final long MAPPED_CHUNK_SIZE = 64 * 1024 * 1024;
+    /** Number of bytes per line in hexadecimal arrays. */
+    private static final int HEX_BYTES_PER_LINE = 32;
+
+    /** Path to the file being written. */
+    public final File file;
+    /** Path to the temporary file. */
+    private final Path temporaryFile;
+    /** Hash of the written data. */
+    private final MessageDigest digest;
+    /** Output stream. */
+    private OutputStream stream;
+    /** Number of bytes written. */
+    private long length;
+    /** Current line of hexadecimal literals. */
+    private byte[] hexLine;
+    /** Number of bytes in the current line of hexadecimal literals. */
+    private int hexLineLength;
+
+    /**
+     * Constructor.
+     * @param directory Target directory.
+     * @param fileName Name of the file.
+     */
+    public StreamingFileBuilder(File directory, String fileName) throws IOException, NoSuchAlgorithmException
+    {
+        this(new File(directory, fileName));
+    }
+
+    /**
+     * Constructor.
+     * @param file Path to the file.
+     */
+    public StreamingFileBuilder(File file) throws IOException, NoSuchAlgorithmException
+    {
+        this.file = FileUtils.getCanonicalFile(file);
+        FileUtils.ensureDirectoryExists(this.file.getParentFile());
+
+        // Files.createTempFile() is not used as it creates files readable only by the owner
+        Path path;
+        OutputStream fileStream;
+        for (;;) {
+            String name = String.format(".%s.%x.tmp", this.file.getName(), ThreadLocalRandom.current().nextLong());
+            path = new File(this.file.getParentFile(), name).toPath();
+            try {
+                fileStream = Files.newOutputStream(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                break;
+            } catch (FileAlreadyExistsException ignored) {
+            }
+        }
+
+        temporaryFile = path;
+        digest = MessageDigest.getInstance("MD5");
+        stream = new DigestOutputStream(new BufferedOutputStream(fileStream, BUFFER_SIZE), digest);
+    }
+
+    /**
+     * Appends string to the file.
+     * @param string String to append.
+     */
+    public void append(String string) throws IOException
+    {
+        append(string.getBytes(StringUtils.UTF8_CHARSET));
+    }
+
+    /**
+     * Appends bytes to the file.
+     * @param bytes Bytes to append.
+     */
+    public void append(byte[] bytes) throws IOException
+    {
+        append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends bytes to the file.
+     * @param bytes Array of bytes.
+     * @param offset Offset of the first byte to append.
+     * @param count Number of bytes to append.
+     */
+    public void append(byte[] bytes, int offset, int count) throws IOException
+    {
+        stream.write(bytes, offset, count);
+        length += count;
+    }
+
+    /** Appends the 'this is an automatically generated file' message using the C++-style comments. */
+    public void appendCxxAutogeneratedHeader() throws IOException
+    {
+        append(FileBuilder.CXX_AUTOGENERATED_HEADER);
+    }
+
+    /**
+     * Appends bytes as a list of C hexadecimal literals (`0x00,`), 32 per line.
+     * Each line starts with a new line character and 4 spaces of indentation. Consecutive calls continue the
+     * current line; `flushHexBytes()` should be called to write out the last incomplete line.
+     * @param bytes Array of bytes.
+     * @param offset Offset of the first byte to append.
+     * @param count Number of bytes to append.
+     */
+    public void appendHexBytes(byte[] bytes, int offset, int count) throws IOException
+    {
+        for (int i = 0; i < count; i++)
+            appendHexByte(bytes[offset + i]);
+    }
+
+    /**
+     * Appends remaining bytes of the buffer as a list of C hexadecimal literals (`0x00,`), 32 per line.
+     * @param buffer Buffer to read bytes from.
+     * @see #appendHexBytes(byte[], int, int)
+     */
+    public void appendHexBytes(ByteBuffer buffer) throws IOException
+    {
+        while (buffer.hasRemaining())
+            appendHexByte(buffer.get());
+    }
+
+    /**
+     * Appends single byte as a C hexadecimal literal.
+     * @param value Byte to append.
+     */
+    private void appendHexByte(byte value) throws IOException
+    {
+        if (hexLine == null) {
+            hexLine = new byte[5 + HEX_BYTES_PER_LINE * 5];
+            hexLine[0] = '\n';
+            hexLine[1] = hexLine[2] = hexLine[3] = hexLine[4] = ' ';
+            for (int i = 0; i < HEX_BYTES_PER_LINE; i++) {
+                hexLine[5 + i * 5 + 0] = '0';
+                hexLine[5 + i * 5 + 1] = 'x';
+                hexLine[5 + i * 5 + 4] = ',';
+            }
+        }
+
+        hexLine[5 + hexLineLength * 5 + 2] = (byte)StringUtils.HEX_CHARACTERS[(value >> 4) & 0xF];
+        hexLine[5 + hexLineLength * 5 + 3] = (byte)StringUtils.HEX_CHARACTERS[value & 0xF];
+        if (++hexLineLength == HEX_BYTES_PER_LINE) {
+            append(hexLine, 0, hexLine.length);
+            hexLineLength = 0;
+        }
+    }
+
+    /** Writes out the last incomplete line of hexadecimal literals. */
+    public void flushHexBytes() throws IOException
+    {
+        if (hexLineLength > 0) {
+            append(hexLine, 0, 5 + hexLineLength * 5);
+            hexLineLength = 0;
+        }
+    }
+
+    /**
+     * Appends contents of the input file as a list of C hexadecimal literals (`0x00,`), 32 per line.
+     * Each line starts with a new line character and 4 spaces of indentation.
+     * Input file is memory-mapped in chunks, so that files larger than 2 GB are supported.
+     * @param input Input file.
+     * @return Number of bytes read from the input file.
+     */
+    public long appendHexArrayFromFile(File input) throws IOException
+    {
+        long inputLength = 0;
+        try (FileChannel channel = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAPPED_CHUNK_SIZE) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                    Math.min(MAPPED_CHUNK_SIZE, size - position));
+                appendHexBytes(buffer);
+                inputLength += buffer.capacity();
+            }
+        }
+
+        flushHexBytes();
+        return inputLength;
+    }
+
+    /**
+     * Writes file to disk.
+     * @param database Database instance to check for file modifications.
+     * @return `true` if file has been overwritten, or `false` if file contents did not change.
+     */
+    public boolean commit(Database database) throws IOException
+    {
+        stream.close();
+        stream = null;
+
+        byte[] md5 = digest.digest();
+        if (!database.didOutputFileChange(file, md5)) {
+            Log.trace(String.format("Keeping %s", FileUtils.getRelativePath(database.directory, file)));
+            Files.delete(temporaryFile);
+            return false;
+        }
+
+        Log.info(String.format("Writing %s", FileUtils.getRelativePath(database.directory, file)));
+        try {
+            Files.move(temporaryFile, file.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        database.statistics().add(Statistics.BYTES_WRITTEN, length);
+
+        return true;
+    }
+
+    /** Discards the temporary file if it has not been moved into place. */
+    @Override public void close() throws IOException
+    {
+        try {
+            if (stream != null)
+                stream.close();
+        } finally {
+            stream = null;
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+}
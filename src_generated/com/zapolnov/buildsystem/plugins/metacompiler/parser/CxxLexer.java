@@ -0,0 +1,901 @@
+/* The following code was generated by JFlex 1.6.1 */
+
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.plugins.metacompiler.parser;
+
+
+/**
+ * This class is a scanner generated by 
+ * <a href="http://www.jflex.de/">JFlex</a> 1.6.1
+ * from the specification file <tt>/root/project/src/com/zapolnov/buildsystem/plugins/metacompiler/parser/CxxLexer.flex</tt>
+ */
+public final class CxxLexer {
+
+  /** This character denotes the end of file */
+  public static final int YYEOF = -1;
+
+  /** initial size of the lookahead buffer */
+  private static final int ZZ_BUFFERSIZE = 16384;
+
+  /** lexical states */
+  public static final int YYINITIAL = 0;
+
+  /**
+   * ZZ_LEXSTATE[l] is the state in the DFA for the lexical state l
+   * ZZ_LEXSTATE[l+1] is the state in the DFA for the lexical state l
+   *                  at the beginning of a line
+   * l is of the form l = 2*k, k a non negative integer
+   */
+  private static final int ZZ_LEXSTATE[] = { 
+     0, 0
+  };
+
+  /** 
+   * Translates characters to character classes
+   */
+  private static final String ZZ_CMAP_PACKED = 
+    "\11\0\1\4\1\2\1\0\1\4\1\1\22\0\1\4\2\0\1\11"+
+    "\1\5\3\0\1\14\1\15\1\10\1\0\1\20\2\0\1\7\12\6"+
+    "\1\22\1\23\1\12\1\21\1\13\2\0\1\55\1\5\1\56\1\5"+
+    "\1\52\1\54\1\60\1\5\1\47\2\5\1\61\1\63\1\50\1\62"+
+    "\1\64\1\5\1\53\1\57\1\51\1\65\4\5\1\45\1\0\1\3"+
+    "\2\0\1\46\1\0\1\26\1\43\1\24\1\41\1\32\3\5\1\35"+
+    "\2\5\1\25\1\31\1\30\1\40\1\33\1\5\1\34\1\27\1\37"+
+    "\1\42\1\36\2\5\1\44\1\5\1\16\1\0\1\17\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uffff\0\uff92\0";
+
+  /** 
+   * Translates characters to character classes
+   */
+  private static final char [] ZZ_CMAP = zzUnpackCMap(ZZ_CMAP_PACKED);
+
+  /** 
+   * Translates DFA states to action switch labels.
+   */
+  private static final int [] ZZ_ACTION = zzUnpackAction();
+
+  private static final String ZZ_ACTION_PACKED_0 =
+    "\1\0\1\1\1\2\1\3\1\1\1\2\1\4\1\5"+
+    "\1\6\1\7\1\10\1\11\1\12\1\13\1\14\1\15"+
+    "\7\3\1\0\3\2\1\16\11\3\1\0\31\3\1\17"+
+    "\14\3\1\20\3\3\1\21\10\3\1\22\1\3\1\23"+
+    "\10\3\1\24\1\25\4\3\1\26\1\27\10\3\1\30"+
+    "\17\3\1\31\16\3\1\32\3\3\1\33";
+
+  private static int [] zzUnpackAction() {
+    int [] result = new int[152];
+    int offset = 0;
+    offset = zzUnpackAction(ZZ_ACTION_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackAction(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+
+  /** 
+   * Translates a state to a row index in the transition table
+   */
+  private static final int [] ZZ_ROWMAP = zzUnpackRowMap();
+
+  private static final String ZZ_ROWMAP_PACKED_0 =
+    "\0\0\0\66\0\154\0\242\0\330\0\u010e\0\66\0\66"+
+    "\0\66\0\66\0\66\0\66\0\66\0\66\0\u0144\0\66"+
+    "\0\u017a\0\u01b0\0\u01e6\0\u021c\0\u0252\0\u0288\0\u02be\0\u02f4"+
+    "\0\u032a\0\66\0\u0360\0\66\0\u0396\0\u03cc\0\u0402\0\u0438"+
+    "\0\u046e\0\u04a4\0\u04da\0\u0510\0\u0546\0\u057c\0\u05b2\0\u05e8"+
+    "\0\u061e\0\u0654\0\u068a\0\u06c0\0\u06f6\0\u072c\0\u0762\0\u0798"+
+    "\0\u07ce\0\u0804\0\u083a\0\u0870\0\u08a6\0\u08dc\0\u0912\0\u0948"+
+    "\0\u097e\0\u09b4\0\u09ea\0\u0a20\0\u0a56\0\u0a8c\0\u0ac2\0\242"+
+    "\0\u0af8\0\u0b2e\0\u0b64\0\u0b9a\0\u0bd0\0\u0c06\0\u0c3c\0\u0c72"+
+    "\0\u0ca8\0\u0cde\0\u0d14\0\u0d4a\0\242\0\u0d80\0\u0db6\0\u0dec"+
+    "\0\242\0\u0e22\0\u0e58\0\u0e8e\0\u0ec4\0\u0efa\0\u0f30\0\u0f66"+
+    "\0\u0f9c\0\242\0\u0fd2\0\242\0\u1008\0\u103e\0\u1074\0\u10aa"+
+    "\0\u10e0\0\u1116\0\u114c\0\u1182\0\242\0\242\0\u11b8\0\u11ee"+
+    "\0\u1224\0\u125a\0\242\0\242\0\u1290\0\u12c6\0\u12fc\0\u1332"+
+    "\0\u1368\0\u139e\0\u13d4\0\u140a\0\242\0\u1440\0\u1476\0\u14ac"+
+    "\0\u14e2\0\u1518\0\u154e\0\u1584\0\u15ba\0\u15f0\0\u1626\0\u165c"+
+    "\0\u1692\0\u16c8\0\u16fe\0\u1734\0\242\0\u176a\0\u17a0\0\u17d6"+
+    "\0\u180c\0\u1842\0\u1878\0\u18ae\0\u18e4\0\u191a\0\u1950\0\u1986"+
+    "\0\u19bc\0\u19f2\0\u1a28\0\242\0\u1a5e\0\u1a94\0\u1aca\0\242";
+
+  private static int [] zzUnpackRowMap() {
+    int [] result = new int[152];
+    int offset = 0;
+    offset = zzUnpackRowMap(ZZ_ROWMAP_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackRowMap(String packed, int offset, int [] result) {
+    int i = 0;  /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int high = packed.charAt(i++) << 16;
+      result[j++] = high | packed.charAt(i++);
+    }
+    return j;
+  }
+
+  /** 
+   * The transition table of the DFA
+   */
+  private static final int [] ZZ_TRANS = zzUnpackTrans();
+
+  private static final String ZZ_TRANS_PACKED_0 =
+    "\1\2\2\3\1\2\1\3\1\4\1\2\1\5\1\2"+
+    "\1\6\1\7\1\10\1\11\1\12\1\13\1\14\1\15"+
+    "\1\16\1\17\1\20\1\21\2\4\1\22\1\23\2\4"+
+    "\1\24\2\4\1\25\1\26\5\4\1\27\20\4\67\0"+
+    "\2\3\1\0\1\3\66\0\2\4\15\0\42\4\7\0"+
+    "\1\6\1\30\55\0\1\6\1\31\1\32\1\33\62\6"+
+    "\22\0\1\34\50\0\2\4\15\0\1\4\1\35\40\4"+
+    "\5\0\2\4\15\0\13\4\1\36\26\4\5\0\2\4"+
+    "\15\0\2\4\1\37\37\4\5\0\2\4\15\0\10\4"+
+    "\1\40\5\4\1\41\23\4\5\0\2\4\15\0\11\4"+
+    "\1\42\30\4\5\0\2\4\15\0\6\4\1\43\11\4"+
+    "\1\44\21\4\5\0\2\4\15\0\22\4\1\45\17\4"+
+    "\10\30\1\46\55\30\2\0\1\32\63\0\1\6\1\31"+
+    "\1\6\1\33\62\6\5\0\2\4\15\0\2\4\1\47"+
+    "\37\4\5\0\2\4\15\0\10\4\1\50\31\4\5\0"+
+    "\2\4\15\0\5\4\1\51\34\4\5\0\2\4\15\0"+
+    "\11\4\1\52\2\4\1\53\25\4\5\0\2\4\15\0"+
+    "\17\4\1\54\22\4\5\0\2\4\15\0\10\4\1\55"+
+    "\31\4\5\0\2\4\15\0\5\4\1\56\34\4\5\0"+
+    "\2\4\15\0\7\4\1\57\32\4\5\0\2\4\15\0"+
+    "\23\4\1\60\6\4\1\61\1\62\6\4\7\30\1\32"+
+    "\1\46\55\30\5\0\2\4\15\0\3\4\1\63\36\4"+
+    "\5\0\2\4\15\0\16\4\1\64\23\4\5\0\2\4"+
+    "\15\0\6\4\1\65\33\4\5\0\2\4\15\0\12\4"+
+    "\1\66\27\4\5\0\2\4\15\0\13\4\1\67\26\4"+
+    "\5\0\2\4\15\0\1\4\1\70\40\4\5\0\2\4"+
+    "\15\0\13\4\1\71\26\4\5\0\2\4\15\0\7\4"+
+    "\1\72\32\4\5\0\2\4\15\0\6\4\1\73\33\4"+
+    "\5\0\2\4\15\0\24\4\1\74\12\4\1\75\2\4"+
+    "\5\0\2\4\15\0\41\4\1\76\5\0\2\4\15\0"+
+    "\23\4\1\77\16\4\5\0\2\4\15\0\3\4\1\100"+
+    "\36\4\5\0\2\4\15\0\1\101\41\4\5\0\2\4"+
+    "\15\0\3\4\1\102\36\4\5\0\2\4\15\0\2\4"+
+    "\1\103\37\4\5\0\2\4\15\0\6\4\1\104\33\4"+
+    "\5\0\2\4\15\0\11\4\1\105\30\4\5\0\2\4"+
+    "\15\0\16\4\1\106\23\4\5\0\2\4\15\0\1\4"+
+    "\1\107\40\4\5\0\2\4\15\0\4\4\1\110\35\4"+
+    "\5\0\2\4\15\0\25\4\1\111\14\4\5\0\2\4"+
+    "\15\0\40\4\1\112\1\4\5\0\2\4\15\0\33\4"+
+    "\1\113\6\4\5\0\2\4\15\0\24\4\1\114\15\4"+
+    "\5\0\2\4\15\0\13\4\1\115\26\4\5\0\2\4"+
+    "\15\0\7\4\1\116\32\4\5\0\2\4\15\0\13\4"+
+    "\1\117\26\4\5\0\2\4\15\0\1\120\41\4\5\0"+
+    "\2\4\15\0\1\121\41\4\5\0\2\4\15\0\2\4"+
+    "\1\122\37\4\5\0\2\4\15\0\2\4\1\123\37\4"+
+    "\5\0\2\4\15\0\2\4\1\124\37\4\5\0\2\4"+
+    "\15\0\26\4\1\125\13\4\5\0\2\4\15\0\35\4"+
+    "\1\126\4\4\5\0\2\4\15\0\25\4\1\127\14\4"+
+    "\5\0\2\4\15\0\34\4\1\130\5\4\5\0\2\4"+
+    "\15\0\2\4\1\131\37\4\5\0\2\4\15\0\6\4"+
+    "\1\132\33\4\5\0\2\4\15\0\13\4\1\133\26\4"+
+    "\5\0\2\4\15\0\1\4\1\134\40\4\5\0\2\4"+
+    "\15\0\13\4\1\135\26\4\5\0\2\4\15\0\5\4"+
+    "\1\136\34\4\5\0\2\4\15\0\27\4\1\137\12\4"+
+    "\5\0\2\4\15\0\26\4\1\140\13\4\5\0\2\4"+
+    "\15\0\36\4\1\141\3\4\5\0\2\4\15\0\35\4"+
+    "\1\142\4\4\5\0\2\4\15\0\1\143\41\4\5\0"+
+    "\2\4\15\0\6\4\1\144\33\4\5\0\2\4\15\0"+
+    "\6\4\1\145\33\4\5\0\2\4\15\0\6\4\1\146"+
+    "\33\4\5\0\2\4\15\0\30\4\1\147\11\4\5\0"+
+    "\2\4\15\0\37\4\1\150\2\4\5\0\2\4\15\0"+
+    "\37\4\1\151\2\4\5\0\2\4\15\0\26\4\1\152"+
+    "\13\4\5\0\2\4\15\0\6\4\1\153\33\4\5\0"+
+    "\2\4\15\0\15\4\1\154\24\4\5\0\2\4\15\0"+
+    "\31\4\1\155\10\4\5\0\2\4\15\0\26\4\1\156"+
+    "\13\4\5\0\2\4\15\0\22\4\1\157\17\4\5\0"+
+    "\2\4\15\0\25\4\1\160\14\4\5\0\2\4\15\0"+
+    "\32\4\1\161\7\4\5\0\2\4\15\0\24\4\1\162"+
+    "\15\4\5\0\2\4\15\0\23\4\1\163\16\4\5\0"+
+    "\2\4\15\0\36\4\1\164\3\4\5\0\2\4\15\0"+
+    "\26\4\1\165\13\4\5\0\2\4\15\0\25\4\1\166"+
+    "\14\4\5\0\2\4\15\0\37\4\1\167\2\4\5\0"+
+    "\2\4\15\0\24\4\1\170\15\4\5\0\2\4\15\0"+
+    "\31\4\1\171\10\4\5\0\2\4\15\0\40\4\1\172"+
+    "\1\4\5\0\2\4\15\0\22\4\1\173\17\4\5\0"+
+    "\2\4\15\0\25\4\1\174\14\4\5\0\2\4\15\0"+
+    "\35\4\1\175\4\4\5\0\2\4\15\0\23\4\1\176"+
+    "\16\4\5\0\2\4\15\0\23\4\1\177\16\4\5\0"+
+    "\2\4\15\0\26\4\1\200\13\4\5\0\2\4\15\0"+
+    "\37\4\1\201\2\4\5\0\2\4\15\0\36\4\1\202"+
+    "\3\4\5\0\2\4\15\0\37\4\1\203\2\4\5\0"+
+    "\2\4\15\0\40\4\1\204\1\4\5\0\2\4\15\0"+
+    "\24\4\1\205\15\4\5\0\2\4\15\0\26\4\1\206"+
+    "\13\4\5\0\2\4\15\0\35\4\1\207\4\4\5\0"+
+    "\2\4\15\0\24\4\1\210\15\4\5\0\2\4\15\0"+
+    "\26\4\1\211\13\4\5\0\2\4\15\0\25\4\1\212"+
+    "\14\4\5\0\2\4\15\0\37\4\1\213\2\4\5\0"+
+    "\2\4\15\0\31\4\1\214\10\4\5\0\2\4\15\0"+
+    "\26\4\1\215\13\4\5\0\2\4\15\0\25\4\1\216"+
+    "\14\4\5\0\2\4\15\0\24\4\1\217\15\4\5\0"+
+    "\2\4\15\0\23\4\1\220\16\4\5\0\2\4\15\0"+
+    "\25\4\1\221\14\4\5\0\2\4\15\0\36\4\1\222"+
+    "\3\4\5\0\2\4\15\0\31\4\1\223\10\4\5\0"+
+    "\2\4\15\0\24\4\1\224\15\4\5\0\2\4\15\0"+
+    "\25\4\1\225\14\4\5\0\2\4\15\0\23\4\1\226"+
+    "\16\4\5\0\2\4\15\0\36\4\1\227\3\4\5\0"+
+    "\2\4\15\0\24\4\1\230\15\4";
+
+  private static int [] zzUnpackTrans() {
+    int [] result = new int[6912];
+    int offset = 0;
+    offset = zzUnpackTrans(ZZ_TRANS_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackTrans(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      value--;
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+
+  /* error codes */
+  private static final int ZZ_UNKNOWN_ERROR = 0;
+  private static final int ZZ_NO_MATCH = 1;
+  private static final int ZZ_PUSHBACK_2BIG = 2;
+
+  /* error messages for the codes above */
+  private static final String ZZ_ERROR_MSG[] = {
+    "Unknown internal scanner error",
+    "Error: could not match input",
+    "Error: pushback value was too large"
+  };
+
+  /**
+   * ZZ_ATTRIBUTE[aState] contains the attributes of state <code>aState</code>
+   */
+  private static final int [] ZZ_ATTRIBUTE = zzUnpackAttribute();
+
+  private static final String ZZ_ATTRIBUTE_PACKED_0 =
+    "\1\0\1\11\4\1\10\11\1\1\1\11\7\1\1\0"+
+    "\1\1\1\11\1\1\1\11\11\1\1\0\162\1";
+
+  private static int [] zzUnpackAttribute() {
+    int [] result = new int[152];
+    int offset = 0;
+    offset = zzUnpackAttribute(ZZ_ATTRIBUTE_PACKED_0, offset, result);
+    return result;
+  }
+
+  private static int zzUnpackAttribute(String packed, int offset, int [] result) {
+    int i = 0;       /* index in packed string  */
+    int j = offset;  /* index in unpacked array */
+    int l = packed.length();
+    while (i < l) {
+      int count = packed.charAt(i++);
+      int value = packed.charAt(i++);
+      do result[j++] = value; while (--count > 0);
+    }
+    return j;
+  }
+
+  /** the input device */
+  private java.io.Reader zzReader;
+
+  /** the current state of the DFA */
+  private int zzState;
+
+  /** the current lexical state */
+  private int zzLexicalState = YYINITIAL;
+
+  /** this buffer contains the current text to be matched and is
+      the source of the yytext() string */
+  private char zzBuffer[] = new char[ZZ_BUFFERSIZE];
+
+  /** the textposition at the last accepting state */
+  private int zzMarkedPos;
+
+  /** the current text position in the buffer */
+  private int zzCurrentPos;
+
+  /** startRead marks the beginning of the yytext() string in the buffer */
+  private int zzStartRead;
+
+  /** endRead marks the last character in the buffer, that has been read
+      from input */
+  private int zzEndRead;
+
+  /** number of newlines encountered up to the start of the matched text */
+  private int yyline;
+
+  /** the number of characters up to the start of the matched text */
+  private int yychar;
+
+  /**
+   * the number of characters from the last newline up to the start of the 
+   * matched text
+   */
+  private int yycolumn;
+
+  /** 
+   * zzAtBOL == true <=> the scanner is currently at the beginning of a line
+   */
+  private boolean zzAtBOL = true;
+
+  /** zzAtEOF == true <=> the scanner is at the EOF */
+  private boolean zzAtEOF;
+
+  /** denotes if the user-EOF-code has already been executed */
+  private boolean zzEOFDone;
+  
+  /** 
+   * The number of occupied positions in zzBuffer beyond zzEndRead.
+   * When a lead/high surrogate has been read from the input stream
+   * into the final zzBuffer position, this will have a value of 1;
+   * otherwise, it will have a value of 0.
+   */
+  private int zzFinalHighSurrogate = 0;
+
+  /* user code: */
+    /**
+     * Retrieves line number of the current token in the source file.
+     * @return Line number (starting from 1).
+     */
+    public int line()
+    {
+        return yyline + 1;
+    }
+
+    /**
+     * Retrieves column number of the current token in the source file.
+     * @return Column number (starting from 1).
+     */
+    public int column()
+    {
+        return yycolumn + 1;
+    }
+
+    /**
+     * Retrieves offset of the current token from the beginning of the input.
+     * @return Offset, in characters.
+     */
+    public int offset()
+    {
+        return yychar;
+    }
+
+
+  /**
+   * Creates a new scanner
+   *
+   * @param   in  the java.io.Reader to read input from.
+   */
+  public CxxLexer(java.io.Reader in) {
+    this.zzReader = in;
+  }
+
+
+  /** 
+   * Unpacks the compressed character translation table.
+   *
+   * @param packed   the packed character translation table
+   * @return         the unpacked character translation table
+   */
+  private static char [] zzUnpackCMap(String packed) {
+    char [] map = new char[0x110000];
+    int i = 0;  /* index in packed string  */
+    int j = 0;  /* index in unpacked array */
+    while (i < 190) {
+      int  count = packed.charAt(i++);
+      char value = packed.charAt(i++);
+      do map[j++] = value; while (--count > 0);
+    }
+    return map;
+  }
+
+
+  /**
+   * Refills the input buffer.
+   *
+   * @return      <code>false</code>, iff there was new input.
+   * 
+   * @exception   java.io.IOException  if any I/O-Error occurs
+   */
+  private boolean zzRefill() throws java.io.IOException {
+
+    /* first: make room (if you can) */
+    if (zzStartRead > 0) {
+      zzEndRead += zzFinalHighSurrogate;
+      zzFinalHighSurrogate = 0;
+      System.arraycopy(zzBuffer, zzStartRead,
+                       zzBuffer, 0,
+                       zzEndRead-zzStartRead);
+
+      /* translate stored positions */
+      zzEndRead-= zzStartRead;
+      zzCurrentPos-= zzStartRead;
+      zzMarkedPos-= zzStartRead;
+      zzStartRead = 0;
+    }
+
+    /* is the buffer big enough? */
+    if (zzCurrentPos >= zzBuffer.length - zzFinalHighSurrogate) {
+      /* if not: blow it up */
+      char newBuffer[] = new char[zzBuffer.length*2];
+      System.arraycopy(zzBuffer, 0, newBuffer, 0, zzBuffer.length);
+      zzBuffer = newBuffer;
+      zzEndRead += zzFinalHighSurrogate;
+      zzFinalHighSurrogate = 0;
+    }
+
+    /* fill the buffer with new input */
+    int requested = zzBuffer.length - zzEndRead;
+    int numRead = zzReader.read(zzBuffer, zzEndRead, requested);
+
+    /* not supposed to occur according to specification of java.io.Reader */
+    if (numRead == 0) {
+      throw new java.io.IOException("Reader returned 0 characters. See JFlex examples for workaround.");
+    }
+    if (numRead > 0) {
+      zzEndRead += numRead;
+      /* If numRead == requested, we might have requested to few chars to
+         encode a full Unicode character. We assume that a Reader would
+         otherwise never return half characters. */
+      if (numRead == requested) {
+        if (Character.isHighSurrogate(zzBuffer[zzEndRead - 1])) {
+          --zzEndRead;
+          zzFinalHighSurrogate = 1;
+        }
+      }
+      /* potentially more input available */
+      return false;
+    }
+
+    /* numRead < 0 ==> end of stream */
+    return true;
+  }
+
+    
+  /**
+   * Closes the input stream.
+   */
+  public final void yyclose() throws java.io.IOException {
+    zzAtEOF = true;            /* indicate end of file */
+    zzEndRead = zzStartRead;  /* invalidate buffer    */
+
+    if (zzReader != null)
+      zzReader.close();
+  }
+
+
+  /**
+   * Resets the scanner to read from a new input stream.
+   * Does not close the old reader.
+   *
+   * All internal variables are reset, the old input stream 
+   * <b>cannot</b> be reused (internal buffer is discarded and lost).
+   * Lexical state is set to <tt>ZZ_INITIAL</tt>.
+   *
+   * Internal scan buffer is resized down to its initial length, if it has grown.
+   *
+   * @param reader   the new input stream 
+   */
+  public final void yyreset(java.io.Reader reader) {
+    zzReader = reader;
+    zzAtBOL  = true;
+    zzAtEOF  = false;
+    zzEOFDone = false;
+    zzEndRead = zzStartRead = 0;
+    zzCurrentPos = zzMarkedPos = 0;
+    zzFinalHighSurrogate = 0;
+    yyline = yychar = yycolumn = 0;
+    zzLexicalState = YYINITIAL;
+    if (zzBuffer.length > ZZ_BUFFERSIZE)
+      zzBuffer = new char[ZZ_BUFFERSIZE];
+  }
+
+
+  /**
+   * Returns the current lexical state.
+   */
+  public final int yystate() {
+    return zzLexicalState;
+  }
+
+
+  /**
+   * Enters a new lexical state
+   *
+   * @param newState the new lexical state
+   */
+  public final void yybegin(int newState) {
+    zzLexicalState = newState;
+  }
+
+
+  /**
+   * Returns the text matched by the current regular expression.
+   */
+  public final String yytext() {
+    return new String( zzBuffer, zzStartRead, zzMarkedPos-zzStartRead );
+  }
+
+
+  /**
+   * Returns the character at position <tt>pos</tt> from the 
+   * matched text. 
+   * 
+   * It is equivalent to yytext().charAt(pos), but faster
+   *
+   * @param pos the position of the character to fetch. 
+   *            A value from 0 to yylength()-1.
+   *
+   * @return the character at position pos
+   */
+  public final char yycharat(int pos) {
+    return zzBuffer[zzStartRead+pos];
+  }
+
+
+  /**
+   * Returns the length of the matched text region.
+   */
+  public final int yylength() {
+    return zzMarkedPos-zzStartRead;
+  }
+
+
+  /**
+   * Reports an error that occured while scanning.
+   *
+   * In a wellformed scanner (no or only correct usage of 
+   * yypushback(int) and a match-all fallback rule) this method 
+   * will only be called with things that "Can't Possibly Happen".
+   * If this method is called, something is seriously wrong
+   * (e.g. a JFlex bug producing a faulty scanner etc.).
+   *
+   * Usual syntax/scanner level error handling should be done
+   * in error fallback rules.
+   *
+   * @param   errorCode  the code of the errormessage to display
+   */
+  private void zzScanError(int errorCode) {
+    String message;
+    try {
+      message = ZZ_ERROR_MSG[errorCode];
+    }
+    catch (ArrayIndexOutOfBoundsException e) {
+      message = ZZ_ERROR_MSG[ZZ_UNKNOWN_ERROR];
+    }
+
+    throw new Error(message);
+  } 
+
+
+  /**
+   * Pushes the specified amount of characters back into the input stream.
+   *
+   * They will be read again by then next call of the scanning method
+   *
+   * @param number  the number of characters to be read again.
+   *                This number must not be greater than yylength()!
+   */
+  public void yypushback(int number)  {
+    if ( number > yylength() )
+      zzScanError(ZZ_PUSHBACK_2BIG);
+
+    zzMarkedPos -= number;
+  }
+
+
+  /**
+   * Contains user EOF-code, which will be executed exactly once,
+   * when the end of file is reached
+   */
+  private void zzDoEOF() throws java.io.IOException {
+    if (!zzEOFDone) {
+      zzEOFDone = true;
+      yyclose();
+    }
+  }
+
+
+  /**
+   * Resumes scanning until the next regular expression is matched,
+   * the end of input is encountered or an I/O-Error occurs.
+   *
+   * @return      the next token
+   * @exception   java.io.IOException  if any I/O-Error occurs
+   */
+  public int yylex() throws java.io.IOException {
+    int zzInput;
+    int zzAction;
+
+    // cached fields:
+    int zzCurrentPosL;
+    int zzMarkedPosL;
+    int zzEndReadL = zzEndRead;
+    char [] zzBufferL = zzBuffer;
+    char [] zzCMapL = ZZ_CMAP;
+
+    int [] zzTransL = ZZ_TRANS;
+    int [] zzRowMapL = ZZ_ROWMAP;
+    int [] zzAttrL = ZZ_ATTRIBUTE;
+
+    while (true) {
+      zzMarkedPosL = zzMarkedPos;
+
+      yychar+= zzMarkedPosL-zzStartRead;
+
+      boolean zzR = false;
+      int zzCh;
+      int zzCharCount;
+      for (zzCurrentPosL = zzStartRead  ;
+           zzCurrentPosL < zzMarkedPosL ;
+           zzCurrentPosL += zzCharCount ) {
+        zzCh = Character.codePointAt(zzBufferL, zzCurrentPosL, zzMarkedPosL);
+        zzCharCount = Character.charCount(zzCh);
+        switch (zzCh) {
+        case '\u000B':
+        case '\u000C':
+        case '\u0085':
+        case '\u2028':
+        case '\u2029':
+          yyline++;
+          yycolumn = 0;
+          zzR = false;
+          break;
+        case '\r':
+          yyline++;
+          yycolumn = 0;
+          zzR = true;
+          break;
+        case '\n':
+          if (zzR)
+            zzR = false;
+          else {
+            yyline++;
+            yycolumn = 0;
+          }
+          break;
+        default:
+          zzR = false;
+          yycolumn += zzCharCount;
+        }
+      }
+
+      if (zzR) {
+        // peek one character ahead if it is \n (if we have counted one line too much)
+        boolean zzPeek;
+        if (zzMarkedPosL < zzEndReadL)
+          zzPeek = zzBufferL[zzMarkedPosL] == '\n';
+        else if (zzAtEOF)
+          zzPeek = false;
+        else {
+          boolean eof = zzRefill();
+          zzEndReadL = zzEndRead;
+          zzMarkedPosL = zzMarkedPos;
+          zzBufferL = zzBuffer;
+          if (eof) 
+            zzPeek = false;
+          else 
+            zzPeek = zzBufferL[zzMarkedPosL] == '\n';
+        }
+        if (zzPeek) yyline--;
+      }
+      zzAction = -1;
+
+      zzCurrentPosL = zzCurrentPos = zzStartRead = zzMarkedPosL;
+  
+      zzState = ZZ_LEXSTATE[zzLexicalState];
+
+      // set up zzAction for empty match case:
+      int zzAttributes = zzAttrL[zzState];
+      if ( (zzAttributes & 1) == 1 ) {
+        zzAction = zzState;
+      }
+
+
+      zzForAction: {
+        while (true) {
+    
+          if (zzCurrentPosL < zzEndReadL) {
+            zzInput = Character.codePointAt(zzBufferL, zzCurrentPosL, zzEndReadL);
+            zzCurrentPosL += Character.charCount(zzInput);
+          }
+          else if (zzAtEOF) {
+            zzInput = YYEOF;
+            break zzForAction;
+          }
+          else {
+            // store back cached positions
+            zzCurrentPos  = zzCurrentPosL;
+            zzMarkedPos   = zzMarkedPosL;
+            boolean eof = zzRefill();
+            // get translated positions and possibly new buffer
+            zzCurrentPosL  = zzCurrentPos;
+            zzMarkedPosL   = zzMarkedPos;
+            zzBufferL      = zzBuffer;
+            zzEndReadL     = zzEndRead;
+            if (eof) {
+              zzInput = YYEOF;
+              break zzForAction;
+            }
+            else {
+              zzInput = Character.codePointAt(zzBufferL, zzCurrentPosL, zzEndReadL);
+              zzCurrentPosL += Character.charCount(zzInput);
+            }
+          }
+          int zzNext = zzTransL[ zzRowMapL[zzState] + zzCMapL[zzInput] ];
+          if (zzNext == -1) break zzForAction;
+          zzState = zzNext;
+
+          zzAttributes = zzAttrL[zzState];
+          if ( (zzAttributes & 1) == 1 ) {
+            zzAction = zzState;
+            zzMarkedPosL = zzCurrentPosL;
+            if ( (zzAttributes & 8) == 8 ) break zzForAction;
+          }
+
+        }
+      }
+
+      // store back cached position
+      zzMarkedPos = zzMarkedPosL;
+
+      if (zzInput == YYEOF && zzStartRead == zzCurrentPos) {
+        zzAtEOF = true;
+            zzDoEOF();
+          {     return CxxToken.EOF;
+ }
+      }
+      else {
+        switch (zzAction < 0 ? zzAction : ZZ_ACTION[zzAction]) {
+          case 1: 
+            { return CxxToken.UNRECOGNIZED;
+            }
+          case 28: break;
+          case 2: 
+            { 
+            }
+          case 29: break;
+          case 3: 
+            { return CxxToken.IDENTIFIER;
+            }
+          case 30: break;
+          case 4: 
+            { return CxxToken.LESS;
+            }
+          case 31: break;
+          case 5: 
+            { return CxxToken.GREATER;
+            }
+          case 32: break;
+          case 6: 
+            { return CxxToken.LPAREN;
+            }
+          case 33: break;
+          case 7: 
+            { return CxxToken.RPAREN;
+            }
+          case 34: break;
+          case 8: 
+            { return CxxToken.LCURLY;
+            }
+          case 35: break;
+          case 9: 
+            { return CxxToken.RCURLY;
+            }
+          case 36: break;
+          case 10: 
+            { return CxxToken.COMMA;
+            }
+          case 37: break;
+          case 11: 
+            { return CxxToken.EQUAL;
+            }
+          case 38: break;
+          case 12: 
+            { return CxxToken.COLON;
+            }
+          case 39: break;
+          case 13: 
+            { return CxxToken.SEMICOLON;
+            }
+          case 40: break;
+          case 14: 
+            { return CxxToken.SCOPE;
+            }
+          case 41: break;
+          case 15: 
+            { return CxxToken.CLASS;
+            }
+          case 42: break;
+          case 16: 
+            { return CxxToken.STRUCT;
+            }
+          case 43: break;
+          case 17: 
+            { return CxxToken.PUBLIC;
+            }
+          case 44: break;
+          case 18: 
+            { return CxxToken.PRIVATE;
+            }
+          case 45: break;
+          case 19: 
+            { return CxxToken.VIRTUAL;
+            }
+          case 46: break;
+          case 20: 
+            { return CxxToken.TEMPLATE;
+            }
+          case 47: break;
+          case 21: 
+            { return CxxToken.TYPENAME;
+            }
+          case 48: break;
+          case 22: 
+            { return CxxToken.NAMESPACE;
+            }
+          case 49: break;
+          case 23: 
+            { return CxxToken.PROTECTED;
+            }
+          case 50: break;
+          case 24: 
+            { return CxxToken.Z_INTERFACE;
+            }
+          case 51: break;
+          case 25: 
+            { return CxxToken.Z_IMPLEMENTATION;
+            }
+          case 52: break;
+          case 26: 
+            { return CxxToken.Z_CUSTOM_IMPLEMENTATION;
+            }
+          case 53: break;
+          case 27: 
+            { return CxxToken.Z_SINGLETON_IMPLEMENTATION;
+            }
+          case 54: break;
+          default:
+            zzScanError(ZZ_NO_MATCH);
+        }
+      }
+    }
+  }
+
+
+}
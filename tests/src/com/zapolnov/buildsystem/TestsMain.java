@@ -23,12 +23,15 @@ package com.zapolnov.buildsystem;
 
 import com.zapolnov.buildsystem.tests.AbstractPluginTest;
 import com.zapolnov.buildsystem.tests.ColorsTest;
+import com.zapolnov.buildsystem.tests.CompressionTests;
 import com.zapolnov.buildsystem.tests.CxxParserTest;
 import com.zapolnov.buildsystem.tests.DatabaseTests;
+import com.zapolnov.buildsystem.tests.DirectiveSchedulerTest;
 import com.zapolnov.buildsystem.tests.FileBuilderTests;
 import com.zapolnov.buildsystem.tests.FileUtilsTest;
 import com.zapolnov.buildsystem.tests.GeneratorTest;
 import com.zapolnov.buildsystem.tests.LogTests;
+import com.zapolnov.buildsystem.tests.StatisticsTests;
 import com.zapolnov.buildsystem.tests.StringUtilsTest;
 import com.zapolnov.buildsystem.tests.SystemUtilsTest;
 import com.zapolnov.buildsystem.tests.TemplateTests;
@@ -54,6 +57,8 @@ public final class TestsMain
             YamlParserTests.class,
             DatabaseTests.class,
             FileBuilderTests.class,
+            StatisticsTests.class,
+            CompressionTests.class,
             TemplateTests.class,
             StringUtilsTest.class,
             AbstractPluginTest.class,
@@ -61,7 +66,8 @@ public final class TestsMain
             SystemUtilsTest.class,
             FileUtilsTest.class,
             GeneratorTest.class,
-            CxxParserTest.class
+            CxxParserTest.class,
+            DirectiveSchedulerTest.class
         );
 
         System.exit(!result.wasSuccessful() ? 1 : 0);
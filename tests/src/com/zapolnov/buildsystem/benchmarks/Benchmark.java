@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+/** Base class for benchmarks. */
+public abstract class Benchmark
+{
+    /** Name of the benchmark. */
+    public final String name;
+
+    /**
+     * Constructor.
+     * @param name Name of the benchmark.
+     */
+    protected Benchmark(String name)
+    {
+        this.name = name;
+    }
+
+    /**
+     * Prepares the benchmark. This method is invoked once before all iterations.
+     * @param fixture Synthetic project to run the benchmark on.
+     */
+    public void setUp(SyntheticProject fixture) throws Throwable
+    {
+    }
+
+    /**
+     * Prepares the benchmark for the next iteration. Time spent in this method is not measured.
+     */
+    public void setUpIteration() throws Throwable
+    {
+    }
+
+    /**
+     * Runs a single measured iteration of the benchmark.
+     * @return Result of the operation. It is consumed by the runner to prevent the JIT from eliminating the code.
+     */
+    public abstract Object run() throws Throwable;
+
+    /** Releases all resources held by the benchmark. This method is invoked once after all iterations. */
+    public void tearDown() throws Throwable
+    {
+    }
+}
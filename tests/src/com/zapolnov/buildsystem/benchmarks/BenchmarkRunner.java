@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import java.util.Arrays;
+
+/** Runs benchmarks and reports their timings. */
+public final class BenchmarkRunner
+{
+    /** Number of warmup iterations. */
+    private final int warmupIterations;
+    /** Number of measured iterations. */
+    private final int measuredIterations;
+    /** Synthetic project to run benchmarks on. */
+    private final SyntheticProject fixture;
+    /** Accumulator for benchmark results. */
+    private int blackhole;
+
+    /**
+     * Constructor.
+     * @param fixture Synthetic project to run benchmarks on.
+     * @param warmupIterations Number of warmup iterations.
+     * @param measuredIterations Number of measured iterations.
+     */
+    public BenchmarkRunner(SyntheticProject fixture, int warmupIterations, int measuredIterations)
+    {
+        this.fixture = fixture;
+        this.warmupIterations = Math.max(warmupIterations, 0);
+        this.measuredIterations = Math.max(measuredIterations, 1);
+    }
+
+    /** Prints header of the results table. */
+    public void printHeader()
+    {
+        System.out.println(String.format("%-32s %12s %12s %12s %12s", "Benchmark", "avg ms/op", "min ms/op",
+            "median ms/op", "max ms/op"));
+    }
+
+    /**
+     * Runs the specified benchmark and prints its results.
+     * @param benchmark Benchmark to run.
+     */
+    public void run(Benchmark benchmark) throws Throwable
+    {
+        benchmark.setUp(fixture);
+        try {
+            for (int i = 0; i < warmupIterations; i++)
+                runIteration(benchmark);
+
+            long[] times = new long[measuredIterations];
+            for (int i = 0; i < measuredIterations; i++)
+                times[i] = runIteration(benchmark);
+
+            Arrays.sort(times);
+            long total = 0;
+            for (long time : times)
+                total += time;
+
+            System.out.println(String.format("%-32s %12.3f %12.3f %12.3f %12.3f", benchmark.name,
+                millis(total) / times.length, millis(times[0]), millis(times[times.length / 2]),
+                millis(times[times.length - 1])));
+        } finally {
+            benchmark.tearDown();
+        }
+    }
+
+    /**
+     * Runs single iteration of the benchmark.
+     * @param benchmark Benchmark to run.
+     * @return Time spent in the benchmark, in nanoseconds.
+     */
+    private long runIteration(Benchmark benchmark) throws Throwable
+    {
+        benchmark.setUpIteration();
+
+        long startTime = System.nanoTime();
+        Object result = benchmark.run();
+        long endTime = System.nanoTime();
+
+        blackhole ^= System.identityHashCode(result);
+        return endTime - startTime;
+    }
+
+    /**
+     * Converts nanoseconds into milliseconds.
+     * @param nanoseconds Number of nanoseconds.
+     * @return Number of milliseconds.
+     */
+    private static double millis(long nanoseconds)
+    {
+        return nanoseconds / 1000000.0;
+    }
+
+    /**
+     * Retrieves the accumulated results of all benchmarks.
+     * @return Accumulated value.
+     */
+    public int blackhole()
+    {
+        return blackhole;
+    }
+}
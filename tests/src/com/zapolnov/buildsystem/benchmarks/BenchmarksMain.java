@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.utility.Log;
+import com.zapolnov.buildsystem.utility.LogLevel;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Entry point for benchmarks. */
+public final class BenchmarksMain
+{
+    /** Prints the command line usage information.  */
+    public static void printUsage()
+    {
+                         // 12345678901234567890123456789012345678901234567890123456789012345678901234567890
+        System.out.println("");
+        System.out.println("Usage: java -cp buildsystem-tests.jar " + BenchmarksMain.class.getName() + " [options]");
+        System.out.println("Where options are:");
+        System.out.println("  -h, --help               Display this help screen.");
+        System.out.println("  --seed <value>           Seed for the synthetic project generator.");
+        System.out.println("  --headers <count>        Number of headers in the synthetic project.");
+        System.out.println("  --directories <count>    Number of source directories in each module.");
+        System.out.println("  --imports <count>        Number of imported modules.");
+        System.out.println("  --warmup <count>         Number of warmup iterations.");
+        System.out.println("  --iterations <count>     Number of measured iterations.");
+        System.out.println("  --filter <text>          Run only benchmarks with names containing the text.");
+        System.out.println("");
+    }
+
+    /**
+     * Parses value of the numeric command line argument.
+     * @param args Array of command line arguments.
+     * @param i Index of the parameter in the array.
+     * @return Value of the parameter.
+     */
+    private static int intParameter(String[] args, int i)
+    {
+        if (i >= args.length)
+            throw new RuntimeException(String.format("Missing value after the command line argument \"%s\".", args[i - 1]));
+
+        try {
+            int value = Integer.parseInt(args[i]);
+            if (value >= 0)
+                return value;
+        } catch (NumberFormatException ignored) {
+        }
+
+        throw new RuntimeException(String.format("Invalid value \"%s\" for the command line argument \"%s\".",
+            args[i], args[i - 1]));
+    }
+
+    /**
+     * Application entry point.
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args)
+    {
+        long seed = 0;
+        int numberOfHeaders = 500;
+        int numberOfDirectories = 10;
+        int numberOfImports = 10;
+        int warmupIterations = 3;
+        int measuredIterations = 10;
+        String filter = null;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--help".equals(args[i]) || "-h".equals(args[i])) {
+                    printUsage();
+                    System.exit(1);
+                } else if ("--seed".equals(args[i])) {
+                    seed = intParameter(args, ++i);
+                } else if ("--headers".equals(args[i])) {
+                    numberOfHeaders = intParameter(args, ++i);
+                } else if ("--directories".equals(args[i])) {
+                    numberOfDirectories = intParameter(args, ++i);
+                } else if ("--imports".equals(args[i])) {
+                    numberOfImports = intParameter(args, ++i);
+                } else if ("--warmup".equals(args[i])) {
+                    warmupIterations = intParameter(args, ++i);
+                } else if ("--iterations".equals(args[i])) {
+                    measuredIterations = intParameter(args, ++i);
+                } else if ("--filter".equals(args[i])) {
+                    if (++i >= args.length)
+                        throw new RuntimeException("Missing value after the command line argument \"--filter\".");
+                    filter = args[i];
+                } else {
+                    throw new RuntimeException(String.format("Invalid command line argument \"%s\".", args[i]));
+                }
+            }
+
+            Log.setPrinter((level, message) -> {
+                if (level.integerValue <= LogLevel.WARNING.integerValue)
+                    System.err.println(message);
+            });
+
+            List<Benchmark> benchmarks = new ArrayList<>();
+            benchmarks.add(new CxxLexerBenchmark());
+            benchmarks.add(new CxxParserBenchmark());
+            benchmarks.add(new DatabaseBenchmark());
+            benchmarks.add(new FileBuilderBenchmark());
+            benchmarks.add(new WriteCMakeListsBenchmark());
+            benchmarks.add(new ProjectBuilderBenchmark(true));
+            benchmarks.add(new ProjectBuilderBenchmark(false));
+
+            File directory = Files.createTempDirectory("SyntheticProject").toFile();
+            SyntheticProject fixture = new SyntheticProject(directory, seed,
+                numberOfHeaders, numberOfDirectories, numberOfImports);
+            try {
+                fixture.generate();
+
+                System.out.println(String.format("Synthetic project: seed %d, %d headers, %d directories, %d imports.",
+                    fixture.seed, fixture.numberOfHeaders, fixture.numberOfDirectories, fixture.numberOfImports));
+                System.out.println(String.format("Iterations: %d warmup, %d measured.",
+                    warmupIterations, measuredIterations));
+                System.out.println("");
+
+                BenchmarkRunner runner = new BenchmarkRunner(fixture, warmupIterations, measuredIterations);
+                runner.printHeader();
+                for (Benchmark benchmark : benchmarks) {
+                    if (filter == null || benchmark.name.contains(filter))
+                        runner.run(benchmark);
+                }
+            } finally {
+                fixture.delete();
+            }
+        } catch (Throwable t) {
+            System.err.println(StringUtils.getDetailedExceptionMessage(t));
+            System.exit(1);
+        }
+
+        System.exit(0);
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxLexer;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxToken;
+import java.io.StringReader;
+import java.util.List;
+
+/** Measures tokenization of all headers in the project. */
+public final class CxxLexerBenchmark extends Benchmark
+{
+    /** Contents of the headers. */
+    private List<String> sources;
+
+    /** Constructor. */
+    public CxxLexerBenchmark()
+    {
+        super("CxxLexer");
+    }
+
+    @Override public void setUp(SyntheticProject fixture) throws Throwable
+    {
+        sources = BenchmarkUtilities.readHeaders(fixture);
+    }
+
+    @Override public Object run() throws Throwable
+    {
+        int numberOfTokens = 0;
+        for (String source : sources) {
+            CxxLexer lexer = new CxxLexer(new StringReader(source));
+            while (lexer.yylex() != CxxToken.EOF)
+                ++numberOfTokens;
+        }
+        return numberOfTokens;
+    }
+}
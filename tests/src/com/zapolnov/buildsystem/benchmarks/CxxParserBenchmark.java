@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxParser;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Measures parsing of all headers in the project. */
+public final class CxxParserBenchmark extends Benchmark
+{
+    /** Headers to parse. */
+    private List<File> headers;
+    /** Contents of the headers. */
+    private List<String> sources;
+
+    /** Constructor. */
+    public CxxParserBenchmark()
+    {
+        super("CxxParser");
+    }
+
+    @Override public void setUp(SyntheticProject fixture) throws Throwable
+    {
+        headers = fixture.headers();
+        sources = BenchmarkUtilities.readHeaders(fixture);
+    }
+
+    @Override public Object run() throws Throwable
+    {
+        List<CxxTranslationUnit> units = new ArrayList<>(sources.size());
+        for (int i = 0; i < sources.size(); i++) {
+            CxxParser parser = new CxxParser(new StringReader(sources.get(i)), headers.get(i));
+            units.add(parser.parseTranslationUnit());
+        }
+        return units;
+    }
+}
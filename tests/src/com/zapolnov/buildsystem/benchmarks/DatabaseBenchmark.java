@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.plugins.metacompiler.CxxAnalyzer;
+import com.zapolnov.buildsystem.utility.Database;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+/** Measures lookups and updates of the build database for all headers in the project. */
+public final class DatabaseBenchmark extends Benchmark
+{
+    /** Size of the parse results stored for each header. */
+    private static final int PARSE_RESULTS_SIZE = 1024;
+
+    /** Extra data to associate with each header. */
+    private static final byte[] EXTRA_DATA = new byte[0];
+
+    /** Headers to check. */
+    private List<File> headers;
+    /** Directory of the database. */
+    private File databaseDirectory;
+    /** Database instance. */
+    private Database database;
+    /** Parse results to store for each header. */
+    private final byte[] parseResults = new byte[PARSE_RESULTS_SIZE];
+
+    /** Constructor. */
+    public DatabaseBenchmark()
+    {
+        super("Database");
+    }
+
+    @Override public void setUp(SyntheticProject fixture) throws Throwable
+    {
+        headers = fixture.headers();
+        databaseDirectory = Files.createTempDirectory("DatabaseBenchmark").toFile();
+        database = new Database(databaseDirectory);
+        database.setKeepOpen(true);
+        run();
+    }
+
+    @Override public Object run() throws Throwable
+    {
+        int numberOfChanges = 0;
+        for (File header : headers) {
+            if (database.didInputFileChange(header, EXTRA_DATA))
+                ++numberOfChanges;
+            database.saveFileParseResults(header, CxxAnalyzer.class, parseResults);
+            if (database.loadFileParseResults(header, CxxAnalyzer.class) == null)
+                throw new RuntimeException("Parse results were not stored in the database.");
+        }
+        database.commit();
+        return numberOfChanges;
+    }
+
+    @Override public void tearDown() throws Throwable
+    {
+        database.close();
+        BenchmarkUtilities.deleteRecursively(databaseDirectory);
+    }
+}
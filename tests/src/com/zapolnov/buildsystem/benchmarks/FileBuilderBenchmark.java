@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.utility.Database;
+import com.zapolnov.buildsystem.utility.FileBuilder;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+/** Measures committing of a large generated file whose contents did not change. */
+public final class FileBuilderBenchmark extends Benchmark
+{
+    /** Output directory. */
+    private File directory;
+    /** Database instance. */
+    private Database database;
+    /** Contents of the headers. */
+    private List<String> sources;
+
+    /** Constructor. */
+    public FileBuilderBenchmark()
+    {
+        super("FileBuilder.commit");
+    }
+
+    @Override public void setUp(SyntheticProject fixture) throws Throwable
+    {
+        sources = BenchmarkUtilities.readHeaders(fixture);
+        directory = Files.createTempDirectory("FileBuilderBenchmark").toFile();
+        database = new Database(directory);
+        database.setKeepOpen(true);
+        run();
+    }
+
+    @Override public Object run() throws Throwable
+    {
+        FileBuilder builder = new FileBuilder(directory, "generated.cpp");
+        builder.appendCxxAutogeneratedHeader();
+        for (String source : sources)
+            builder.append(source);
+        boolean written = builder.commit(database);
+        database.commit();
+        return written;
+    }
+
+    @Override public void tearDown() throws Throwable
+    {
+        database.close();
+        BenchmarkUtilities.deleteRecursively(directory);
+    }
+}
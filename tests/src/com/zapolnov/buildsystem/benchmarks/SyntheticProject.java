@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic project used for benchmarks and scale testing.
+ *
+ * Project is generated deterministically from the seed and the size parameters: the same parameters always produce
+ * byte-identical files. Imported modules form a tree rooted at the main project, source directories of each module
+ * form a tree as well. Project files use `source_directories`, `import`, `define`, `file2c` and target platform
+ * selectors; headers contain classes marked with `Z_INTERFACE`, `Z_IMPLEMENTATION`, `Z_SINGLETON_IMPLEMENTATION`
+ * and `Z_CUSTOM_IMPLEMENTATION` along with plain C++ code.
+ */
+public final class SyntheticProject
+{
+    /** Maximum number of modules directly imported by each module. */
+    private static final int IMPORT_FANOUT = 8;
+    /** Maximum number of subdirectories in each source directory. */
+    private static final int DIRECTORY_FANOUT = 4;
+    /** Maximum depth of namespaces in headers. */
+    private static final int MAX_NAMESPACE_DEPTH = 3;
+
+    /** Root directory of the project. */
+    public final File directory;
+    /** Seed for the random number generator. */
+    public final long seed;
+    /** Number of headers in the project (including imported modules). */
+    public final int numberOfHeaders;
+    /** Number of source directories in each module. */
+    public final int numberOfDirectories;
+    /** Number of imported modules. */
+    public final int numberOfImports;
+    /** List of all generated headers. */
+    private final List<File> headers = new ArrayList<>();
+
+    /**
+     * Constructor.
+     * @param directory Directory where project should be generated.
+     * @param seed Seed for the random number generator.
+     * @param numberOfHeaders Number of headers in the project (including imported modules).
+     * @param numberOfDirectories Number of source directories in each module.
+     * @param numberOfImports Number of imported modules.
+     */
+    public SyntheticProject(File directory, long seed, int numberOfHeaders, int numberOfDirectories,
+        int numberOfImports)
+    {
+        this.directory = directory;
+        this.seed = seed;
+        this.numberOfHeaders = Math.max(numberOfHeaders, 1);
+        this.numberOfDirectories = Math.max(numberOfDirectories, 1);
+        this.numberOfImports = Math.max(numberOfImports, 0);
+    }
+
+    /**
+     * Retrieves list of all generated headers.
+     * @return List of headers.
+     */
+    public List<File> headers()
+    {
+        return Collections.unmodifiableList(headers);
+    }
+
+    /** Writes project files to disk. */
+    public void generate() throws IOException
+    {
+        Random random = new Random(seed);
+        headers.clear();
+
+        int numberOfModules = numberOfImports + 1;
+        for (int i = 0; i < numberOfModules; i++)
+            generateModule(random, i);
+
+        for (int i = 0; i < numberOfHeaders; i++) {
+            int module = i % numberOfModules;
+            int subdirectory = (i / numberOfModules) % numberOfDirectories;
+            File sourceDirectory = new File(moduleDirectory(module), directoryPath(subdirectory));
+
+            File header = new File(sourceDirectory, String.format("Class%d.h", i));
+            writeFile(header, headerContents(random, i));
+            headers.add(header);
+
+            if (random.nextInt(2) == 0) {
+                writeFile(new File(sourceDirectory, String.format("Class%d.cpp", i)),
+                    String.format("#include \"Class%d.h\"\n\nvoid Class%d_function() {}\n", i, i));
+            }
+        }
+    }
+
+    /** Deletes the generated build directory, so that the next build would run from scratch. */
+    public void deleteBuildDirectory() throws IOException
+    {
+        BenchmarkUtilities.deleteRecursively(new File(directory, "build"));
+    }
+
+    /** Deletes the whole project from disk. */
+    public void delete() throws IOException
+    {
+        BenchmarkUtilities.deleteRecursively(directory);
+    }
+
+    /**
+     * Retrieves directory of the module.
+     * @param module Index of the module (zero is the root project).
+     * @return Directory of the module.
+     */
+    private File moduleDirectory(int module)
+    {
+        return (module == 0 ? directory : new File(directory, String.format("modules/module%d", module)));
+    }
+
+    /**
+     * Retrieves path to the source directory relative to the module directory.
+     * @param index Index of the source directory (zero is the root source directory).
+     * @return Relative path to the directory.
+     */
+    private static String directoryPath(int index)
+    {
+        if (index == 0)
+            return "src";
+        return String.format("%s/dir%d", directoryPath((index - 1) / DIRECTORY_FANOUT), index);
+    }
+
+    /**
+     * Writes the project file of the module along with data files and platform-specific headers.
+     * @param random Random number generator.
+     * @param module Index of the module (zero is the root project).
+     */
+    private void generateModule(Random random, int module) throws IOException
+    {
+        File moduleDirectory = moduleDirectory(module);
+        StringBuilder builder = new StringBuilder();
+
+        if (module == 0) {
+            builder.append("target-name: Synthetic\n");
+            builder.append("load-plugins:\n");
+            builder.append("  - metacompiler\n");
+            builder.append("  - file2c\n");
+        }
+
+        builder.append("source_directories:\n");
+        builder.append("  - src\n");
+        Files.createDirectories(new File(moduleDirectory, "src").toPath());
+
+        builder.append("define:\n");
+        builder.append(String.format("  - SYNTHETIC_MODULE%d=1\n", module));
+        for (int i = random.nextInt(3); i > 0; i--)
+            builder.append(String.format("  - SYNTHETIC_MODULE%d_OPTION%d=%d\n", module, i, random.nextInt(100)));
+
+        if (random.nextInt(4) == 0) {
+            byte[] data = new byte[256 + random.nextInt(4096)];
+            random.nextBytes(data);
+            Files.createDirectories(new File(moduleDirectory, "data").toPath());
+            Files.write(new File(moduleDirectory, "data/blob.bin").toPath(), data);
+
+            builder.append("file2c:\n");
+            builder.append("  input: data/blob.bin\n");
+            builder.append(String.format("  output: module%d/blob.h\n", module));
+            builder.append(String.format("  identifier: module%d_blob\n", module));
+            builder.append("  namespace: Synthetic\n");
+        }
+
+        if (random.nextInt(3) == 0) {
+            File header = new File(moduleDirectory, String.format("platform/qt5/Module%dQt5.h", module));
+            writeFile(header, String.format(
+                "#pragma once\n\nnamespace Synthetic {\n\nclass Module%dQt5 : public IUnknown\n{\npublic:\n" +
+                "    Z_SINGLETON_IMPLEMENTATION(Module%dQt5)\n};\n\n}\n", module, module));
+            headers.add(header);
+
+            builder.append("qt5:\n");
+            builder.append("  define:\n");
+            builder.append(String.format("    - SYNTHETIC_MODULE%d_QT5=1\n", module));
+            builder.append("  source_directories:\n");
+            builder.append("    - platform/qt5\n");
+        }
+
+        int firstChild = module * IMPORT_FANOUT + 1;
+        if (firstChild <= numberOfImports) {
+            builder.append("import:\n");
+            for (int i = firstChild; i < firstChild + IMPORT_FANOUT && i <= numberOfImports; i++)
+                builder.append(String.format("  - %smodule%d\n", (module == 0 ? "modules/" : "../"), i));
+        }
+
+        writeFile(new File(moduleDirectory, "project.yml"), builder.toString());
+    }
+
+    /**
+     * Generates contents of the header.
+     * @param random Random number generator.
+     * @param index Index of the header.
+     * @return Contents of the header.
+     */
+    private static String headerContents(Random random, int index)
+    {
+        StringBuilder builder = new StringBuilder();
+        builder.append("#pragma once\n");
+        builder.append("#include <vector>\n\n");
+
+        int namespaceDepth = random.nextInt(MAX_NAMESPACE_DEPTH + 1);
+        for (int i = 0; i < namespaceDepth; i++)
+            builder.append(String.format("namespace N%d { ", random.nextInt(16)));
+        if (namespaceDepth > 0)
+            builder.append("\n\n");
+
+        switch (random.nextInt(5))
+        {
+        case 0:
+            builder.append(String.format("template <class T> class Class%d\n", index));
+            builder.append("{\n");
+            builder.append("public:\n");
+            builder.append("    T value;\n");
+            builder.append("};\n");
+            break;
+
+        case 1:
+            builder.append(String.format("class Class%d : public IUnknown\n", index));
+            builder.append("{\n");
+            builder.append("public:\n");
+            builder.append(String.format("    Z_CUSTOM_IMPLEMENTATION(Class%d)\n", index));
+            builder.append("};\n");
+            break;
+
+        default:
+            builder.append(String.format("class IClass%d : public IUnknown\n", index));
+            builder.append("{\n");
+            builder.append("public:\n");
+            builder.append(String.format("    Z_INTERFACE(IClass%d)\n\n", index));
+            builder.append(String.format("    virtual int method%d(const std::vector<int>& values) = 0;\n", index));
+            builder.append("};\n\n");
+
+            builder.append("/** Implementation of the interface. */\n");
+            builder.append(String.format("class Class%d : public IClass%d%s\n",
+                index, index, (random.nextInt(4) == 0 ? ", public virtual Synthetic::Base" : "")));
+            builder.append("{\n");
+            builder.append("public:\n");
+            if (random.nextInt(3) == 0)
+                builder.append(String.format("    Z_SINGLETON_IMPLEMENTATION(Class%d)\n\n", index));
+            else
+                builder.append(String.format("    Z_IMPLEMENTATION(Class%d)\n\n", index));
+            builder.append(String.format("    int method%d(const std::vector<int>& values) override\n", index));
+            builder.append("    {\n");
+            builder.append("        int sum = 0;\n");
+            builder.append("        for (int value : values)\n");
+            builder.append("            sum += value * 2 + 1;  // \"Comment\" with { braces }\n");
+            builder.append("        return sum;\n");
+            builder.append("    }\n\n");
+            builder.append("private:\n");
+            builder.append("    struct Data { int x, y; char name[16]; };\n");
+            builder.append("    std::vector<Data> m_Data;\n");
+            builder.append("};\n");
+            break;
+        }
+
+        for (int i = random.nextInt(4); i > 0; i--) {
+            builder.append('\n');
+            builder.append(String.format("inline int helper%d_%d(int x)\n", index, i));
+            builder.append("{\n");
+            builder.append(String.format("    /* Helper function number %d. */\n", i));
+            builder.append(String.format("    return x * %d + 1;\n", random.nextInt(1000)));
+            builder.append("}\n");
+        }
+
+        if (namespaceDepth > 0) {
+            builder.append('\n');
+            for (int i = 0; i < namespaceDepth; i++)
+                builder.append('}');
+            builder.append('\n');
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Writes file to disk, creating parent directories as necessary.
+     * @param file File to write.
+     * @param contents Contents of the file.
+     */
+    private static void writeFile(File file, String contents) throws IOException
+    {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.write(file.toPath(), contents.getBytes(StringUtils.UTF8_CHARSET));
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.File;
+
+/** Command line tool that writes a synthetic project to disk. */
+public final class SyntheticProjectGenerator
+{
+    /** Prints the command line usage information.  */
+    public static void printUsage()
+    {
+                         // 12345678901234567890123456789012345678901234567890123456789012345678901234567890
+        System.out.println("");
+        System.out.println("Usage: java -cp buildsystem-tests.jar " + SyntheticProjectGenerator.class.getName() +
+            " [options]");
+        System.out.println("Where options are:");
+        System.out.println("  -h, --help               Display this help screen.");
+        System.out.println("  -o, --output <path>      Directory where project should be generated.");
+        System.out.println("  --seed <value>           Seed for the random number generator.");
+        System.out.println("  --headers <count>        Number of headers in the project.");
+        System.out.println("  --directories <count>    Number of source directories in each module.");
+        System.out.println("  --imports <count>        Number of imported modules.");
+        System.out.println("");
+    }
+
+    /**
+     * Retrieves value of the parameter of the command line argument.
+     * @param args Array of command line arguments.
+     * @param i Index of the parameter in the array.
+     * @return Value of the parameter.
+     */
+    private static String parameter(String[] args, int i)
+    {
+        if (i >= args.length)
+            throw new RuntimeException(String.format("Missing value after the command line argument \"%s\".", args[i - 1]));
+        return args[i];
+    }
+
+    /**
+     * Parses value of the numeric command line argument.
+     * @param args Array of command line arguments.
+     * @param i Index of the parameter in the array.
+     * @return Value of the parameter.
+     */
+    private static long longParameter(String[] args, int i)
+    {
+        String value = parameter(args, i);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new RuntimeException(String.format("Invalid value \"%s\" for the command line argument \"%s\".",
+                value, args[i - 1]), e);
+        }
+    }
+
+    /**
+     * Parses value of the non-negative integer command line argument.
+     * @param args Array of command line arguments.
+     * @param i Index of the parameter in the array.
+     * @return Value of the parameter.
+     */
+    private static int intParameter(String[] args, int i)
+    {
+        long value = longParameter(args, i);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new RuntimeException(String.format("Invalid value \"%s\" for the command line argument \"%s\".",
+                args[i], args[i - 1]));
+        }
+        return (int)value;
+    }
+
+    /**
+     * Application entry point.
+     * @param args Command line arguments.
+     */
+    public static void main(String[] args)
+    {
+        File outputDirectory = null;
+        long seed = 0;
+        int numberOfHeaders = 10000;
+        int numberOfDirectories = 20;
+        int numberOfImports = 200;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--help".equals(args[i]) || "-h".equals(args[i])) {
+                    printUsage();
+                    System.exit(1);
+                } else if ("--output".equals(args[i]) || "-o".equals(args[i])) {
+                    outputDirectory = new File(parameter(args, ++i));
+                } else if ("--seed".equals(args[i])) {
+                    seed = longParameter(args, ++i);
+                } else if ("--headers".equals(args[i])) {
+                    numberOfHeaders = intParameter(args, ++i);
+                } else if ("--directories".equals(args[i])) {
+                    numberOfDirectories = intParameter(args, ++i);
+                } else if ("--imports".equals(args[i])) {
+                    numberOfImports = intParameter(args, ++i);
+                } else {
+                    throw new RuntimeException(String.format("Invalid command line argument \"%s\".", args[i]));
+                }
+            }
+
+            if (outputDirectory == null)
+                throw new RuntimeException("Output directory was not specified on the command line.");
+            if (outputDirectory.exists()) {
+                throw new RuntimeException(String.format("Directory \"%s\" already exists.",
+                    outputDirectory.getAbsolutePath()));
+            }
+
+            SyntheticProject project = new SyntheticProject(outputDirectory, seed,
+                numberOfHeaders, numberOfDirectories, numberOfImports);
+            project.generate();
+
+            System.out.println(String.format("Generated %d headers in %d modules into \"%s\".",
+                project.headers().size(), project.numberOfImports + 1, outputDirectory.getAbsolutePath()));
+        } catch (Throwable t) {
+            System.err.println(StringUtils.getDetailedExceptionMessage(t));
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.benchmarks;
+
+import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.build.cmake.CMakeGeneratorUtilities;
+import com.zapolnov.buildsystem.build.qt5.Qt5CMakeGenerator;
+import com.zapolnov.buildsystem.project.ProjectReader;
+
+/** Measures generation of the CMakeLists.txt for an already built project. */
+public final class WriteCMakeListsBenchmark extends Benchmark
+{
+    /** Project builder. */
+    private ProjectBuilder projectBuilder;
+
+    /** Constructor. */
+    public WriteCMakeListsBenchmark()
+    {
+        super("writeCMakeLists");
+    }
+
+    @Override public void setUp(SyntheticProject fixture) throws Throwable
+    {
+        fixture.deleteBuildDirectory();
+        projectBuilder = new ProjectBuilder(ProjectReader.read(fixture.directory));
+        projectBuilder.setGenerator(new Qt5CMakeGenerator());
+        projectBuilder.database.setKeepOpen(true);
+        projectBuilder.run();
+    }
+
+    @Override public Object run() throws Throwable
+    {
+        CMakeGeneratorUtilities.writeCMakeLists(projectBuilder);
+        projectBuilder.database.commit();
+        return projectBuilder;
+    }
+
+    @Override public void tearDown() throws Throwable
+    {
+        projectBuilder.database.close();
+    }
+}
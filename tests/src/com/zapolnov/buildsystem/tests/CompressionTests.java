@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.tests;
+
+import com.zapolnov.buildsystem.plugins.file2c.BlockCompressor;
+import com.zapolnov.buildsystem.plugins.file2c.CompressionMethod;
+import com.zapolnov.buildsystem.plugins.file2c.Lz4Compressor;
+import com.zapolnov.buildsystem.utility.Database;
+import com.zapolnov.buildsystem.utility.StreamingFileBuilder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Inflater;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressionTests extends Assert
+{
+    @Test public void testLz4() throws Throwable
+    {
+        byte[][] inputs = {
+            new byte[0],
+            "abc".getBytes("UTF-8"),
+            "hello hello hello hello hello hello hello world".getBytes("UTF-8"),
+            testData(100000, 1),
+            testData(100000, 2),
+        };
+
+        for (byte[] input : inputs) {
+            byte[] output = new byte[Lz4Compressor.maxCompressedLength(input.length)];
+            int length = Lz4Compressor.compress(input, 0, input.length, output, 0);
+            assertArrayEquals(input, lz4Decompress(Arrays.copyOf(output, length), input.length));
+        }
+    }
+
+    @Test public void testBlockCompressor() throws Throwable
+    {
+        File temporaryDirectory = Files.createTempDirectory("CompressionTests").toFile();
+        temporaryDirectory.deleteOnExit();
+
+        byte[] data = testData(BlockCompressor.BLOCK_SIZE * 2 + 12345, 3);
+        File input = new File(temporaryDirectory, "input");
+        input.deleteOnExit();
+        Files.write(input.toPath(), data);
+
+        File output = new File(temporaryDirectory, "output");
+        output.deleteOnExit();
+
+        Database database = new Database(temporaryDirectory);
+        try {
+            for (CompressionMethod method : new CompressionMethod[]{ CompressionMethod.DEFLATE, CompressionMethod.LZ4 }) {
+                long[] offsets;
+                try (StreamingFileBuilder builder = new StreamingFileBuilder(output)) {
+                    offsets = new BlockCompressor(method, 2).compress(input,
+                        block -> builder.appendHexBytes(block, 0, block.length));
+                    builder.flushHexBytes();
+                    builder.commit(database);
+                }
+
+                ByteArrayOutputStream stream = new ByteArrayOutputStream();
+                Matcher matcher = Pattern.compile("0x([0-9a-f]{2}),").matcher(
+                    new String(Files.readAllBytes(output.toPath()), "UTF-8"));
+                while (matcher.find())
+                    stream.write(Integer.parseInt(matcher.group(1), 16));
+                byte[] compressed = stream.toByteArray();
+
+                assertEquals(4, offsets.length);
+                assertEquals(compressed.length, offsets[offsets.length - 1]);
+
+                for (int i = 0; i < offsets.length - 1; i++) {
+                    byte[] block = Arrays.copyOfRange(compressed, (int)offsets[i], (int)offsets[i + 1]);
+                    int from = i * BlockCompressor.BLOCK_SIZE;
+                    int length = Math.min(BlockCompressor.BLOCK_SIZE, data.length - from);
+                    byte[] expected = Arrays.copyOfRange(data, from, from + length);
+                    if (method == CompressionMethod.LZ4)
+                        assertArrayEquals(expected, lz4Decompress(block, length));
+                    else
+                        assertArrayEquals(expected, inflate(block, length));
+                }
+            }
+        } finally {
+            database.close();
+            new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
+        }
+    }
+
+    private static byte[] testData(int length, long seed)
+    {
+        Random random = new Random(seed);
+        byte[] data = new byte[length];
+        for (int i = 0; i < length; i++) {
+            if (i >= 64 && random.nextInt(4) != 0)
+                data[i] = data[i - 1 - random.nextInt(64)];
+            else
+                data[i] = (byte)random.nextInt(16);
+        }
+        return data;
+    }
+
+    private static byte[] inflate(byte[] data, int length) throws Throwable
+    {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data);
+            byte[] output = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished())
+                offset += inflater.inflate(output, offset, length - offset);
+            assertEquals(length, offset);
+            return output;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] lz4Decompress(byte[] data, int length)
+    {
+        byte[] output = new byte[length];
+        int input = 0, position = 0;
+        for (;;) {
+            int token = data[input++] & 0xFF;
+            int literalLength = token >>> 4;
+            if (literalLength == 15) {
+                int value;
+                do {
+                    value = data[input++] & 0xFF;
+                    literalLength += value;
+                } while (value == 255);
+            }
+            System.arraycopy(data, input, output, position, literalLength);
+            input += literalLength;
+            position += literalLength;
+            if (input == data.length)
+                break;
+
+            int distance = (data[input] & 0xFF) | ((data[input + 1] & 0xFF) << 8);
+            input += 2;
+            int matchLength = token & 15;
+            if (matchLength == 15) {
+                int value;
+                do {
+                    value = data[input++] & 0xFF;
+                    matchLength += value;
+                } while (value == 255);
+            }
+            matchLength += 4;
+            for (int i = 0; i < matchLength; i++, position++)
+                output[position] = output[position - distance];
+        }
+        assertEquals(length, position);
+        return output;
+    }
+}
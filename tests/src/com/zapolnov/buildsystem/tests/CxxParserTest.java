@@ -21,12 +21,27 @@
  */
 package com.zapolnov.buildsystem.tests;
 
+import com.zapolnov.buildsystem.plugins.metacompiler.MarkerScanner;
+import com.zapolnov.buildsystem.plugins.metacompiler.MetaFragments;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstReader;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxAstWriter;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.CxxParser;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClass;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxClassType;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxFullyQualifiedName;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxMemberProtection;
+import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxNamespace;
 import com.zapolnov.buildsystem.plugins.metacompiler.parser.ast.CxxTranslationUnit;
+import com.zapolnov.buildsystem.utility.StringUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.StringReader;
+import java.nio.ByteBuffer;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -69,7 +84,7 @@ public class CxxParserTest extends Assert
 
         unit = parse("class Test {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertTrue(((CxxClass) unit.globalScope.symbols().get(0)).parentClasses().isEmpty());
     }
 
@@ -79,89 +94,89 @@ public class CxxParserTest extends Assert
 
         unit = parse("class Test : Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertNull(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : public Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PUBLIC, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : protected Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PROTECTED, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : private Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PRIVATE, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : virtual Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertNull(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : public virtual Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PUBLIC, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : protected virtual Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PROTECTED, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : private virtual Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PRIVATE, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : virtual public Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PUBLIC, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : virtual protected Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PROTECTED, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
 
         unit = parse("class Test : virtual private Parent {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(1, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertEquals(CxxMemberProtection.PRIVATE, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
     }
@@ -172,30 +187,172 @@ public class CxxParserTest extends Assert
 
         unit = parse("class Test : Parent1, Parent2 {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(2, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent1", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent1", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertNull(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
-        assertEquals("Parent2", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).name.text);
+        assertEquals("Parent2", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).name.text());
         assertNull(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).virtual);
 
         unit = parse("class Test : Parent1, virtual public Parent2, private Parent3, protected virtual Parent4 {};");
         assertEquals(1, unit.globalScope.symbols().size());
-        assertEquals("Test", unit.globalScope.symbols().get(0).name.text);
+        assertEquals("Test", unit.globalScope.symbols().get(0).name.text());
         assertEquals(4, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().size());
-        assertEquals("Parent1", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text);
+        assertEquals("Parent1", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).name.text());
         assertNull(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(0).virtual);
-        assertEquals("Parent2", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).name.text);
+        assertEquals("Parent2", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).name.text());
         assertEquals(CxxMemberProtection.PUBLIC, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(1).virtual);
-        assertEquals("Parent3", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(2).name.text);
+        assertEquals("Parent3", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(2).name.text());
         assertEquals(CxxMemberProtection.PRIVATE, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(2).protectionLevel);
         assertFalse(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(2).virtual);
-        assertEquals("Parent4", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(3).name.text);
+        assertEquals("Parent4", ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(3).name.text());
         assertEquals(CxxMemberProtection.PROTECTED, ((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(3).protectionLevel);
         assertTrue(((CxxClass)unit.globalScope.symbols().get(0)).parentClasses().get(3).virtual);
     }
+
+    @Test public void testBinarySerialization() throws Exception
+    {
+        CxxTranslationUnit unit = parse(
+            "namespace A { namespace { class Test : public virtual B::Parent1, ::Parent2 {\n" +
+            "    Z_IMPLEMENTATION(Test)\n" +
+            "    struct Inner {};\n" +
+            "}; } }\n");
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (DataOutputStream stream = new DataOutputStream(byteStream)) {
+            CxxAstWriter.write(stream, unit);
+        }
+        try (DataInputStream stream = new DataInputStream(new ByteArrayInputStream(byteStream.toByteArray()))) {
+            unit = CxxAstReader.read(stream);
+        }
+
+        assertEquals(1, unit.globalScope.symbols().size());
+        CxxNamespace namespace = (CxxNamespace)unit.globalScope.symbols().get(0);
+        assertEquals("A", namespace.name.text());
+        assertEquals(1, namespace.name.firstToken.line);
+        assertEquals(11, namespace.name.firstToken.column);
+
+        assertEquals(1, namespace.scope.symbols().size());
+        namespace = (CxxNamespace)namespace.scope.symbols().get(0);
+        assertNull(namespace.name);
+
+        assertEquals(1, namespace.scope.symbols().size());
+        CxxClass cxxClass = (CxxClass)namespace.scope.symbols().get(0);
+        assertEquals("Test", cxxClass.name.text());
+        assertEquals(CxxClassType.IMPLEMENTATION, cxxClass.type);
+        assertFalse(cxxClass.isTemplateSpecialization);
+        assertSame(unit, cxxClass.translationUnit);
+        assertEquals(2, cxxClass.parentClasses().size());
+        assertEquals("B::Parent1", cxxClass.parentClasses().get(0).name.text());
+        assertEquals(CxxMemberProtection.PUBLIC, cxxClass.parentClasses().get(0).protectionLevel);
+        assertTrue(cxxClass.parentClasses().get(0).virtual);
+        assertEquals("::Parent2", cxxClass.parentClasses().get(1).name.text());
+        assertEquals("::", cxxClass.parentClasses().get(1).name.firstToken.text);
+        assertNull(cxxClass.parentClasses().get(1).protectionLevel);
+        assertFalse(cxxClass.parentClasses().get(1).virtual);
+
+        assertEquals(1, cxxClass.scope.symbols().size());
+        assertEquals("Inner", cxxClass.scope.symbols().get(0).name.text());
+        assertEquals(CxxClassType.DEFAULT, ((CxxClass)cxxClass.scope.symbols().get(0)).type);
+    }
+
+    @Test public void testFullyQualifiedName() throws Exception
+    {
+        CxxFullyQualifiedName root = new CxxFullyQualifiedName(null, "");
+        CxxFullyQualifiedName name = new CxxFullyQualifiedName(null, "A::B");
+        assertSame(name, root.mergeWith(name));
+        assertEquals("B", name.lastComponent());
+        assertArrayEquals(new String[]{ "A", "B" }, name.components());
+
+        CxxFullyQualifiedName merged = name.mergeWith(new CxxFullyQualifiedName(null, "C::D"));
+        assertEquals("A::B::C::D", merged.text());
+        assertEquals("D", merged.lastComponent());
+        assertFalse(merged.isGlobal());
+
+        CxxFullyQualifiedName global = new CxxFullyQualifiedName(null, "::E");
+        assertSame(global, merged.mergeWith(global));
+        assertTrue(global.isGlobal());
+        assertEquals("E", global.lastComponent());
+
+        CxxTranslationUnit unit = parse("namespace A { class Test : public ::X::Y::Z {}; }");
+        CxxClass cxxClass = (CxxClass)((CxxNamespace)unit.globalScope.symbols().get(0)).scope.symbols().get(0);
+        assertEquals("::X::Y::Z", cxxClass.parentClasses().get(0).name.text());
+        assertEquals("Z", cxxClass.parentClasses().get(0).name.lastComponent());
+        assertSame(name.components()[0], unit.globalScope.symbols().get(0).name.lastComponent());
+    }
+
+    @Test public void testMetaFragments() throws Exception
+    {
+        MetaFragments fragments = new MetaFragments(null);
+        fragments.generate(parse(
+            "namespace A { class Test : public IUnknown { Z_SINGLETON_IMPLEMENTATION(Test) }; }\n" +
+            "class Custom : public B::Parent { Z_CUSTOM_IMPLEMENTATION(Custom) };\n"));
+
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+        try (ObjectOutputStream stream = new ObjectOutputStream(byteStream)) {
+            fragments.save(stream);
+        }
+        try (ObjectInputStream stream = new ObjectInputStream(new ByteArrayInputStream(byteStream.toByteArray()))) {
+            fragments = new MetaFragments(null);
+            fragments.load(stream);
+        }
+
+        assertNotNull(fragments.includePath());
+        assertEquals(0, fragments.interfaces().size());
+        assertEquals(1, fragments.singletons().size());
+        assertEquals("A::Test", fragments.singletons().get(0).className);
+        assertEquals("g_tid_A__Test", fragments.singletons().get(0).typeID);
+        assertTrue(fragments.singletons().get(0).code.contains("void* A::Test::queryInterface(Engine::TypeID typeID)"));
+        assertEquals(1, fragments.customInterfaces().size());
+        assertTrue(fragments.customInterfaces().get(0).code.contains("    B::Parent::queryAllInterfaces(out);\n"));
+        assertTrue(fragments.customInterfaces().get(0).code.contains("return Custom::_queryCustomInterface(typeID);"));
+
+        fragments.generate(parse("class Plain {};"));
+        assertNull(fragments.includePath());
+        assertEquals(0, fragments.singletons().size());
+    }
+
+    @Test public void testMarkerScanner() throws Exception
+    {
+        String[] withMarkers = {
+            "Z_INTERFACE", "class A { Z_IMPLEMENTATION(A) };", "ZZZZZZZZ Z_SINGLETON_IMPLEMENTATION",
+            "0123456Z_CUSTOM_IMPLEMENTATION(X)", "// Z_INTERFACE in a comment",
+        };
+        String[] withoutMarkers = {
+            "", "Z", "Z_INTERFAC", "class A { Z_IMPL(A) };", "ZZZZZZZZZZZZZZZZZ_INTERFAC", "z_interface",
+        };
+
+        for (String text : withMarkers)
+            assertTrue(text, MarkerScanner.containsMarkers(ByteBuffer.wrap(text.getBytes(StringUtils.UTF8_CHARSET))));
+        for (String text : withoutMarkers)
+            assertFalse(text, MarkerScanner.containsMarkers(ByteBuffer.wrap(text.getBytes(StringUtils.UTF8_CHARSET))));
+    }
+
+    @Test public void testByteBufferSource() throws Exception
+    {
+        String source = "/* \u00e4\u00e4 \ud83d\ude00 */ namespace N { class Test : public Base { Z_INTERFACE(Test) }; }";
+        ByteBuffer buffer = ByteBuffer.wrap(source.getBytes(StringUtils.UTF8_CHARSET));
+        CxxTranslationUnit unit = new CxxParser(buffer, new File("test.h")).parseTranslationUnit();
+
+        CxxNamespace namespace = (CxxNamespace)unit.globalScope.symbols().get(0);
+        assertEquals("N", namespace.name.text());
+        assertEquals(source.indexOf('N') + 1, namespace.name.firstToken.column);
+        CxxClass cxxClass = (CxxClass)namespace.scope.symbols().get(0);
+        assertEquals("Test", cxxClass.name.text());
+        assertEquals(CxxClassType.INTERFACE, cxxClass.type);
+        assertEquals("Base", cxxClass.parentClasses().get(0).name.text());
+
+        try {
+            new CxxParser(ByteBuffer.wrap("// \u00e4\n\u00e4\u00e4 class {".getBytes(StringUtils.UTF8_CHARSET)),
+                new File("test.h")).parseTranslationUnit();
+            fail();
+        } catch (CxxParser.Error error) {
+            assertEquals(2, error.token.line);
+            assertEquals(10, error.token.column);
+        }
+    }
 }
@@ -22,6 +22,7 @@
 package com.zapolnov.buildsystem.tests;
 
 import com.zapolnov.buildsystem.utility.Database;
+import com.zapolnov.buildsystem.utility.StringUtils;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -78,4 +79,80 @@ public class DatabaseTests extends Assert
             new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
         }
     }
+
+    @Test public void testPendingWrites() throws IOException
+    {
+        Path temporaryDirectoryPath = Files.createTempDirectory("DatabaseTest");
+        File temporaryDirectory = temporaryDirectoryPath.toFile();
+        temporaryDirectory.deleteOnExit();
+
+        File file = new File(temporaryDirectory, "TestOutputFile");
+        byte[] data = new byte[]{ 1, 2, 3 };
+
+        Database database = new Database(temporaryDirectory);
+        try {
+            database.setKeepOpen(true);
+            database.saveFileParseResults(file, DatabaseTests.class, data);
+            database.setOption("TEST_OPTION", "1");
+            database.setOption("TEST_OPTION", "2");
+            assertArrayEquals(data, database.loadFileParseResults(file, DatabaseTests.class));
+            assertEquals("2", database.getOption("TEST_OPTION"));
+
+            database.rollback();
+            assertNull(database.loadFileParseResults(file, DatabaseTests.class));
+            assertNull(database.getOption("TEST_OPTION"));
+
+            database.saveFileParseResults(file, DatabaseTests.class, data);
+            database.setOption("TEST_OPTION", "3");
+            database.commit();
+        } finally {
+            database.close();
+        }
+
+        database = new Database(temporaryDirectory);
+        try {
+            assertArrayEquals(data, database.loadFileParseResults(file, DatabaseTests.class));
+            assertEquals("3", database.getOption("TEST_OPTION"));
+        } finally {
+            database.close();
+            new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
+        }
+    }
+
+    @Test public void testInputFileChange() throws IOException
+    {
+        Path temporaryDirectoryPath = Files.createTempDirectory("DatabaseTest");
+        File temporaryDirectory = temporaryDirectoryPath.toFile();
+        temporaryDirectory.deleteOnExit();
+
+        File file = new File(temporaryDirectory, "TestInputFile");
+        file.deleteOnExit();
+
+        byte[] extraData = new byte[]{ 1, 2, 3 };
+
+        Database database = new Database(temporaryDirectory);
+        try {
+            Files.write(file.toPath(), "Hello, world!".getBytes(StringUtils.UTF8_CHARSET));
+            assertTrue(database.didInputFileChange(file, extraData));
+            assertFalse(database.didInputFileChange(file, extraData));
+
+            assertTrue(file.setLastModified(file.lastModified() - 10000));
+            assertFalse(database.didInputFileChange(file, extraData));
+
+            long lastModified = file.lastModified();
+            Files.write(file.toPath(), "Hello, World!".getBytes(StringUtils.UTF8_CHARSET));
+            assertTrue(file.setLastModified(lastModified));
+            assertFalse(database.didInputFileChange(file, extraData));
+
+            assertTrue(file.setLastModified(lastModified - 10000));
+            assertTrue(database.didInputFileChange(file, extraData));
+            assertFalse(database.didInputFileChange(file, extraData));
+
+            assertTrue(database.didInputFileChange(file, new byte[]{ 1, 2 }));
+            assertFalse(database.didInputFileChange(file, new byte[]{ 1, 2 }));
+        } finally {
+            database.close();
+            new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
+        }
+    }
 }
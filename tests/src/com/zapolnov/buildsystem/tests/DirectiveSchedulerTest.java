@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.tests;
+
+import com.zapolnov.buildsystem.build.ProjectBuilder;
+import com.zapolnov.buildsystem.project.DirectiveScheduler;
+import com.zapolnov.buildsystem.project.ProjectDirective;
+import com.zapolnov.buildsystem.project.ProjectScope;
+import com.zapolnov.buildsystem.project.ProjectVisitor;
+import com.zapolnov.buildsystem.project.directives.ImportDirective;
+import com.zapolnov.buildsystem.utility.Statistics;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DirectiveSchedulerTest extends Assert
+{
+    private static final File DIRECTORY = new File(System.getProperty("java.io.tmpdir"), "DirectiveSchedulerTest");
+
+    private static class TestDirective extends ProjectDirective
+    {
+        final String name;
+        final List<File> inputs;
+        final List<File> outputs;
+        final List<String> log;
+        final CyclicBarrier barrier;
+        long delay;
+
+        TestDirective(String name, String input, String output, List<String> log, CyclicBarrier barrier)
+        {
+            this.name = name;
+            this.inputs = (input != null ? Collections.singletonList(new File(DIRECTORY, input))
+                : Collections.emptyList());
+            this.outputs = (output != null ? Collections.singletonList(new File(DIRECTORY, output))
+                : Collections.emptyList());
+            this.log = log;
+            this.barrier = barrier;
+        }
+
+        @Override public List<File> inputFiles(ProjectBuilder projectBuilder) { return inputs; }
+        @Override public List<File> outputFiles(ProjectBuilder projectBuilder) { return outputs; }
+
+        @Override public void build(ProjectBuilder projectBuilder) throws Throwable
+        {
+            if (barrier != null)
+                barrier.await(10, TimeUnit.SECONDS);
+            Thread.sleep(delay);
+            synchronized (log) {
+                log.add(name);
+            }
+        }
+
+        @Override public void visit(ProjectVisitor visitor) {}
+    }
+
+    @Test public void testIndependentDirectivesRunConcurrently() throws Throwable
+    {
+        List<String> log = new ArrayList<>();
+        CyclicBarrier barrier = new CyclicBarrier(2);
+
+        ProjectScope scope = new ProjectScope(DIRECTORY, null, false);
+        ProjectScope module = new ProjectScope(new File(DIRECTORY, "module"), scope, false);
+        scope.addDirective(new TestDirective("a", "a.txt", "a.h", log, barrier));
+        scope.addDirective(new ImportDirective(module));
+        module.addDirective(new TestDirective("b", "b.txt", "b.h", log, barrier));
+
+        // Directives wait for each other, so the test would time out if they were executed sequentially
+        new DirectiveScheduler(scope, 4, new Statistics()).build(null);
+        assertEquals(2, log.size());
+    }
+
+    @Test public void testDependentDirectivesRunInOrder() throws Throwable
+    {
+        for (int iteration = 0; iteration < 10; iteration++) {
+            List<String> log = new ArrayList<>();
+            List<TestDirective> directives = new ArrayList<>();
+            directives.add(new TestDirective("write", "input.txt", "out/file.h", log, null));
+            directives.add(new TestDirective("independent", "other.txt", "other.h", log, null));
+            directives.add(new TestDirective("read", "out", "result.h", log, null));
+            directives.add(new TestDirective("overwrite", null, "out/file.h", log, null));
+
+            ProjectScope scope = new ProjectScope(DIRECTORY, null, false);
+            for (TestDirective directive : directives) {
+                directive.delay = (directive.name.equals("independent") ? 0 : 5);
+                scope.addDirective(directive);
+            }
+
+            DirectiveScheduler scheduler = new DirectiveScheduler(scope, 4, new Statistics());
+            scheduler.build(null);
+
+            assertEquals(4, log.size());
+            assertTrue(log.indexOf("write") < log.indexOf("read"));
+            assertTrue(log.indexOf("write") < log.indexOf("overwrite"));
+            assertTrue(log.indexOf("read") < log.indexOf("overwrite"));
+            assertEquals(3, scheduler.criticalPath().size());
+            assertEquals(".: TestDirective.build", scheduler.criticalPath().get(0));
+        }
+    }
+
+    @Test public void testFailure() throws Throwable
+    {
+        ProjectScope scope = new ProjectScope(DIRECTORY, null, false);
+        List<String> log = new ArrayList<>();
+        scope.addDirective(new ProjectDirective() {
+            @Override public void build(ProjectBuilder projectBuilder) { throw new IllegalStateException("failed"); }
+            @Override public List<File> outputFiles(ProjectBuilder projectBuilder) {
+                return Collections.singletonList(new File(DIRECTORY, "failed.h"));
+            }
+            @Override public void visit(ProjectVisitor visitor) {}
+        });
+        scope.addDirective(new TestDirective("dependent", "failed.h", null, log, null));
+        scope.addDirective(new TestDirective("independent", null, null, log, null));
+
+        try {
+            new DirectiveScheduler(scope, 4, new Statistics()).build(null);
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("failed", e.getMessage());
+        }
+        assertFalse(log.contains("dependent"));
+    }
+}
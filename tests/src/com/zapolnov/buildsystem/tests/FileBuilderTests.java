@@ -23,6 +23,8 @@ package com.zapolnov.buildsystem.tests;
 
 import com.zapolnov.buildsystem.utility.Database;
 import com.zapolnov.buildsystem.utility.FileBuilder;
+import com.zapolnov.buildsystem.utility.Statistics;
+import com.zapolnov.buildsystem.utility.StreamingFileBuilder;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -40,7 +42,8 @@ public class FileBuilderTests extends Assert
         File temporaryDirectory = temporaryDirectoryPath.toFile();
         temporaryDirectory.deleteOnExit();
 
-        Database database = new Database(temporaryDirectory);
+        Statistics statistics = new Statistics();
+        Database database = new Database(temporaryDirectory, statistics);
         try {
             File file = new File(temporaryDirectory, "TestFileBuilderOutput");
             assertTrue(!file.exists());
@@ -61,6 +64,57 @@ public class FileBuilderTests extends Assert
             written = generate(database, new FileBuilder(file), "2");
             assertFalse(written);
             validate(file, "2");
+
+            assertEquals(2, statistics.counter(Statistics.OUTPUT_FILES_WRITTEN));
+            assertEquals(2, statistics.counter(Statistics.OUTPUT_FILES_KEPT));
+            assertEquals(2 * file.length(), statistics.counter(Statistics.BYTES_WRITTEN));
+        } finally {
+            database.close();
+            new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
+        }
+    }
+
+    @Test public void testStreamingFileBuilder() throws NoSuchAlgorithmException, IOException
+    {
+        Path temporaryDirectoryPath = Files.createTempDirectory("FileBuilderTest");
+        File temporaryDirectory = temporaryDirectoryPath.toFile();
+        temporaryDirectory.deleteOnExit();
+
+        File input = new File(temporaryDirectory, "TestStreamingFileBuilderInput");
+        input.deleteOnExit();
+        byte[] data = new byte[40];
+        for (int i = 0; i < data.length; i++)
+            data[i] = (byte)(i * 7);
+        Files.write(input.toPath(), data);
+
+        StringBuilder expectedContents = new StringBuilder("{");
+        for (int i = 0; i < data.length; i++)
+            expectedContents.append(String.format("%s0x%02x,", (i % 32 == 0 ? "\n    " : ""), data[i] & 0xFF));
+        expectedContents.append("\n}");
+
+        File file = new File(temporaryDirectory, "TestStreamingFileBuilderOutput");
+        file.deleteOnExit();
+
+        Database database = new Database(temporaryDirectory);
+        try {
+            for (int i = 0; i < 2; i++) {
+                try (StreamingFileBuilder builder = new StreamingFileBuilder(file)) {
+                    builder.append("{");
+                    assertEquals(data.length, builder.appendHexArrayFromFile(input));
+                    builder.append("\n}");
+                    assertEquals(i == 0, builder.commit(database));
+                }
+                assertEquals(expectedContents.toString(), new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+            }
+
+            try (StreamingFileBuilder builder = new StreamingFileBuilder(file)) {
+                builder.append("Discarded");
+            }
+
+            String[] files = temporaryDirectory.list();
+            assertNotNull(files);
+            for (String name : files)
+                assertFalse(name.endsWith(".tmp"));
         } finally {
             database.close();
             new File(temporaryDirectory, Database.FILE_NAME).deleteOnExit();
@@ -21,8 +21,19 @@
  */
 package com.zapolnov.buildsystem.tests;
 
+import com.zapolnov.buildsystem.utility.Database;
+import com.zapolnov.buildsystem.utility.DirectorySnapshot;
+import com.zapolnov.buildsystem.utility.DirectoryWalker;
 import com.zapolnov.buildsystem.utility.FileUtils;
+import com.zapolnov.buildsystem.utility.RelativePathResolver;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.PathMatcher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -69,5 +80,221 @@ public class FileUtilsTest extends Assert
         assertFalse(FileUtils.isCSourceFile(new File("test.inl")));
         assertFalse(FileUtils.isCxxSourceFile(new File("test.inl")));
         assertTrue(FileUtils.isHeaderFile(new File("test.inl")));
+
+        assertFalse(FileUtils.isAssemblerSourceFile(new File("test")));
+        assertFalse(FileUtils.isAssemblerSourceFile(new File("test.cpp")));
+        assertTrue(FileUtils.isAssemblerSourceFile(new File("test.s")));
+        assertTrue(FileUtils.isAssemblerSourceFile(new File("test.S")));
+        assertFalse(FileUtils.isCxxSourceFile(new File("test.S")));
+        assertFalse(FileUtils.isHeaderFile(new File("test.S")));
+    }
+
+    @Test public void testCanonicalPathCache() throws IOException
+    {
+        File temporaryDirectory = Files.createTempDirectory("FileUtilsTest").toFile();
+        File first = new File(temporaryDirectory, "first");
+        File second = new File(temporaryDirectory, "second");
+        File link = new File(temporaryDirectory, "link");
+        try {
+            assertTrue(first.mkdir());
+            assertTrue(second.mkdir());
+            try {
+                Files.createSymbolicLink(link.toPath(), first.toPath());
+            } catch (UnsupportedOperationException | IOException e) {
+                return;
+            }
+
+            File file = new File(link, "file");
+            File expected = new File(first.getCanonicalFile(), "file");
+            assertEquals(expected, FileUtils.getCanonicalFile(file));
+            assertEquals(expected.getPath(), FileUtils.getCanonicalPath(file));
+
+            assertTrue(link.delete());
+            Files.createSymbolicLink(link.toPath(), second.toPath());
+            assertEquals(expected, FileUtils.getCanonicalFile(file));
+
+            FileUtils.invalidateCanonicalPath(link);
+            assertEquals(new File(second.getCanonicalFile(), "file"), FileUtils.getCanonicalFile(file));
+
+            assertTrue(link.delete());
+            Files.createSymbolicLink(link.toPath(), first.toPath());
+            FileUtils.invalidateCanonicalPathCache();
+            assertEquals(expected, FileUtils.getCanonicalFile(file));
+        } finally {
+            link.delete();
+            first.delete();
+            second.delete();
+            temporaryDirectory.delete();
+        }
+    }
+
+    @Test public void testRelativePathResolver() throws IOException
+    {
+        File base = new File("/a/b/c");
+        String[] paths = {
+            "/a/b/c", "/a/b/c/d", "/a/b/c/d/e.cpp", "/a/b/c/d/f.cpp", "/a/b", "/a/b/x", "/a/b/x/y.h",
+            "/a", "/a/z/w.h", "/q/r/s.cpp", "/a/b/cc", "/a/b/cc/d.h", "/",
+        };
+
+        RelativePathResolver resolver = new RelativePathResolver(base);
+        for (String path : paths) {
+            File file = new File(path);
+            assertEquals(path, FileUtils.getRelativePath(base, file), resolver.resolve(file));
+        }
+
+        assertEquals("d/e.cpp", resolver.resolve(new File("/a/b/c/d/e.cpp")));
+        assertEquals("../../z/w.h", resolver.resolve(new File("/a/z/w.h")));
+        assertEquals("", resolver.resolve(base));
+    }
+
+    @Test public void testDirectoryWalker() throws IOException
+    {
+        File temporaryDirectory = Files.createTempDirectory("FileUtilsTest").toFile();
+        List<File> created = new ArrayList<>();
+        try {
+            String[] names = { "b/z.cpp", "b/a.h", "a.cpp", "c/d/e.h", "c/d/a.h", "c/b.cpp", "ba.h" };
+            for (String name : names) {
+                File file = new File(temporaryDirectory, name);
+                file.getParentFile().mkdirs();
+                assertTrue(file.createNewFile());
+                created.add(file);
+            }
+
+            File root = temporaryDirectory.getCanonicalFile();
+            List<File> expected = new ArrayList<>();
+            for (String name : new String[]{ "a.cpp", "b/a.h", "b/z.cpp", "ba.h", "c/b.cpp", "c/d/a.h", "c/d/e.h" })
+                expected.add(new File(root, name));
+
+            assertEquals(expected, new DirectoryWalker(null, 1).walk(temporaryDirectory));
+            assertEquals(expected, new DirectoryWalker(null, 4).walk(temporaryDirectory));
+
+            List<File> both = new ArrayList<>(expected.subList(4, 7));
+            both.addAll(expected.subList(1, 3));
+            assertEquals(both, new DirectoryWalker(null, 4).walk(
+                Arrays.asList(new File(temporaryDirectory, "c"), new File(temporaryDirectory, "b"))));
+
+            List<PathMatcher> excludes = Arrays.asList(DirectoryWalker.pathMatcher("c"),
+                DirectoryWalker.pathMatcher("regex:.*\\.cpp"), DirectoryWalker.pathMatcher("glob:b/a.*"));
+            assertEquals(Collections.singletonList(expected.get(3)),
+                new DirectoryWalker(null, 4, excludes).walk(temporaryDirectory));
+            assertEquals(Collections.singletonList(expected.get(3)),
+                new DirectoryWalker(null, 1, excludes).walk(temporaryDirectory));
+        } finally {
+            for (File file : created)
+                file.delete();
+            new File(temporaryDirectory, "c/d").delete();
+            new File(temporaryDirectory, "c").delete();
+            new File(temporaryDirectory, "b").delete();
+            temporaryDirectory.delete();
+        }
+    }
+
+    @Test public void testDirectoryWalkerSymbolicLinks() throws IOException
+    {
+        File temporaryDirectory = Files.createTempDirectory("FileUtilsTest").toFile();
+        File implementation = new File(temporaryDirectory, "impl.cpp");
+        File test = new File(temporaryDirectory, "x_test.cpp");
+        File testLink = new File(temporaryDirectory, "a_test.cpp");
+        File link = new File(temporaryDirectory, "z.cpp");
+        try {
+            assertTrue(implementation.createNewFile());
+            assertTrue(test.createNewFile());
+            try {
+                Files.createSymbolicLink(testLink.toPath(), implementation.toPath());
+                Files.createSymbolicLink(link.toPath(), test.toPath());
+            } catch (UnsupportedOperationException | IOException e) {
+                return;
+            }
+
+            // Links are excluded and sorted by their own names rather than by names of their targets
+            File root = temporaryDirectory.getCanonicalFile();
+            List<PathMatcher> excludes = Collections.singletonList(DirectoryWalker.pathMatcher("*_test.cpp"));
+            List<File> expected = Arrays.asList(new File(root, "impl.cpp"), new File(root, "x_test.cpp"));
+            assertEquals(expected, new DirectoryWalker(null, 1, excludes).walk(temporaryDirectory));
+            assertEquals(expected, new DirectoryWalker(null, 4, excludes).walk(temporaryDirectory));
+        } finally {
+            link.delete();
+            testLink.delete();
+            test.delete();
+            implementation.delete();
+            temporaryDirectory.delete();
+        }
+    }
+
+    @Test public void testDirectoryWalkerSnapshots() throws IOException
+    {
+        File temporaryDirectory = Files.createTempDirectory("FileUtilsTest").toFile();
+        File sources = new File(temporaryDirectory, "sources");
+        File a = new File(sources, "a.cpp");
+        File b = new File(sources, "b.cpp");
+        File c = new File(sources, "c.cpp");
+        Database database = new Database(temporaryDirectory);
+        try {
+            assertTrue(sources.mkdir());
+            assertTrue(a.createNewFile());
+            assertTrue(b.createNewFile());
+            assertTrue(sources.setLastModified(System.currentTimeMillis() - 60000));
+
+            File root = sources.getCanonicalFile();
+            DirectoryWalker walker = new DirectoryWalker(database, 1);
+            assertEquals(Arrays.asList(new File(root, "a.cpp"), new File(root, "b.cpp")), walker.walk(sources));
+            DirectorySnapshot snapshot = database.loadDirectorySnapshot(sources.getAbsoluteFile());
+            assertNotNull(snapshot);
+            assertEquals(sources.lastModified(), snapshot.lastModified);
+
+            // Stored snapshot is used as long as modification time of the directory does not change
+            File phantom = new File(root, "phantom.cpp");
+            database.saveDirectorySnapshot(sources.getAbsoluteFile(), new DirectorySnapshot(sources.lastModified(),
+                Collections.singletonList(new DirectorySnapshot.Entry("phantom.cpp", phantom.getPath(), false))));
+            assertEquals(Collections.singletonList(phantom), walker.walk(sources));
+
+            assertTrue(c.createNewFile());
+            assertTrue(b.delete());
+            assertTrue(sources.setLastModified(System.currentTimeMillis() - 30000));
+            assertEquals(Arrays.asList(new File(root, "a.cpp"), new File(root, "c.cpp")), walker.walk(sources));
+            snapshot = database.loadDirectorySnapshot(sources.getAbsoluteFile());
+            assertEquals(sources.lastModified(), snapshot.lastModified);
+        } finally {
+            database.close();
+            a.delete();
+            b.delete();
+            c.delete();
+            sources.delete();
+            for (File file : temporaryDirectory.listFiles())
+                file.delete();
+            temporaryDirectory.delete();
+        }
+    }
+
+    @Test public void testDirectoryWalkerRecentlyModifiedDirectory() throws IOException
+    {
+        File temporaryDirectory = Files.createTempDirectory("FileUtilsTest").toFile();
+        File sources = new File(temporaryDirectory, "sources");
+        File a = new File(sources, "a.cpp");
+        File b = new File(sources, "b.cpp");
+        Database database = new Database(temporaryDirectory);
+        try {
+            assertTrue(sources.mkdir());
+            assertTrue(a.createNewFile());
+
+            File root = sources.getCanonicalFile();
+            DirectoryWalker walker = new DirectoryWalker(database, 1);
+            assertEquals(Collections.singletonList(new File(root, "a.cpp")), walker.walk(sources));
+            assertNull(database.loadDirectorySnapshot(sources.getAbsoluteFile()));
+
+            // Modification within the resolution of the file system timestamps does not change modification time
+            long lastModified = sources.lastModified();
+            assertTrue(b.createNewFile());
+            assertTrue(sources.setLastModified(lastModified));
+            assertEquals(Arrays.asList(new File(root, "a.cpp"), new File(root, "b.cpp")), walker.walk(sources));
+        } finally {
+            database.close();
+            a.delete();
+            b.delete();
+            sources.delete();
+            for (File file : temporaryDirectory.listFiles())
+                file.delete();
+            temporaryDirectory.delete();
+        }
     }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 Nikolay Zapolnov (zapolnov@gmail.com).
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.zapolnov.buildsystem.tests;
+
+import com.zapolnov.buildsystem.utility.Statistics;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StatisticsTests extends Assert
+{
+    @Test public void testTimings() throws Throwable
+    {
+        Statistics statistics = new Statistics();
+        statistics.measure(Statistics.CATEGORY_PHASE, "Phase", () -> {
+            statistics.measure(Statistics.CATEGORY_DIRECTIVE, "Directive", () -> {});
+            statistics.measure(Statistics.CATEGORY_DIRECTIVE, "Directive", () -> {});
+        });
+
+        try {
+            statistics.measure(Statistics.CATEGORY_PLUGIN, "Plugin", () -> { throw new RuntimeException(); });
+            fail();
+        } catch (RuntimeException ignored) {
+        }
+
+        List<Statistics.Timing> timings = statistics.timings();
+        assertEquals(3, timings.size());
+        assertEquals("Directive", timings.get(0).name);
+        assertEquals(2, timings.get(0).count);
+        assertEquals(Statistics.CATEGORY_PHASE, timings.get(1).category);
+        assertEquals(1, timings.get(1).count);
+        assertTrue(timings.get(1).wallTime >= timings.get(0).wallTime);
+        assertEquals("Plugin", timings.get(2).name);
+        assertEquals(1, statistics.timings(Statistics.CATEGORY_PLUGIN).size());
+
+        statistics.reset();
+        assertTrue(statistics.timings().isEmpty());
+    }
+
+    @Test public void testReport()
+    {
+        Statistics statistics = new Statistics();
+        statistics.increment(Statistics.PARSE_CACHE_HITS);
+        statistics.add(Statistics.PARSE_CACHE_HITS, 2);
+        statistics.record(Statistics.CATEGORY_DIRECTIVE, "a \"quoted\"\\name", 1, 2, 3);
+
+        assertEquals(3, statistics.counter(Statistics.PARSE_CACHE_HITS));
+        assertEquals(0, statistics.counter(Statistics.PARSE_CACHE_MISSES));
+        assertEquals(
+            "{\n" +
+            "  \"cpuTimeAndAllocationsScope\": \"callingThreadOnly\",\n" +
+            "  \"timings\": [\n" +
+            "    { \"category\": \"directive\", \"name\": \"a \\\"quoted\\\"\\\\name\", \"count\": 1, " +
+                "\"wallTimeNanos\": 1, \"cpuTimeNanos\": 2, \"allocatedBytes\": 3 }\n" +
+            "  ],\n" +
+            "  \"counters\": {\n" +
+            "    \"parseFile.cacheHits\": 3\n" +
+            "  }\n" +
+            "}\n", statistics.toJson());
+    }
+}